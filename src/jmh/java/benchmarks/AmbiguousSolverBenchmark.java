@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures GridSolver on the grids of the corpus that have a very large number of
+ * solutions (such as a grid where each row is one sum cage). These stress the parts
+ * of the search that unique puzzles hardly use: backtracking over many branches, and
+ * storing the solutions that are found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AmbiguousSolverBenchmark{
+
+    @Param({"0", "1", "2", "3", "4"})
+    public int puzzleIndex; // the index of the grid within the corpus file
+
+    @Param({"1000"})
+    public int solutionLimit; // the number of solutions after which the search stops
+
+    private Object puzzle; // the grid being solved
+
+    /**
+     * Reads the grid from the corpus.
+     */
+    @Setup(Level.Trial)
+    public void readPuzzle() throws Throwable{
+        List<Object> puzzles = Targets.readCorpus("ambiguous");
+        this.puzzle = puzzles.get(this.puzzleIndex);
+    }
+
+    /**
+     * Counts the solutions of the grid, without storing them.
+     * @return The number of solutions found.
+     */
+    @Benchmark
+    public int countSolutions() throws Throwable{
+        return Targets.countSolutions(this.puzzle, this.solutionLimit);
+    }
+
+    /**
+     * Finds and stores the solutions of the grid (as the solution window does).
+     * @return The number of solutions found.
+     */
+    @Benchmark
+    public int storeSolutions() throws Throwable{
+        return Targets.storeSolutions(this.puzzle, this.solutionLimit);
+    }
+}
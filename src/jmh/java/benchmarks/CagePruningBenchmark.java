@@ -0,0 +1,151 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cage propagation of GridSolver, using the cages of the puzzles in the
+ * corpus:
+ *      - working out the combinations of every cage (done once for each puzzle)
+ *      - pruning the domains of the cells of every cage to the values used by the
+ *        combinations still possible (CageCombinations.findSupports, which the solver
+ *        runs each time a value is placed into a cage)
+ * The domains are taken part way through a search: a third of the cells hold their
+ * solution value, and the rest allow their solution value and about half of the others.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CagePruningBenchmark{
+
+    @Param({"easy", "normal", "hard"})
+    public String difficulty; // the difficulty of the puzzles
+
+    @Param({"4", "5", "6", "7", "8"})
+    public int dimension; // the dimension of the puzzles
+
+    private int[][][] cageCells; // the cells of each cage of each puzzle
+    private int[][] cageTargets; // the target number of each cage of each puzzle
+    private char[][] cageOperators; // the target operator of each cage of each puzzle
+    private Object[][] cageCombinations; // the combinations of each cage of each puzzle
+    private int[][] domains; // the domain of each cell of each puzzle, part way through a search
+    private int[] supports; // filled with the values supported in each cell of a cage
+    private int nextPuzzle; // the index of the next puzzle to be checked
+
+    // constants
+    private static final long seed = 1206; // the seed used to make the domains, so every run measures the same work
+
+    /**
+     * Reads the puzzles from the corpus, and works out the combinations of their cages
+     * and the domains of their cells.
+     */
+    @Setup(Level.Trial)
+    public void readPuzzles() throws Throwable{
+        List<Object> puzzles = Targets.readCorpus(this.difficulty + "-" + this.dimension);
+        Random random = new Random(seed);
+        this.cageCells = new int[puzzles.size()][][];
+        this.cageTargets = new int[puzzles.size()][];
+        this.cageOperators = new char[puzzles.size()][];
+        this.cageCombinations = new Object[puzzles.size()][];
+        this.domains = new int[puzzles.size()][];
+        this.supports = new int[this.dimension * this.dimension];
+
+        for(int puzzle = 0; puzzle < puzzles.size(); puzzle++){
+            this.cageCells[puzzle] = Targets.getCageCells(puzzles.get(puzzle));
+            this.cageTargets[puzzle] = Targets.getCageTargets(puzzles.get(puzzle));
+            this.cageOperators[puzzle] = Targets.getCageOperators(puzzles.get(puzzle));
+            int[] solution = Targets.findSolution(puzzles.get(puzzle));
+
+            // making the domains (bit 'v' is set for the value 'v')
+            int allValues = (1 << (this.dimension + 1)) - 2;
+            this.domains[puzzle] = new int[solution.length];
+            for(int cell = 0; cell < solution.length; cell++){
+                int solutionBit = 1 << solution[cell];
+                if(random.nextInt(3) == 0){
+                    this.domains[puzzle][cell] = solutionBit;
+                }
+                else{
+                    this.domains[puzzle][cell] = solutionBit | (random.nextInt() & allValues);
+                }
+            }
+
+            int cageCount = this.cageCells[puzzle].length;
+            this.cageCombinations[puzzle] = new Object[cageCount];
+            for(int cage = 0; cage < cageCount; cage++){
+                this.cageCombinations[puzzle][cage] = Targets.makeCageCombinations(this.dimension, this.cageCells[puzzle][cage],
+                                                                                   this.cageTargets[puzzle][cage],
+                                                                                   this.cageOperators[puzzle][cage]);
+            }
+        }
+        this.nextPuzzle = 0;
+    }
+
+    /**
+     * Works out the combinations of every cage of the next puzzle.
+     * @return The number of cages with too many combinations to store.
+     */
+    @Benchmark
+    public int makeCombinations() throws Throwable{
+        int puzzle = this.nextPuzzle();
+        int unstoredCount = 0;
+        for(int cage = 0; cage < this.cageCells[puzzle].length; cage++){
+            Object combinations = Targets.makeCageCombinations(this.dimension, this.cageCells[puzzle][cage],
+                                                               this.cageTargets[puzzle][cage],
+                                                               this.cageOperators[puzzle][cage]);
+            if(combinations == null){
+                unstoredCount++;
+            }
+        }
+        return unstoredCount;
+    }
+
+    /**
+     * Prunes the domains of the cells of every cage of the next puzzle.
+     * @return The number of values left in the pruned domains.
+     */
+    @Benchmark
+    public int pruneDomains() throws Throwable{
+        int puzzle = this.nextPuzzle();
+        int supportedCount = 0;
+        for(int cage = 0; cage < this.cageCells[puzzle].length; cage++){
+            Object combinations = this.cageCombinations[puzzle][cage];
+            if(combinations == null){
+                continue; // the solver applies the operator to cages with too many combinations
+            }
+            int[] cells = this.cageCells[puzzle][cage];
+            if(Targets.findSupports(combinations, this.domains[puzzle], cells, this.supports)){
+                for(int index = 0; index < cells.length; index++){
+                    supportedCount += Integer.bitCount(this.domains[puzzle][cells[index]] & this.supports[index]);
+                }
+            }
+        }
+        return supportedCount;
+    }
+
+    /**
+     * Gets the index of the next puzzle to be checked.
+     * @return The index of the puzzle.
+     */
+    private int nextPuzzle(){
+        int puzzle = this.nextPuzzle;
+        this.nextPuzzle = (this.nextPuzzle + 1) % this.cageCells.length;
+        return puzzle;
+    }
+}
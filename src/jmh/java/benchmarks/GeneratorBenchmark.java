@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures RandomGridMaker making puzzles with a unique solution. The random number
+ * generator is seeded at the start of each trial, so every run makes the same
+ * sequence of puzzles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark{
+
+    @Param({"easy", "normal", "hard"})
+    public String difficulty; // the difficulty of the puzzles
+
+    @Param({"4", "5", "6", "7", "8"})
+    public int dimension; // the dimension of the puzzles
+
+    private Random random; // makes the random choices for the puzzles
+
+    // constants
+    private static final long seed = 2020;
+
+    /**
+     * Seeds the random number generator.
+     */
+    @Setup(Level.Trial)
+    public void seedRandom(){
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Makes a puzzle with a unique solution.
+     * @return The puzzle.
+     */
+    @Benchmark
+    public Object makeRandomPuzzle() throws Throwable{
+        int difficultyLevel = this.difficulty.equals("easy") ? 1 : this.difficulty.equals("normal") ? 2 : 3;
+        return Targets.makeRandomPuzzle(this.random, this.dimension, difficultyLevel);
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures GridSolver checking that the puzzles of the corpus have a unique solution
+ * (counting up to two solutions, as is done when a grid is loaded or generated). Each
+ * call solves the next puzzle of the chosen difficulty and dimension, so the sample
+ * time mode gives the distribution of the time taken per puzzle.
+ *
+ * The combinations of each cage are kept by the puzzle after the first solve, so this
+ * measures the search itself (see CagePruningBenchmark for the combinations).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark{
+
+    @Param({"easy", "normal", "hard"})
+    public String difficulty; // the difficulty of the puzzles
+
+    @Param({"4", "5", "6", "7", "8"})
+    public int dimension; // the dimension of the puzzles
+
+    private List<Object> puzzles; // the puzzles being solved
+    private int nextPuzzle; // the index of the next puzzle to be solved
+
+    /**
+     * Reads the puzzles of the chosen difficulty and dimension from the corpus.
+     */
+    @Setup(Level.Trial)
+    public void readPuzzles() throws Throwable{
+        this.puzzles = Targets.readCorpus(this.difficulty + "-" + this.dimension);
+        this.nextPuzzle = 0;
+    }
+
+    /**
+     * Checks that the next puzzle has a unique solution.
+     * @return The number of solutions found (at most two).
+     */
+    @Benchmark
+    public int countSolutions() throws Throwable{
+        Object puzzle = this.puzzles.get(this.nextPuzzle);
+        this.nextPuzzle = (this.nextPuzzle + 1) % this.puzzles.size();
+        return Targets.countSolutions(puzzle, 2);
+    }
+}
@@ -0,0 +1,288 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Gives the benchmarks access to the classes of the game. JMH does not allow
+ * benchmarks in the default package, and classes in the default package cannot be
+ * named from any other package, so the classes are found by name and their methods
+ * are called through method handles. The handles are static and final, so they are
+ * inlined by the JIT compiler and add next to nothing to the measured times.
+ *
+ * Objects of the game's classes are passed around as Object.
+ */
+final class Targets{
+
+    // the classes of the game
+    private static final Class<?> puzzleClass = findClass("Puzzle");
+    private static final Class<?> gameClass = findClass("Game");
+    private static final Class<?> configurationReaderClass = findClass("ConfigurationReader");
+    private static final Class<?> gridSolverClass = findClass("GridSolver");
+    private static final Class<?> randomGridMakerClass = findClass("RandomGridMaker");
+    private static final Class<?> cageCombinationsClass = findClass("CageCombinations");
+    private static final Class<?> gridValidatorClass = findClass("GridValidator");
+    private static final Class<?> solutionStoreClass = findClass("SolutionStore");
+
+    // reading puzzles
+    private static final MethodHandle newConfigurationReader = constructor(configurationReaderClass, gameClass);
+    private static final MethodHandle setConfigurationText = method(configurationReaderClass, "setConfigurationText", String.class);
+    private static final MethodHandle checkConfigurationFormat = method(configurationReaderClass, "checkConfigurationFormat");
+    private static final MethodHandle getPuzzle = method(configurationReaderClass, "getPuzzle");
+    private static final MethodHandle getError = method(configurationReaderClass, "getError");
+
+    // the structure of a puzzle
+    private static final MethodHandle getDimension = method(puzzleClass, "getDimension");
+    private static final MethodHandle getCageCells = method(puzzleClass, "getCageCells");
+    private static final MethodHandle getCageTargets = method(puzzleClass, "getCageTargets");
+    private static final MethodHandle getCageOperators = method(puzzleClass, "getCageOperators");
+
+    // solving
+    private static final MethodHandle newGridSolver = constructor(gridSolverClass, puzzleClass);
+    private static final MethodHandle solve = method(gridSolverClass, "solve", int.class);
+    private static final MethodHandle countSolutions = method(gridSolverClass, "countSolutions", int.class);
+    private static final MethodHandle getSolutions = method(gridSolverClass, "getSolutions");
+    private static final MethodHandle getStoredSolutionCount = method(solutionStoreClass, "size");
+    private static final MethodHandle getStoredSolution = method(solutionStoreClass, "getSolution", int.class);
+
+    // generating
+    private static final MethodHandle newRandomGridMaker = constructor(randomGridMakerClass, gameClass, Random.class);
+    private static final MethodHandle makeRandomPuzzle = method(randomGridMakerClass, "makeRandomPuzzle", int.class, int.class);
+
+    // pruning cages
+    private static final MethodHandle makeCageCombinations = method(cageCombinationsClass, "make", int.class, int[].class, int.class, char.class);
+    private static final MethodHandle findSupports = method(cageCombinationsClass, "findSupports", int[].class, int[].class, int[].class);
+
+    // validating
+    private static final MethodHandle newGridValidator = constructor(gridValidatorClass, int.class);
+    private static final MethodHandle addCage = method(gridValidatorClass, "addCage", int[].class, int.class, char.class);
+    private static final MethodHandle setValue = method(gridValidatorClass, "setValue", int.class, int.class);
+    private static final MethodHandle isCorrect = method(gridValidatorClass, "isCorrect");
+
+    /**
+     * Constructor for the class (not used, as all methods are static).
+     */
+    private Targets(){}
+
+    /**
+     * Reads the puzzles in a file of the benchmark corpus. Puzzles are in the format
+     * of a configuration file, with a blank line between each puzzle.
+     * @param name The name of the file (without '.txt') in the corpus.
+     * @return The puzzles in the file.
+     */
+    static List<Object> readCorpus(String name) throws Throwable{
+        InputStream stream = Targets.class.getResourceAsStream("/corpus/" + name + ".txt");
+        if(stream == null){
+            throw new IOException("No corpus file named " + name);
+        }
+
+        List<Object> puzzles = new ArrayList<Object>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))){
+            StringBuilder configuration = new StringBuilder();
+            String line;
+            while((line = reader.readLine()) != null){
+                if(!line.trim().isEmpty()){
+                    configuration.append(line.trim()).append('\n');
+                }
+                else if(configuration.length() > 0){
+                    puzzles.add(readPuzzle(configuration.toString()));
+                    configuration.setLength(0);
+                }
+            }
+            if(configuration.length() > 0){
+                puzzles.add(readPuzzle(configuration.toString()));
+            }
+        }
+        return puzzles;
+    }
+
+    /**
+     * Reads a puzzle from its configuration text.
+     * @param configuration The configuration of the puzzle.
+     * @return The puzzle.
+     */
+    static Object readPuzzle(String configuration) throws Throwable{
+        Object reader = newConfigurationReader.invoke((Object)null);
+        setConfigurationText.invoke(reader, configuration);
+        if(!(boolean)checkConfigurationFormat.invoke(reader)){
+            throw new IllegalArgumentException("Invalid puzzle in corpus: " + getError.invoke(reader));
+        }
+        return getPuzzle.invoke(reader);
+    }
+
+    /**
+     * Getter method for the dimension of a puzzle.
+     */
+    static int getDimension(Object puzzle) throws Throwable{
+        return (int)getDimension.invoke(puzzle);
+    }
+
+    /**
+     * Getter method for the cells within each cage of a puzzle.
+     */
+    static int[][] getCageCells(Object puzzle) throws Throwable{
+        return (int[][])getCageCells.invoke(puzzle);
+    }
+
+    /**
+     * Getter method for the target numbers of the cages of a puzzle.
+     */
+    static int[] getCageTargets(Object puzzle) throws Throwable{
+        return (int[])getCageTargets.invoke(puzzle);
+    }
+
+    /**
+     * Getter method for the target operators of the cages of a puzzle.
+     */
+    static char[] getCageOperators(Object puzzle) throws Throwable{
+        return (char[])getCageOperators.invoke(puzzle);
+    }
+
+    /**
+     * Counts the solutions of a puzzle with a new solver (as the game does when a
+     * grid is loaded).
+     * @param puzzle The puzzle to be solved.
+     * @param solutionLimit The number of solutions after which counting stops.
+     * @return The number of solutions found.
+     */
+    static int countSolutions(Object puzzle, int solutionLimit) throws Throwable{
+        Object gridSolver = newGridSolver.invoke(puzzle);
+        return (int)countSolutions.invoke(gridSolver, solutionLimit);
+    }
+
+    /**
+     * Finds and stores the solutions of a puzzle with a new solver.
+     * @param puzzle The puzzle to be solved.
+     * @param solutionLimit The number of solutions after which the search stops.
+     * @return The number of solutions found.
+     */
+    static int storeSolutions(Object puzzle, int solutionLimit) throws Throwable{
+        Object gridSolver = newGridSolver.invoke(puzzle);
+        solve.invoke(gridSolver, solutionLimit);
+        return (int)getStoredSolutionCount.invoke(getSolutions.invoke(gridSolver));
+    }
+
+    /**
+     * Finds the first solution of a puzzle.
+     * @param puzzle The puzzle to be solved.
+     * @return The value of each cell in the solution.
+     */
+    static int[] findSolution(Object puzzle) throws Throwable{
+        Object gridSolver = newGridSolver.invoke(puzzle);
+        solve.invoke(gridSolver, 1);
+        Object solutions = getSolutions.invoke(gridSolver);
+        if((int)getStoredSolutionCount.invoke(solutions) == 0){
+            throw new IllegalArgumentException("Puzzle in corpus has no solution");
+        }
+        return (int[])getStoredSolution.invoke(solutions, 0);
+    }
+
+    /**
+     * Makes a random puzzle with a unique solution.
+     * @param random The random number generator used to make the puzzle.
+     * @param dimension The dimension of the puzzle.
+     * @param difficulty The difficulty of the puzzle (1 to 3).
+     * @return The puzzle.
+     */
+    static Object makeRandomPuzzle(Random random, int dimension, int difficulty) throws Throwable{
+        Object randomGridMaker = newRandomGridMaker.invoke((Object)null, random);
+        return makeRandomPuzzle.invoke(randomGridMaker, dimension, difficulty);
+    }
+
+    /**
+     * Works out the combinations of values that meet the target of a cage.
+     * @return The combinations, or null if there are too many to store.
+     */
+    static Object makeCageCombinations(int dimension, int[] cells, int target, char operator) throws Throwable{
+        return makeCageCombinations.invoke(dimension, cells, target, operator);
+    }
+
+    /**
+     * Finds the values of each cell of a cage used by the combinations still possible
+     * (see CageCombinations.findSupports).
+     */
+    static boolean findSupports(Object cageCombinations, int[] domains, int[] cells, int[] supports) throws Throwable{
+        return (boolean)findSupports.invoke(cageCombinations, domains, cells, supports);
+    }
+
+    /**
+     * Makes a validator for an empty grid with the cages of a puzzle.
+     * @param puzzle The puzzle the grid is made from.
+     * @return The validator.
+     */
+    static Object newGridValidator(Object puzzle) throws Throwable{
+        Object gridValidator = newGridValidator.invoke(getDimension(puzzle));
+        int[][] cageCells = getCageCells(puzzle);
+        int[] cageTargets = getCageTargets(puzzle);
+        char[] cageOperators = getCageOperators(puzzle);
+        for(int cage = 0; cage < cageCells.length; cage++){
+            addCage.invoke(gridValidator, cageCells[cage], cageTargets[cage], cageOperators[cage]);
+        }
+        return gridValidator;
+    }
+
+    /**
+     * Records the change of a value in a validator.
+     */
+    static void setValue(Object gridValidator, int position, int value) throws Throwable{
+        setValue.invoke(gridValidator, position, value);
+    }
+
+    /**
+     * Checks if the grid of a validator is complete.
+     */
+    static boolean isCorrect(Object gridValidator) throws Throwable{
+        return (boolean)isCorrect.invoke(gridValidator);
+    }
+
+    /**
+     * Finds a class of the game by name, without initialising it (so the JavaFX
+     * classes of the game are never set up).
+     */
+    private static Class<?> findClass(String name){
+        try{
+            return Class.forName(name, false, Targets.class.getClassLoader());
+        }
+        catch(ClassNotFoundException e){
+            throw new IllegalStateException("Could not find the class " + name, e);
+        }
+    }
+
+    /**
+     * Gets a handle for a (possibly package-private) constructor.
+     */
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameterTypes){
+        try{
+            Constructor<?> constructor = owner.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException("Could not find a constructor of " + owner.getName(), e);
+        }
+    }
+
+    /**
+     * Gets a handle for a (possibly package-private) method.
+     */
+    private static MethodHandle method(Class<?> owner, String name, Class<?>... parameterTypes){
+        try{
+            Method method = owner.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException("Could not find the method " + owner.getName() + "." + name, e);
+        }
+    }
+}
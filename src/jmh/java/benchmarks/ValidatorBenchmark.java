@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the checks behind Grid.testIfCorrect, which asks the grid's GridValidator
+ * whether the grid is complete (the grid itself is a JavaFX control, and cannot be
+ * made without a display). Two cases are measured:
+ *      - filling an empty grid with its solution, checking it after every value (a whole game)
+ *      - changing one value of a full grid and checking it (a single key press)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark{
+
+    @Param({"easy", "normal", "hard"})
+    public String difficulty; // the difficulty of the puzzles
+
+    @Param({"4", "5", "6", "7", "8"})
+    public int dimension; // the dimension of the puzzles
+
+    private List<Object> puzzles; // the puzzles being validated
+    private int[][] solutions; // the solution of each puzzle
+    private Object fullValidator; // a validator for the first puzzle, with every cell filled
+    private int nextPuzzle; // the index of the next puzzle to be filled
+    private int nextCell; // the next cell of the full grid to be changed
+
+    /**
+     * Reads the puzzles from the corpus and works out their solutions.
+     */
+    @Setup(Level.Trial)
+    public void readPuzzles() throws Throwable{
+        this.puzzles = Targets.readCorpus(this.difficulty + "-" + this.dimension);
+        this.solutions = new int[this.puzzles.size()][];
+        for(int puzzle = 0; puzzle < this.puzzles.size(); puzzle++){
+            this.solutions[puzzle] = Targets.findSolution(this.puzzles.get(puzzle));
+        }
+
+        this.fullValidator = Targets.newGridValidator(this.puzzles.get(0));
+        for(int cell = 0; cell < this.solutions[0].length; cell++){
+            Targets.setValue(this.fullValidator, cell, this.solutions[0][cell]);
+        }
+        this.nextPuzzle = 0;
+        this.nextCell = 0;
+    }
+
+    /**
+     * Fills the grid of the next puzzle with its solution, checking it after every value.
+     * @return The number of times the grid was found to be complete (one, at the end).
+     */
+    @Benchmark
+    public int fillGrid() throws Throwable{
+        int puzzle = this.nextPuzzle;
+        this.nextPuzzle = (this.nextPuzzle + 1) % this.puzzles.size();
+
+        Object gridValidator = Targets.newGridValidator(this.puzzles.get(puzzle));
+        int correctCount = 0;
+        for(int cell = 0; cell < this.solutions[puzzle].length; cell++){
+            Targets.setValue(gridValidator, cell, this.solutions[puzzle][cell]);
+            if(Targets.isCorrect(gridValidator)){
+                correctCount++;
+            }
+        }
+        return correctCount;
+    }
+
+    /**
+     * Changes one cell of the full grid to a wrong value and back, checking the grid
+     * after each change.
+     * @return True if the grid was complete after both changes (it never is after the first).
+     */
+    @Benchmark
+    public boolean changeValue() throws Throwable{
+        int cell = this.nextCell;
+        this.nextCell = (this.nextCell + 1) % this.solutions[0].length;
+
+        int value = this.solutions[0][cell];
+        Targets.setValue(this.fullValidator, cell, value % this.dimension + 1);
+        boolean wrongCorrect = Targets.isCorrect(this.fullValidator);
+        Targets.setValue(this.fullValidator, cell, value);
+        return !wrongCorrect && Targets.isCorrect(this.fullValidator);
+    }
+}
@@ -1,6 +1,5 @@
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Random;
 
 /**
  * Represents a Cage within the Mathdoku game.
@@ -11,9 +10,9 @@ public class Cage{
     private int targetNumber; // the target number for this cage
     private char targetOperator; // the target operator for this cage
     private String targetString; // the target 
+    private CageCombinations combinations; // the combinations of values that meet the target (worked out when first needed)
     private static final int defaultInset = 3;
     private static final String mistakeColor =  "-fx-background-color:black, rgb(255, 144, 125);";
-    private static final char[] operators = new char[] {'x' , '÷', '+', '-'}; // the operators for the cage
 
     /**
      * Constructor for the class.
@@ -60,6 +59,7 @@ public class Cage{
     public void setCells(ArrayList<Cell> cells){
         this.cells = cells;
         this.orderCells();
+        this.combinations = null;
 
         // setting the cage for the cells in the cage
         for(Cell cell : this.cells){
@@ -74,6 +74,7 @@ public class Cage{
     public void addCell(Cell cell){
         this.cells.add(cell);
         this.orderCells();
+        this.combinations = null;
 
         // setting the cage for this cell
         cell.setCage(this);
@@ -102,6 +103,7 @@ public class Cage{
      */
     public void setTargetNumber(int targetNumber){
         this.targetNumber = targetNumber;
+        this.combinations = null;
     }
 
     /**
@@ -118,6 +120,7 @@ public class Cage{
      */
     public void setTargetOperator(char targetOperator){
         this.targetOperator = targetOperator;
+        this.combinations = null;
     }
 
     /**
@@ -194,74 +197,24 @@ public class Cage{
     }
 
     /**
-     * Tests if the given value can be inserted into the cage without
-     * breaking the rules of the cage.
-     * @param value The value to be tested within the cage.
-     * @return True if the value can be inserted, false if not.
+     * Getter method for the combinations of values that meet the target of this
+     * cage. The combinations are worked out the first time they are needed, and
+     * then kept until the cells or target of the cage change.
+     * @return The combinations for this cage, or null if the cage has too many
+     * combinations for them to be stored.
      */
-    public boolean isPossible(int targetValue){
-        // apply the opeerator between this value and all others
-        // for multiply and add, check if it is above target
-        // for subtract and divide, check if it is below target
-
-        // getting current list of values within the cage
-        ArrayList<Integer> values  = new ArrayList<Integer>();
-        for(Cell cell : this.cells){
-            if(cell.getPossibleValue() != 0){
-                values.add(cell.getPossibleValue());
+    public CageCombinations getCombinations(){
+        if(this.combinations == null){
+            int[] cellPositions = new int[this.cells.size()];
+            for(int index = 0; index < cellPositions.length; index++){
+                cellPositions[index] = this.cells.get(index).getPosition() - 1;
             }
+            this.combinations = CageCombinations.make(this.grid.getDimension(), 
+                                                      cellPositions, 
+                                                      this.targetNumber, 
+                                                      this.targetOperator);
         }
-        values.add(targetValue);
-        // sorting these values into descending order
-        Collections.sort(values, Collections.reverseOrder());
-
-        // finding the current result for the cage
-        int result = values.get(0);
-        for(int nextNumber = 1; nextNumber < values.size(); nextNumber ++){
-            // checking for multiply
-            if(this.targetOperator == 'x' || this.targetOperator == '*'){
-                result = result * values.get(nextNumber);
-            }
-            // checking for addition
-            if(this.targetOperator == '+'){
-                result = result + values.get(nextNumber);
-            }
-            // checking for subtraction
-            if(this.targetOperator == '-'){
-                result = result - values.get(nextNumber);
-            }
-            // checking for divide
-            if(this.targetOperator == '÷' || this.targetOperator == '/'){
-                result = result / values.get(nextNumber);
-            }
-        }
-
-        // checking if this result is still allowed
-    
-        // with multiply and addition, can check is allowed before all values are entered
-        if(this.cells.size() != values.size()){
-            // checking for multiply
-            if(this.targetOperator == 'x' || this.targetOperator == '*'){
-                if(result > this.targetNumber){
-                    return false;
-                }
-            }
-            // checking for addition
-            if(this.targetOperator == '+'){
-                if(result > this.targetNumber){
-                    return false;
-                }
-            }
-        }
-
-        // check for if cage is full (result must be target)
-        else{
-            if(result != targetNumber){
-                return false;
-            }
-        }
-
-        return true; // returning true if there was no breach
+        return this.combinations;
     }
 
     /**
@@ -405,79 +358,6 @@ public class Cage{
         return true;
     }
 
-    /**
-     * Used to set a random cage target value and operator when making random cages.
-     */
-    public void setRandomTarget(){
-        // removing cage label from cells
-        for(Cell cell : this.cells){
-            cell.setTargetLabel("");
-        }
-
-        /**
-         * TO MAKE RANDOM CAGE TARGET: 
-         *      - PICK RANDOM OPERATOR
-         *      - APPLY OPERATOR BETWEEN ALL VALUES IN DESCENDING ORDER
-         *      - CHECK THAT THE RESULT IS POSITIVE AND INTEGER
-         *      - RESULT BECOMES TARGET NUMBER
-         *      - IF CAGE ONLY HAS ONE CELL, TARGET STRING DOESNT INCLUDE OPERATOR
-         *      - SET TARGET LABEL INTO CAGE
-         */
-
-        // RANDOM OPERATOR //
-
-        Random random = new Random();
-        int randomIndex = random.nextInt(4);
-        this.targetOperator = operators[randomIndex];
-
-        // TARGET NUMBER //
-
-        // odering the values of all of the cells within the cage
-        ArrayList<Integer> values = new ArrayList<>();
-        for(Cell cell : this.cells){
-            values.add(cell.getSolutionValue());
-        }
-
-        // iterating over values and applying operator
-        double result = values.get(0);
-        for(int nextNumber = 1; nextNumber < values.size(); nextNumber ++){
-            // checking for multiply
-            if(this.targetOperator == 'x' || this.targetOperator == '*'){
-                result = result * values.get(nextNumber);
-            }
-            // checking for addition
-            if(this.targetOperator == '+'){
-                result = result + values.get(nextNumber);
-            }
-            // checking for subtraction
-            if(this.targetOperator == '-'){
-                result = result - values.get(nextNumber);
-            }
-            // checking for divide
-            if(this.targetOperator == '÷' || this.targetOperator == '/'){
-                result = result / values.get(nextNumber);
-            }
-        }
-
-        // making sure the result is positive
-        if(result <= 0 || (int)result != result){
-            this.setRandomTarget();
-            return;
-        }
-
-        // setting the target into the cage
-        this.targetNumber = (int)result;
-        // checling if cage has more than one cell
-        if(this.cells.size() > 1){
-            this.targetString = String.valueOf(this.targetNumber) + this.targetOperator;
-        }
-        // setting the just the value into the cage otherwise
-        else{
-            this.targetString = String.valueOf(this.targetNumber);
-        }
-        this.setCageLabel(this.targetString);
-    }
-
     /**
      * Styles the cage to add bolding around the outside. The method will go through each cell
      * and find out where the adjacent cells in the cage are. If a cell is found that is adjacent
@@ -486,6 +366,10 @@ public class Cage{
      * thinner.
      */
     public void styleCage(){
+        // recording the time taken to style the cage
+        GameEvents.StyleCageEvent event = new GameEvents.StyleCageEvent();
+        event.begin();
+
         // iterate through cage cells, and find adjacent cells to each cell
         for(Cell cell1 : this.cells){
             int leftInset = defaultInset;
@@ -538,5 +422,12 @@ public class Cage{
             // setting the insets for this cell when all of the adjacent cells have been found
             cell1.setInsets(new int[] {topInset,rightInset,bottomInset,leftInset});
         }
+
+        event.end();
+        if(event.shouldCommit()){
+            event.dimension = this.grid.getDimension();
+            event.cellCount = this.cells.size();
+            event.commit();
+        }
     }
 }
\ No newline at end of file
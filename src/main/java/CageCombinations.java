@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+/**
+ * Stores every combination of values that meets the target of a cage. The
+ * combinations are worked out once for the shape of the cage, so cells of the
+ * cage that share a row or column are never given the same value. From these
+ * combinations, the values that are allowed in each cell of the cage are known,
+ * so checking a value only needs a lookup rather than applying the operator.
+ */
+public class CageCombinations{
+    private int cellCount; // the number of cells in the cage
+    private byte[] combinations; // the values of each combination, one after the other
+    private int combinationCount; // the number of combinations found
+    private int[] cellMasks; // the values that appear in each cell across all combinations
+
+    // constants
+    private static final int maximumCombinations = 4096;
+    private static final int maximumSteps = 1000000;
+
+    /**
+     * Constructor for the class.
+     * @param cellCount The number of cells in the cage.
+     * @param combinations The values of each combination, one after the other.
+     * @param combinationCount The number of combinations.
+     */
+    private CageCombinations(int cellCount, byte[] combinations, int combinationCount){
+        this.cellCount = cellCount;
+        this.combinations = combinations;
+        this.combinationCount = combinationCount;
+        this.cellMasks = new int[cellCount];
+
+        // finding the values allowed in each cell
+        for(int combination = 0; combination < combinationCount; combination++){
+            for(int cell = 0; cell < cellCount; cell++){
+                this.cellMasks[cell] |= 1 << this.getValue(combination, cell);
+            }
+        }
+    }
+
+    /**
+     * Works out the combinations of values that meet the target of a cage.
+     * @param dimension The dimension of the grid the cage is in.
+     * @param cells The positions (starting from 0) of the cells in the cage.
+     * @param target The target number of the cage.
+     * @param operator The target operator of the cage.
+     * @return The combinations for the cage, or null if the cage has too many
+     * combinations (or takes too long to search) for them to be worth storing.
+     */
+    public static CageCombinations make(int dimension, int[] cells, int target, char operator){
+        if(cells.length > 31){
+            return null;
+        }
+
+        // finding the earlier cells of the cage that share a row or column with each cell
+        int[] clashingCells = new int[cells.length];
+        for(int cell = 0; cell < cells.length; cell++){
+            for(int earlierCell = 0; earlierCell < cell; earlierCell++){
+                if(cells[cell] / dimension == cells[earlierCell] / dimension
+                    || cells[cell] % dimension == cells[earlierCell] % dimension){
+                    clashingCells[cell] |= 1 << earlierCell;
+                }
+            }
+        }
+
+        // filling the cells one at a time, trying each value in each cell
+        byte[] combinations = new byte[cells.length * 16];
+        int combinationCount = 0;
+        int[] values = new int[cells.length];
+        int cell = 0;
+        int steps = 0;
+        while(cell >= 0){
+            values[cell]++;
+            if(++steps > maximumSteps){
+                return null;
+            }
+
+            // backtracking once every value has been tried in this cell
+            if(values[cell] > dimension){
+                values[cell] = 0;
+                cell--;
+                continue;
+            }
+            if(!isAllowed(values, cell, clashingCells[cell], cells.length, target, operator)){
+                continue;
+            }
+
+            if(cell < cells.length - 1){
+                cell++; // moving onto the next cell
+            }
+            else{
+                // all cells are filled and the target is met, so storing the combination
+                if(combinationCount == maximumCombinations){
+                    return null;
+                }
+                if((combinationCount + 1) * cells.length > combinations.length){
+                    combinations = Arrays.copyOf(combinations, combinations.length * 2);
+                }
+                for(int index = 0; index < cells.length; index++){
+                    combinations[combinationCount * cells.length + index] = (byte)values[index];
+                }
+                combinationCount++;
+            }
+        }
+
+        return new CageCombinations(cells.length, combinations, combinationCount);
+    }
+
+    /**
+     * Tests if the value just placed into a cell is allowed, given the values
+     * in the cells before it.
+     * @param values The values of the cells.
+     * @param cell The index of the cell that was just filled.
+     * @param clashingCells The earlier cells that share a row or column with this cell.
+     * @param cellCount The number of cells in the cage.
+     * @param target The target number of the cage.
+     * @param operator The target operator of the cage.
+     * @return True if the value is allowed, false if not.
+     */
+    private static boolean isAllowed(int[] values, int cell, int clashingCells, int cellCount, int target, char operator){
+        int sum = 0;
+        long product = 1;
+        int largest = 0;
+        for(int index = 0; index <= cell; index++){
+            // checking the value is different to the cells in the same row or column
+            if(index < cell && (clashingCells & (1 << index)) != 0 && values[index] == values[cell]){
+                return false;
+            }
+            sum += values[index];
+            product *= values[index];
+            largest = Math.max(largest, values[index]);
+        }
+
+        // cage is not full, only addition and multiplication can be checked
+        int emptyCells = cellCount - cell - 1;
+        if(emptyCells > 0){
+            if(operator == 'x' || operator == '*'){
+                return product <= target && target % product == 0;
+            }
+            if(operator == '+'){
+                return sum + emptyCells <= target;
+            }
+            return true;
+        }
+
+        // cage is full, so the result must be the target
+        return getResult(operator, sum, product, largest) == target;
+    }
+
+    /**
+     * Calculates the result of a full cage, by applying its operator between the
+     * values in descending order (as is done when checking a cage in the game).
+     * @param operator The target operator of the cage.
+     * @param sum The sum of the values in the cage.
+     * @param product The product of the values in the cage.
+     * @param largest The largest value in the cage.
+     * @return The result of the cage.
+     */
+    public static long getResult(char operator, int sum, long product, int largest){
+        if(operator == 'x' || operator == '*'){
+            return product;
+        }
+        if(operator == '+'){
+            return sum;
+        }
+        // subtraction and division are applied to the largest value in the cage
+        if(operator == '-'){
+            return largest - (sum - largest);
+        }
+        if(operator == '÷' || operator == '/'){
+            return largest / (product / largest);
+        }
+        return largest;
+    }
+
+    /**
+     * Finds the values of each cell of the cage that are used by the combinations
+     * still possible (every value of the combination is still in the domain of its
+     * cell). Used by the solver to prune the domains of the cells of a cage.
+     * @param domains The values still allowed in each cell of the grid, as bitmasks.
+     * @param cells The positions (starting from 0) of the cells in the cage.
+     * @param supports Filled with the values used in each cell of the cage, as bitmasks.
+     * @return False if none of the combinations are still possible, true otherwise.
+     */
+    public boolean findSupports(int[] domains, int[] cells, int[] supports){
+        int possibleCount = 0;
+        for(int index = 0; index < this.cellCount; index++){
+            supports[index] = 0;
+        }
+
+        // collecting the values used by each combination that is still possible
+        for(int combination = 0; combination < this.combinationCount; combination++){
+            boolean possible = true;
+            for(int index = 0; index < this.cellCount && possible; index++){
+                possible = (domains[cells[index]] & (1 << this.getValue(combination, index))) != 0;
+            }
+            if(possible){
+                possibleCount++;
+                for(int index = 0; index < this.cellCount; index++){
+                    supports[index] |= 1 << this.getValue(combination, index);
+                }
+            }
+        }
+        return possibleCount > 0;
+    }
+
+    /**
+     * Getter method for the number of combinations for the cage.
+     * @return The number of combinations.
+     */
+    public int getCombinationCount(){
+        return this.combinationCount;
+    }
+
+    /**
+     * Getter method for the value of a cell within a combination.
+     * @param combination The index of the combination.
+     * @param cell The index of the cell within the cage.
+     * @return The value of the cell in this combination.
+     */
+    public int getValue(int combination, int cell){
+        return this.combinations[combination * this.cellCount + cell];
+    }
+
+    /**
+     * Getter method for the values that a cell of the cage can hold in any
+     * of the combinations.
+     * @param cell The index of the cell within the cage.
+     * @return The bitmask of allowed values (bit 'v' is set for the value 'v').
+     */
+    public int getCellMask(int cell){
+        return this.cellMasks[cell];
+    }
+}
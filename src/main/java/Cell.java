@@ -23,10 +23,11 @@ public class Cell extends BorderPane{
     private Label targetLabel;
     private Text value;
     private int solutionValue;
-    private int possibleValue; // used in the generation of a cell
     private int primarySolutionValue; // the first solution for this cell
     private Grid grid;  // the grid innstance that this cell belongs to
     private int position; // sets the position of the cell relative to the grid
+    private int row; // the index of the row the cell is in (starting from 0)
+    private int column; // the index of the column the cell is in (starting from 0)
     private int[] insets; // represents the insets for the cell for styling
     private String defualtStyle;
     private String mistakeStyle;
@@ -51,9 +52,10 @@ public class Cell extends BorderPane{
         // instantiating the components for this cell
         this.grid = grid;
         this.position = position;
+        this.row = (position - 1) / grid.getDimension();
+        this.column = (position - 1) % grid.getDimension();
         this.targetLabel = new Label();
         this.value = new Text("");
-        this.possibleValue = 0;
         this.insets = new int[4];
         this.defualtStyle = "-fx-border-color: black;" +
                             "-fx-border-style: solid;" +
@@ -122,6 +124,14 @@ public class Cell extends BorderPane{
      */
     public void setValue(String value){
         this.value.setText(value); // updating the text object
+
+        // letting the grid know the value has changed
+        if(value.equals("")){
+            this.grid.getValidator().setValue(this.position - 1, 0);
+        }
+        else{
+            this.grid.getValidator().setValue(this.position - 1, Integer.parseInt(value));
+        }
     }
 
     /**
@@ -141,22 +151,6 @@ public class Cell extends BorderPane{
         this.value.setFill(Color.RED);
     }
 
-    /**
-     * Getter for the possible value within this cell.
-     * @return The possible value for this cell
-     */
-    public int getPossibleValue(){
-        return this.possibleValue;
-    }
-
-    /**
-     * Setter method for the possiblevalue of the cell. This is the actual number within the cell.
-     * @param value The value to be set into the cell in String form.
-     */
-    public void setPossibleValue(int possibleValue){
-        this.possibleValue = possibleValue; // updating the text object
-    }
-
     /**
      * Setter method for the solution value of the cell. This is used in grid generation
      * @param value The solution value for this cell.
@@ -218,6 +212,7 @@ public class Cell extends BorderPane{
      */
     public void clear(){
         this.value.setText("");
+        this.grid.getValidator().setValue(this.position - 1, 0); // letting the grid know the cell is empty
     }
 
     /**
@@ -228,6 +223,22 @@ public class Cell extends BorderPane{
         return this.position;
     }
 
+    /**
+     * Returning the index of the row this cell is in within its grid.
+     * @return int representing this cells row (starting from 0).
+     */
+    public int getRow(){
+        return this.row;
+    }
+
+    /**
+     * Returning the index of the column this cell is in within its grid.
+     * @return int representing this cells column (starting from 0).
+     */
+    public int getColumn(){
+        return this.column;
+    }
+
     /**
      * Reveals the value of the cell to the user
      */
@@ -0,0 +1,203 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Makes random puzzles from the command line without starting the JavaFX application.
+ * Every puzzle has a unique solution, and they are written in the format of a
+ * configuration file with a blank line between each puzzle (the format read by
+ * CommandLineSolver).
+ *
+ * The puzzles are made from a master seed. A seed for each puzzle is split off the
+ * master seed in the order of the puzzles (on the thread writing them out), and each
+ * puzzle is made with its own random number generator, so the same master seed always gives the same puzzles
+ * in the same order, whatever the number of threads they are made on.
+ *
+ * Usage: generate --dimension size [--difficulty easy|normal|hard] [--count count] [--seed seed] [--threads count] [--output file]
+ */
+public class CommandLineGenerator{
+
+    private int dimension; // the dimension of the puzzles
+    private int difficulty; // the difficulty of the puzzles (1 for easy, 2 for normal, 3 for hard)
+    private int puzzleCount; // the number of puzzles to make
+    private long seed; // the master seed the puzzles are made from
+    private int threadCount; // the number of threads the puzzles are made on
+    private String outputFile; // the file the puzzles are written to (null for the standard output)
+    private ArrayDeque<Future<Puzzle>> pendingPuzzles; // the puzzles not yet written, in order
+
+    // constants
+    private static final int pendingPuzzlesPerThread = 16; // limits the number of puzzles made ahead of the output
+    private static final String usage = "Usage: generate --dimension size [--difficulty easy|normal|hard] [--count count] " +
+                                        "[--seed seed] [--threads count] [--output file]";
+
+    /**
+     * Constructor for the class. Sets the default options, using a random master seed.
+     */
+    public CommandLineGenerator(){
+        this.dimension = 0;
+        this.difficulty = 2;
+        this.puzzleCount = 1;
+        this.seed = new Random().nextLong();
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.outputFile = null;
+        this.pendingPuzzles = new ArrayDeque<Future<Puzzle>>();
+    }
+
+    /**
+     * Main method - makes the puzzles described by the arguments. The master seed
+     * is written to the standard error, so the puzzles can be made again.
+     * @param args The options for the puzzles.
+     */
+    public static void main(String[] args){
+        CommandLineGenerator generator = new CommandLineGenerator();
+        try{
+            generator.readArguments(args);
+            System.err.println("seed " + generator.seed);
+            generator.run();
+            System.exit(0);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+        }
+        catch(IOException e){
+            System.err.println("Could not write the puzzles: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Reads the options from the command line arguments.
+     * @param args The command line arguments.
+     * @throws IllegalArgumentException If an option is not recognised or has an invalid value.
+     */
+    public void readArguments(String[] args){
+        for(int index = 0; index < args.length; index++){
+            String arg = args[index];
+            if(arg.equals("--dimension")){
+                this.dimension = CommandLineSolver.getPositiveOptionValue(args, ++index, arg);
+                if(this.dimension < Settings.minimumGridSize || this.dimension > Settings.maximumGridSize){
+                    throw new IllegalArgumentException("The dimension must be between " + Settings.minimumGridSize +
+                                                       " and " + Settings.maximumGridSize);
+                }
+            }
+            else if(arg.equals("--difficulty")){
+                this.difficulty = getDifficulty(CommandLineSolver.getOptionValue(args, ++index, arg));
+            }
+            else if(arg.equals("--count")){
+                this.puzzleCount = CommandLineSolver.getPositiveOptionValue(args, ++index, arg);
+            }
+            else if(arg.equals("--seed")){
+                String value = CommandLineSolver.getOptionValue(args, ++index, arg);
+                try{
+                    this.seed = Long.parseLong(value);
+                }
+                catch(NumberFormatException e){
+                    throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+                }
+            }
+            else if(arg.equals("--threads")){
+                this.threadCount = CommandLineSolver.getPositiveOptionValue(args, ++index, arg);
+            }
+            else if(arg.equals("--output")){
+                this.outputFile = CommandLineSolver.getOptionValue(args, ++index, arg);
+            }
+            else{
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if(this.dimension == 0){
+            throw new IllegalArgumentException("The dimension of the puzzles must be given");
+        }
+    }
+
+    /**
+     * Makes the puzzles and writes them out in order.
+     * @throws IOException If the output file could not be written.
+     */
+    public void run() throws IOException{
+        ExecutorService executor = Executors.newFixedThreadPool(this.threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "command-line-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        PrintWriter output = new PrintWriter(new OutputStreamWriter(
+            this.outputFile == null ? System.out : new FileOutputStream(this.outputFile),
+            StandardCharsets.UTF_8));
+
+        try{
+            SplittableRandom masterRandom = new SplittableRandom(this.seed);
+            for(int puzzle = 0; puzzle < this.puzzleCount; puzzle++){
+                // the seed of each puzzle only depends on the master seed and the position of the puzzle
+                long puzzleSeed = masterRandom.split().nextLong();
+                while(this.pendingPuzzles.size() >= this.threadCount * pendingPuzzlesPerThread){
+                    this.writeNextPuzzle(output);
+                }
+                this.pendingPuzzles.add(executor.submit(
+                    () -> new RandomGridMaker(null, new Random(puzzleSeed)).makeRandomPuzzle(this.dimension, this.difficulty)));
+            }
+            // writing the last puzzles
+            while(!this.pendingPuzzles.isEmpty()){
+                this.writeNextPuzzle(output);
+            }
+        }
+        finally{
+            executor.shutdownNow();
+            output.flush();
+            if(this.outputFile != null){
+                output.close();
+            }
+        }
+        if(output.checkError()){
+            throw new IOException("The output could not be written");
+        }
+    }
+
+    /**
+     * Waits for the oldest pending puzzle and writes it out, followed by a blank line.
+     * @param output Where the puzzle is written.
+     */
+    private void writeNextPuzzle(PrintWriter output){
+        try{
+            Puzzle puzzle = this.pendingPuzzles.remove().get();
+            output.print(puzzle.toConfigurationText());
+            output.print('\n');
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while making the puzzles", e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A puzzle could not be made", e.getCause());
+        }
+    }
+
+    /**
+     * Reads a difficulty given by name or by number.
+     * @param value The difficulty ("easy", "normal", "hard", or 1 to 3).
+     * @return The difficulty as a number (1 for easy, 2 for normal, 3 for hard).
+     */
+    private static int getDifficulty(String value){
+        if(value.equals("easy") || value.equals("1")){
+            return 1;
+        }
+        if(value.equals("normal") || value.equals("2")){
+            return 2;
+        }
+        if(value.equals("hard") || value.equals("3")){
+            return 3;
+        }
+        throw new IllegalArgumentException("Unknown difficulty: " + value);
+    }
+}
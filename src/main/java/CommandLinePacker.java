@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Converts puzzles from the text format of configuration files into a puzzle pack
+ * (see PuzzlePack), from the command line without starting the JavaFX application.
+ * Puzzles are read in the same way as by CommandLineSolver: from the files named in
+ * the arguments (or the standard input), with a blank line between each puzzle.
+ * Puzzles that cannot be read are reported and left out of the pack.
+ *
+ * Usage: pack --output file [file ...]
+ */
+public class CommandLinePacker{
+
+    private String outputFile; // the file the pack is written to
+    private ArrayList<String> sources; // the files the puzzles are read from ("-" for the standard input)
+    private int invalidPuzzleCount; // the number of puzzles that could not be read
+
+    // constants
+    private static final String usage = "Usage: pack --output file [file ...]";
+
+    /**
+     * Constructor for the class.
+     */
+    public CommandLinePacker(){
+        this.outputFile = null;
+        this.sources = new ArrayList<String>();
+        this.invalidPuzzleCount = 0;
+    }
+
+    /**
+     * Main method - converts the puzzles in the files given in the arguments. Exits
+     * with 1 if any of the puzzles could not be read.
+     * @param args The options and the files to be read.
+     */
+    public static void main(String[] args){
+        CommandLinePacker packer = new CommandLinePacker();
+        try{
+            packer.readArguments(args);
+            int puzzleCount = packer.run();
+            System.err.println("Packed " + puzzleCount + " puzzles into " + packer.outputFile);
+            System.exit(packer.invalidPuzzleCount == 0 ? 0 : 1);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+        }
+        catch(IOException e){
+            System.err.println("Could not make the pack: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Reads the options from the command line arguments.
+     * @param args The command line arguments.
+     * @throws IllegalArgumentException If an option is not recognised or has an invalid value.
+     */
+    public void readArguments(String[] args){
+        for(int index = 0; index < args.length; index++){
+            String arg = args[index];
+            if(arg.equals("--output")){
+                this.outputFile = CommandLineSolver.getOptionValue(args, ++index, arg);
+            }
+            else if(arg.startsWith("--")){
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            else{
+                this.sources.add(arg);
+            }
+        }
+
+        if(this.outputFile == null){
+            throw new IllegalArgumentException("The file the pack is written to must be given");
+        }
+        if(this.sources.isEmpty()){
+            this.sources.add("-");
+        }
+    }
+
+    /**
+     * Reads the puzzles and writes them into the pack, in order.
+     * @return The number of puzzles in the pack.
+     * @throws IOException If a file could not be read, or the pack could not be written.
+     */
+    public int run() throws IOException{
+        try(PuzzlePackWriter writer = new PuzzlePackWriter(Paths.get(this.outputFile))){
+            for(String source : this.sources){
+                PuzzleParser parser = CommandLineSolver.openPuzzles(source);
+                try{
+                    while(parser.next()){
+                        if(!parser.isValid()){
+                            this.invalidPuzzleCount++;
+                            System.err.println(source + ", puzzle " + parser.getPuzzleNumber() + ": "
+                                               + CommandLineSolver.csvField(parser.getError()));
+                            continue;
+                        }
+                        writer.add(parser.getPuzzle());
+                    }
+                }
+                finally{
+                    if(!source.equals("-")){
+                        parser.close();
+                    }
+                }
+            }
+            return writer.getPuzzleCount();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves puzzles from the command line without starting the JavaFX application, so
+ * that large numbers of configurations can be checked without a display. Puzzles are
+ * given in the same format as configuration files, with a blank line between each
+ * puzzle, and are read from the files named in the arguments (or from the standard
+ * input if there are none, or if a file is named '-'). Puzzle packs (see PuzzlePack)
+ * can be named as well.
+ *
+ * Each puzzle is solved on one of a number of worker threads, and a line is written
+ * to the standard output for each puzzle (in the order they were read) giving the
+ * number of solutions found, the size of the search and the time it took, as either
+ * CSV or JSON.
+ *
+ * Usage: solve [--format csv|json] [--threads count] [--limit count] [--solutions] [--statistics] [file ...]
+ */
+public class CommandLineSolver{
+
+    private String format; // the format of the output ("csv" or "json")
+    private int threadCount; // the number of threads puzzles are solved on
+    private int solutionLimit; // the number of solutions after which a puzzle stops being solved
+    private boolean printingSolutions; // determines if the solutions are written out
+    private boolean printingStatistics; // determines if the statistics of each search are written out
+    private ArrayList<String> sources; // the files the puzzles are read from ("-" for the standard input)
+    private PrintStream output; // where the results are written
+    private ExecutorService executor; // runs the solving of the puzzles
+    private ArrayDeque<Future<String>> pendingResults; // the results not yet written, in the order the puzzles were read
+    private boolean foundInvalidPuzzle; // set if any of the puzzles could not be read
+
+    // constants
+    private static final int defaultSolutionLimit = 2; // enough to tell if a puzzle has a unique solution
+    private static final int pendingPuzzlesPerThread = 16; // limits the number of puzzles read ahead of the output
+    private static final String usage = "Usage: solve [--format csv|json] [--threads count] [--limit count] [--solutions] [--statistics] [file ...]";
+
+    /**
+     * Constructor for the class. Sets the default options.
+     * @param output Where the results are written.
+     */
+    public CommandLineSolver(PrintStream output){
+        this.format = "csv";
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.solutionLimit = defaultSolutionLimit;
+        this.printingSolutions = false;
+        this.printingStatistics = false;
+        this.sources = new ArrayList<String>();
+        this.output = output;
+        this.pendingResults = new ArrayDeque<Future<String>>();
+        this.foundInvalidPuzzle = false;
+    }
+
+    /**
+     * Main method - solves the puzzles given in the arguments. Exits with 0 if every
+     * puzzle could be read, 1 if any could not be, and 2 if the arguments or files
+     * could not be used.
+     * @param args The options and the files to be read.
+     */
+    public static void main(String[] args){
+        // the results are written as UTF-8, as the operators of the cages are not all ASCII
+        CommandLineSolver solver = new CommandLineSolver(new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8));
+        try{
+            solver.readArguments(args);
+            System.exit(solver.run() ? 0 : 1);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+        }
+        catch(IOException e){
+            System.err.println("Could not read the puzzles: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Reads the options and files from the command line arguments.
+     * @param args The command line arguments.
+     * @throws IllegalArgumentException If an option is not recognised or has an invalid value.
+     */
+    public void readArguments(String[] args){
+        for(int index = 0; index < args.length; index++){
+            String arg = args[index];
+            if(arg.equals("--format")){
+                this.format = getOptionValue(args, ++index, arg);
+                if(!this.format.equals("csv") && !this.format.equals("json")){
+                    throw new IllegalArgumentException("Unknown format: " + this.format);
+                }
+            }
+            else if(arg.equals("--threads")){
+                this.threadCount = getPositiveOptionValue(args, ++index, arg);
+            }
+            else if(arg.equals("--limit")){
+                this.solutionLimit = getPositiveOptionValue(args, ++index, arg);
+            }
+            else if(arg.equals("--solutions")){
+                this.printingSolutions = true;
+            }
+            else if(arg.equals("--statistics")){
+                this.printingStatistics = true;
+            }
+            else if(arg.startsWith("--")){
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            else{
+                this.sources.add(arg);
+            }
+        }
+
+        // reading from the standard input if no files were given
+        if(this.sources.isEmpty()){
+            this.sources.add("-");
+        }
+    }
+
+    /**
+     * Reads and solves all of the puzzles, writing a line for each of them.
+     * @return True if every puzzle could be read, false if not.
+     * @throws IOException If one of the files could not be read.
+     */
+    public boolean run() throws IOException{
+        // making sure every file can be opened before anything is written
+        for(String source : this.sources){
+            checkSource(source);
+        }
+
+        this.executor = Executors.newFixedThreadPool(this.threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "command-line-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try{
+            if(this.format.equals("csv")){
+                this.output.println("source,puzzle,dimension,status,solutions,nodes,time_ms,error"
+                                    + (this.printingStatistics ? ",backtracks,maximum_depth,first_solution_ms,row_rejections,column_rejections,"
+                                                               + "cage_plus_rejections,cage_minus_rejections,cage_times_rejections,"
+                                                               + "cage_divide_rejections,cage_none_rejections,depth_histogram" : "")
+                                    + (this.printingSolutions ? ",solution_values" : ""));
+            }
+            for(String source : this.sources){
+                this.readPuzzles(source);
+            }
+            // writing the results of the last puzzles
+            while(!this.pendingResults.isEmpty()){
+                this.writeNextResult();
+            }
+        }
+        finally{
+            this.executor.shutdownNow();
+        }
+
+        this.output.flush();
+        return !this.foundInvalidPuzzle;
+    }
+
+    /**
+     * Reads the puzzles from a file (or the standard input), starting to solve each one
+     * as soon as it has been read. Puzzle packs (see PuzzlePack) are read as well as
+     * text files.
+     * @param source The name of the file, or "-" for the standard input.
+     * @throws IOException If the file could not be read.
+     */
+    private void readPuzzles(String source) throws IOException{
+        if(!source.equals("-") && PuzzlePack.isPuzzlePack(Paths.get(source))){
+            try(PuzzlePack pack = new PuzzlePack(Paths.get(source))){
+                for(int puzzle = 0; puzzle < pack.getPuzzleCount(); puzzle++){
+                    this.submitPuzzle(source, puzzle + 1, pack.getPuzzle(puzzle));
+                }
+            }
+            return;
+        }
+
+        // each puzzle is read and checked as it is reached, so files of any size can be read
+        PuzzleParser parser = openPuzzles(source);
+        try{
+            while(parser.next()){
+                if(parser.isValid()){
+                    this.submitPuzzle(source, parser.getPuzzleNumber(), parser.getPuzzle());
+                }
+                else{
+                    this.submitInvalidPuzzle(source, parser.getPuzzleNumber(), parser.getError());
+                }
+            }
+        }
+        finally{
+            if(!source.equals("-")){
+                parser.close();
+            }
+        }
+    }
+
+    /**
+     * Checks that a file of puzzles can be opened, so a missing file is reported before
+     * any results are written.
+     * @param source The name of the file, or "-" for the standard input.
+     * @throws IOException If the file could not be opened.
+     */
+    private static void checkSource(String source) throws IOException{
+        if(!source.equals("-")){
+            new FileInputStream(source).close();
+        }
+    }
+
+    /**
+     * Opens a parser for the puzzles in a text file (or the standard input), where there
+     * is a blank line between each puzzle.
+     * @param source The name of the file, or "-" for the standard input.
+     * @return The parser (the standard input should not be closed).
+     * @throws IOException If the file could not be opened.
+     */
+    static PuzzleParser openPuzzles(String source) throws IOException{
+        InputStream stream = source.equals("-") ? System.in : new FileInputStream(source);
+        return new PuzzleParser(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts solving a puzzle on one of the worker threads.
+     * @param source The file the puzzle was read from.
+     * @param puzzleNumber The position of the puzzle within the file (starting from 1).
+     * @param puzzle The puzzle.
+     */
+    private void submitPuzzle(String source, int puzzleNumber, Puzzle puzzle){
+        this.submitTask(() -> this.solvePuzzle(source, puzzleNumber, puzzle));
+    }
+
+    /**
+     * Adds the result of a puzzle that could not be read, in order with the other results.
+     * @param source The file the puzzle was read from.
+     * @param puzzleNumber The position of the puzzle within the file (starting from 1).
+     * @param error The reason the puzzle could not be read.
+     */
+    private void submitInvalidPuzzle(String source, int puzzleNumber, String error){
+        this.foundInvalidPuzzle = true;
+        this.submitTask(() -> this.formatResult(source, puzzleNumber, 0, "invalid", 0, 0, 0, error, null, null));
+    }
+
+    /**
+     * Runs a task giving the result of a puzzle on one of the worker threads. If too many
+     * puzzles are waiting to be written, the oldest result is waited for and written first.
+     * @param task The task.
+     */
+    private void submitTask(Callable<String> task){
+        while(this.pendingResults.size() >= this.threadCount * pendingPuzzlesPerThread){
+            this.writeNextResult();
+        }
+        this.pendingResults.add(this.executor.submit(task));
+    }
+
+    /**
+     * Waits for the oldest pending result and writes it out.
+     */
+    private void writeNextResult(){
+        try{
+            this.output.println(this.pendingResults.remove().get());
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving the puzzles", e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A puzzle could not be solved", e.getCause());
+        }
+    }
+
+    /**
+     * Solves a single puzzle.
+     * @param source The file the puzzle was read from.
+     * @param puzzleNumber The position of the puzzle within the file.
+     * @param puzzle The puzzle.
+     * @return The line describing the result, in the chosen format.
+     */
+    private String solvePuzzle(String source, int puzzleNumber, Puzzle puzzle){
+        // solving the puzzle and timing how long it takes. The solutions are written out as they
+        // are found (if they are needed at all), rather than being stored
+        long startTime = System.nanoTime();
+        GridSolver gridSolver = new GridSolver(puzzle);
+        gridSolver.setStatisticsEnabled(this.printingStatistics);
+        StringBuilder solutionValues = null;
+        if(this.printingSolutions){
+            StringBuilder values = new StringBuilder();
+            gridSolver.solve(this.solutionLimit, solution -> {
+                this.appendSolution(values, solution);
+                return true;
+            });
+            solutionValues = values;
+        }
+        else{
+            gridSolver.countSolutions(this.solutionLimit);
+        }
+        long time = System.nanoTime() - startTime;
+
+        return this.formatResult(source, puzzleNumber, puzzle.getDimension(), "ok", gridSolver.getSolutionCount(),
+                                 gridSolver.getNodeCount(), time, null, solutionValues, gridSolver.getStatistics());
+    }
+
+    /**
+     * Writes a solution onto the end of the solutions of a puzzle, in the chosen format.
+     * In JSON, each solution is an array of values. In CSV, solutions are separated by
+     * ';', and the values within a solution by spaces.
+     * @param values The solutions written so far.
+     * @param solution The value of each cell in the solution.
+     */
+    private void appendSolution(StringBuilder values, int[] solution){
+        boolean json = this.format.equals("json");
+        if(values.length() > 0){
+            values.append(json ? ',' : ';');
+        }
+        if(json){
+            values.append('[');
+        }
+        for(int cell = 0; cell < solution.length; cell++){
+            if(cell > 0){
+                values.append(json ? ',' : ' ');
+            }
+            values.append(solution[cell]);
+        }
+        if(json){
+            values.append(']');
+        }
+    }
+
+    /**
+     * Formats the result of a puzzle as a line of CSV or JSON.
+     * @param source The file the puzzle was read from.
+     * @param puzzleNumber The position of the puzzle within the file.
+     * @param dimension The dimension of the puzzle (0 if it could not be read).
+     * @param status "ok" if the puzzle was solved, "invalid" if it could not be read.
+     * @param solutionCount The number of solutions found (at most the solution limit).
+     * @param nodeCount The number of positions visited by the search.
+     * @param time The time taken to solve the puzzle, in nanoseconds.
+     * @param error The reason the puzzle could not be read (null if it was read).
+     * @param solutionValues The solutions that were found, already formatted (null if they are not written out).
+     * @param statistics The statistics of the search (null if they were not collected).
+     * @return The formatted result.
+     */
+    private String formatResult(String source, int puzzleNumber, int dimension, String status, int solutionCount,
+                                long nodeCount, long time, String error, StringBuilder solutionValues,
+                                SolverStatistics statistics){
+        String milliseconds = formatMilliseconds(time, "");
+        StringBuilder result = new StringBuilder();
+
+        if(this.format.equals("json")){
+            result.append("{\"source\":").append(jsonString(source))
+                  .append(",\"puzzle\":").append(puzzleNumber)
+                  .append(",\"dimension\":").append(dimension)
+                  .append(",\"status\":").append(jsonString(status))
+                  .append(",\"solutions\":").append(solutionCount)
+                  .append(",\"nodes\":").append(nodeCount)
+                  .append(",\"time_ms\":").append(milliseconds);
+            if(error != null){
+                result.append(",\"error\":").append(jsonString(error));
+            }
+            if(statistics != null){
+                result.append(",\"statistics\":{\"backtracks\":").append(statistics.getBacktrackCount())
+                      .append(",\"maximum_depth\":").append(statistics.getMaximumDepth())
+                      .append(",\"first_solution_ms\":").append(formatMilliseconds(statistics.getFirstSolutionTime(), "null"))
+                      .append(",\"row_rejections\":").append(statistics.getRowRejections())
+                      .append(",\"column_rejections\":").append(statistics.getColumnRejections())
+                      .append(",\"cage_rejections\":{");
+                String[] operatorNames = SolverStatistics.getOperatorNames();
+                long[] cageRejections = statistics.getCageRejections();
+                for(int operator = 0; operator < operatorNames.length; operator++){
+                    result.append(operator == 0 ? "" : ",").append(jsonString(operatorNames[operator])).append(':')
+                          .append(cageRejections[operator]);
+                }
+                result.append("},\"depth_histogram\":[");
+                long[] depthHistogram = statistics.getDepthHistogram();
+                for(int depth = 0; depth < depthHistogram.length; depth++){
+                    result.append(depth == 0 ? "" : ",").append(depthHistogram[depth]);
+                }
+                result.append("]}");
+            }
+            if(this.printingSolutions && solutionValues != null){
+                result.append(",\"solution_values\":[").append(solutionValues).append("]");
+            }
+            result.append("}");
+        }
+        else{
+            result.append(csvField(source)).append(',')
+                  .append(puzzleNumber).append(',')
+                  .append(dimension).append(',')
+                  .append(status).append(',')
+                  .append(solutionCount).append(',')
+                  .append(nodeCount).append(',')
+                  .append(milliseconds).append(',')
+                  .append(error == null ? "" : csvField(error));
+            if(this.printingStatistics){
+                if(statistics != null){
+                    result.append(',').append(statistics.getBacktrackCount())
+                          .append(',').append(statistics.getMaximumDepth())
+                          .append(',').append(formatMilliseconds(statistics.getFirstSolutionTime(), ""))
+                          .append(',').append(statistics.getRowRejections())
+                          .append(',').append(statistics.getColumnRejections());
+                    for(long cageRejections : statistics.getCageRejections()){
+                        result.append(',').append(cageRejections);
+                    }
+                    // the number of nodes at each depth is separated by spaces
+                    result.append(',');
+                    long[] depthHistogram = statistics.getDepthHistogram();
+                    for(int depth = 0; depth < depthHistogram.length; depth++){
+                        result.append(depth == 0 ? "" : " ").append(depthHistogram[depth]);
+                    }
+                }
+                else{
+                    result.append(",,,,,,,,,,,");
+                }
+            }
+            if(this.printingSolutions){
+                result.append(',');
+                if(solutionValues != null){
+                    result.append(solutionValues);
+                }
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Writes a time in milliseconds.
+     * @param time The time in nanoseconds (-1 if there is no time).
+     * @param missing What is written if there is no time.
+     * @return The time as text.
+     */
+    private static String formatMilliseconds(long time, String missing){
+        if(time == -1){
+            return missing;
+        }
+        return String.format(Locale.ROOT, "%.3f", time / 1000000.0);
+    }
+
+    /**
+     * Gets the value following an option in the arguments.
+     * @param args The command line arguments.
+     * @param index The index of the value.
+     * @param option The option the value is for.
+     * @return The value of the option.
+     */
+    static String getOptionValue(String[] args, int index, String option){
+        if(index >= args.length){
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * Gets the positive whole number following an option in the arguments.
+     * @param args The command line arguments.
+     * @param index The index of the value.
+     * @param option The option the value is for.
+     * @return The value of the option.
+     */
+    static int getPositiveOptionValue(String[] args, int index, String option){
+        String value = getOptionValue(args, index, option);
+        try{
+            int number = Integer.parseInt(value);
+            if(number > 0){
+                return number;
+            }
+        }
+        catch(NumberFormatException e){}
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+    }
+
+    /**
+     * Writes a value as a CSV field, quoting it if needed. Line breaks are
+     * replaced by spaces so that each result stays on one line.
+     * @param value The value to be written.
+     * @return The CSV field.
+     */
+    static String csvField(String value){
+        value = value.replaceAll("\\s+", " ");
+        if(value.contains(",") || value.contains("\"")){
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Writes a value as a JSON string.
+     * @param value The value to be written.
+     * @return The JSON string, including its quotes.
+     */
+    private static String jsonString(String value){
+        StringBuilder string = new StringBuilder("\"");
+        for(char character : value.toCharArray()){
+            if(character == '"' || character == '\\'){
+                string.append('\\').append(character);
+            }
+            else if(character == '\n'){
+                string.append("\\n");
+            }
+            else if(character == '\t'){
+                string.append("\\t");
+            }
+            else if(character < ' '){
+                string.append(String.format("\\u%04x", (int)character));
+            }
+            else{
+                string.append(character);
+            }
+        }
+        return string.append('"').toString();
+    }
+}
@@ -14,6 +14,7 @@ public class ControlPanel extends GridPane{
     private GameMessage gameMessage;
     private NumberPad numberPad;
     private Toolbar toolbar;
+    private SolverProgress solverProgress; // shows the progress of the grid being solved (null if not solving)
 
     /**
      * Constructor for the class. Initialises the components within the control panel.
@@ -54,6 +55,35 @@ public class ControlPanel extends GridPane{
         this.gameMessage.setText("You are currently playing a " + dimension + " x " + dimension + " mathdoku game!");
     }
 
+    /**
+     * Shows the progress of a grid being solved, in place of any progress already shown.
+     * @param task The task solving the grid.
+     */
+    public void showSolverProgress(SolveGridTask task){
+        this.hideSolverProgress();
+        this.solverProgress = new SolverProgress(task);
+        GridPane.setHalignment(this.solverProgress, HPos.CENTER);
+        this.add(this.solverProgress, 1, 0, 1, 1); // adds the progress above the message
+    }
+
+    /**
+     * Removes the progress of the grid being solved, if it is shown.
+     */
+    public void hideSolverProgress(){
+        if(this.solverProgress != null){
+            this.getChildren().remove(this.solverProgress);
+            this.solverProgress = null;
+        }
+    }
+
+    /**
+     * Sets the message shown to the user.
+     * @param message The message to be shown.
+     */
+    public void setGameMessage(String message){
+        this.gameMessage.setText(message);
+    }
+
     /**
      * Getter method for the toolbar object of the control panel.
      * @return
@@ -1,5 +1,10 @@
+import java.util.Arrays;
+
 /**
  * Entry point for program (work around for compiling JavaFX into Jar).
+ * Running the program with 'solve', 'generate' or 'pack' as the first argument solves,
+ * makes or packs puzzles from the command line instead of opening the game (see
+ * CommandLineSolver, CommandLineGenerator and CommandLinePacker).
  */
 public class Entry {
 
@@ -8,7 +13,21 @@ public class Entry {
      * @param  args System arguments.
      */
     public static void main(String[] args) {
-        Mathdoku.main(args);
+        if(args.length > 0 && args[0].equals("solve")){
+            // solving puzzles without a display
+            CommandLineSolver.main(Arrays.copyOfRange(args, 1, args.length));
+        }
+        else if(args.length > 0 && args[0].equals("generate")){
+            // making puzzles without a display
+            CommandLineGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+        }
+        else if(args.length > 0 && args[0].equals("pack")){
+            // converting puzzles into a puzzle pack without a display
+            CommandLinePacker.main(Arrays.copyOfRange(args, 1, args.length));
+        }
+        else{
+            Mathdoku.main(args);
+        }
     }
 }
 
@@ -1,7 +1,14 @@
 import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
 import javafx.util.Duration;
 import java.util.Optional;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
@@ -27,13 +34,22 @@ public class Game extends BorderPane{
     private ControlPanel controlPanel;
     private Settings settings;
     private int dimension; // represents the dimension of this game 
-    private Stack<ValueEvent> undoStack;
-    private Stack<ValueEvent> redoStack;
-    private RandomGridMaker gridMaker;
+    private UndoHistory undoHistory; // the events that can be undone and redone
+    private PuzzlePool puzzlePool; // keeps random puzzles ready to be played
+    private CompletableFuture<Puzzle> puzzleRequest; // the random puzzle last asked for (null if another grid has been set since)
     private boolean currentGridHasSolution;
     private boolean winningState;
     private int difficulty;
     private boolean firstTimeShowingMistakes;
+    private SolveGridTask solveTask; // the task solving the current grid (null if it has not been solved)
+    private GameSaver gameSaver; // saves the game in the background so it can be resumed
+    private boolean unsavedChanges; // determines if the game has changed since it was last saved
+    private Timeline autosaveTimeline; // saves the game every so often
+    private int movesSinceSave; // the number of moves journalled since the game was last saved
+
+    // constants
+    private static final double autosaveInterval = 30; // the number of seconds between each autosave
+    private static final int compactionMoveCount = 500; // the number of journalled moves after which the game is saved
 
     /**
      * Constructor for the class. Displays the start screen until the newGame
@@ -51,17 +67,24 @@ public class Game extends BorderPane{
         // setting up the settings dialog
         this.settings = new Settings(this);  
     
-        // setting up the stacks
-        this.undoStack = new Stack<>();
-        this.redoStack = new Stack<>();
-        // disabling the undo/redo buttons, as both stacks will be empty at the start
+        // setting up the history
+        this.undoHistory = new UndoHistory();
+        // disabling the undo/redo buttons, as the history will be empty at the start
         this.controlPanel.getToolbar().setUndoButtonDisable(true);
         this.controlPanel.getToolbar().setRedoButtonDisable(true);
 
-        this.gridMaker = new RandomGridMaker(this);
+        this.puzzlePool = new PuzzlePool(Settings.minimumGridSize, Settings.maximumGridSize, Settings.initialGridSize);
         this.currentGridHasSolution = false;
         this.winningState = false;
         this.firstTimeShowingMistakes = true;
+
+        // saving the game every so often (only if it has changed), so it can be resumed
+        this.gameSaver = new GameSaver();
+        this.unsavedChanges = false;
+        this.movesSinceSave = 0;
+        this.autosaveTimeline = new Timeline(new KeyFrame(Duration.seconds(autosaveInterval), event -> this.saveGame()));
+        this.autosaveTimeline.setCycleCount(Timeline.INDEFINITE);
+        this.autosaveTimeline.play();
     }
 
     /**
@@ -75,7 +98,19 @@ public class Game extends BorderPane{
         welcomeLabel.setFill(Color.GREY);
 
         welcomeLabel.setTextAlignment(TextAlignment.CENTER);
-        this.setCenter(welcomeLabel);
+
+        // letting the user carry on with the game they were playing last time
+        if(this.gameSaver.hasSavedGame()){
+            Button resumeButton = new Button("RESUME SAVED GAME");
+            resumeButton.setOnAction(event -> this.resumeSavedGame());
+            VBox startScreen = new VBox(welcomeLabel, resumeButton);
+            startScreen.setAlignment(Pos.CENTER);
+            startScreen.setSpacing(30);
+            this.setCenter(startScreen);
+        }
+        else{
+            this.setCenter(welcomeLabel);
+        }
 
         // disabling toolbar until grid is loaded
         this.controlPanel.getToolbar().setToolbarDisable(true);
@@ -125,6 +160,67 @@ public class Game extends BorderPane{
      * @param dimension The dimension of this new game.
      */
     public void newRandomGrid(int dimension, int difficulty){
+        // getting a puzzle of the required dimension (made in the background if the pool has none ready)
+        this.cancelPuzzleRequest();
+        CompletableFuture<Puzzle> puzzleRequest = this.puzzlePool.take(dimension, difficulty);
+        this.puzzleRequest = puzzleRequest;
+        if(!puzzleRequest.isDone()){
+            this.controlPanel.setGameMessage("Making a new " + dimension + " x " + dimension + " mathdoku puzzle...");
+        }
+        puzzleRequest.whenComplete((puzzle, exception) -> Platform.runLater(() -> {
+            if(exception == null){
+                this.showRandomPuzzle(puzzleRequest, puzzle, dimension, difficulty);
+            }
+            else{
+                this.showPuzzleError(puzzleRequest, exception);
+            }
+        }));
+    }
+
+    /**
+     * Cancels the random puzzle last asked for, if it is still being made (see PuzzlePool.take).
+     */
+    private void cancelPuzzleRequest(){
+        if(this.puzzleRequest != null){
+            this.puzzleRequest.cancel(false);
+            this.puzzleRequest = null;
+        }
+    }
+
+    /**
+     * Tells the user that a random puzzle could not be made, unless another grid has
+     * been asked for (or loaded) since.
+     * @param puzzleRequest The request the puzzle was asked for with.
+     * @param exception The reason the puzzle could not be made.
+     */
+    private void showPuzzleError(CompletableFuture<Puzzle> puzzleRequest, Throwable exception){
+        if(puzzleRequest != this.puzzleRequest){
+            return;
+        }
+        this.puzzleRequest = null;
+        this.controlPanel.setGameMessage("A new puzzle could not be made.");
+
+        // displaying an error message
+        Alert puzzleErrorAlert = new Alert(AlertType.ERROR,
+                                           "A new random puzzle could not be made.\n\n" +
+                                           "Cause: " + exception.getMessage());
+        puzzleErrorAlert.setHeaderText("Error Making Puzzle");
+        puzzleErrorAlert.showAndWait();
+    }
+
+    /**
+     * Sets up the grid of a random puzzle taken from the puzzle pool, unless another
+     * grid has been asked for (or loaded) since.
+     * @param puzzleRequest The request the puzzle was taken with.
+     * @param puzzle The puzzle.
+     * @param dimension The dimension of the puzzle.
+     * @param difficulty The difficulty of the puzzle.
+     */
+    private void showRandomPuzzle(CompletableFuture<Puzzle> puzzleRequest, Puzzle puzzle, int dimension, int difficulty){
+        if(puzzleRequest != this.puzzleRequest){
+            return;
+        }
+        this.controlPanel.setGameMessage(""); // the puzzle is no longer being made
         this.dimension = dimension; // setting the dimension based on this parameter
         this.difficulty = difficulty;
 
@@ -134,7 +230,7 @@ public class Game extends BorderPane{
         }
 
         // setting up a grid of the required dimension
-        Grid randomGrid = this.gridMaker.makeRandomGrid(this.dimension, this.difficulty);
+        Grid randomGrid = puzzle.toGrid(this);
         this.updateGrid(randomGrid);
     
         GridPane.setHgrow(randomGrid, Priority.NEVER);
@@ -275,14 +371,29 @@ public class Game extends BorderPane{
         }
     }
 
+    /**
+     * Sets the grid of the game to the new grid, with an empty history. Will also
+     * change the number pad to reflect this grid.
+     * @param grid The grid to be changed to.
+     */
+    private void updateGrid(Grid grid){
+        this.updateGrid(grid, new UndoHistory());
+    }
+
     /**
      * Sets the grid of the game to the new grid. Will also change the number pad
      * to reflect this grid.
      * @param grid The grid to be changed to.
+     * @param history The undo and redo history of the grid (empty unless the game was resumed).
      */
-    private void updateGrid(Grid grid){
+    private void updateGrid(Grid grid, UndoHistory history){
+        // recording the time taken to put the grid into the game
+        GameEvents.UpdateGridEvent updateEvent = new GameEvents.UpdateGridEvent();
+        updateEvent.begin();
+
         this.dimension = grid.getDimension(); // setting the dimension based on this parameter
         this.winningState = false;
+        this.cancelPuzzleRequest(); // a random puzzle still being made is no longer wanted
 
         // deleting the current grid if there is one
         if(this.gameGrid != null){
@@ -296,22 +407,77 @@ public class Game extends BorderPane{
         // adding a new number pad to the contol panel
         this.controlPanel.newNumberPad(this.dimension);
 
-        // emptying the stacks
-        this.undoStack.clear();
-        this.controlPanel.getToolbar().setUndoButtonDisable(true);
-        this.redoStack.clear();
-        this.controlPanel.getToolbar().setRedoButtonDisable(true);
+        // setting the history (before the game is saved below, so the save holds it)
+        this.undoHistory = history;
+        this.controlPanel.getToolbar().setUndoButtonDisable(!history.canUndo());
+        this.controlPanel.getToolbar().setRedoButtonDisable(!history.canRedo());
 
-       // testing the solutions for this grid
+        // the toolbar can be used straight away, apart from the buttons that need the solutions
+        this.currentGridHasSolution = false;
+        this.controlPanel.getToolbar().setToolbarDisable(false);
+        this.controlPanel.getToolbar().setSolutionButtonsDisable(true);
+        this.controlPanel.getToolbar().setClearGridButtonDisable(grid.isEmpty());
+
+        // stopping the solving of the previous grid if it is still running
+        if(this.solveTask != null){
+            SolveGridTask previousTask = this.solveTask;
+            this.solveTask = null; // so the previous task is ignored once it stops
+            previousTask.cancel();
+        }
 
-        GridSolver gridSolver = new GridSolver(this.gameGrid);
-        gridSolver.solve();
+        if(grid.getSolutionCount() >= 1){
+            // the solution is already known (the game was resumed), so the grid does not need solving
+            this.currentGridHasSolution = true;
+            this.controlPanel.hideSolverProgress();
+            this.controlPanel.getToolbar().setSolutionButtonsDisable(false);
+        }
+        else{
+            // solving the grid in the background. Only the first solution is needed (the primary 
+            // solution used for hints), so the solver stops as soon as it is found
+            SolveGridTask solveTask = new SolveGridTask(new GridSolver(this.gameGrid), 1);
+            solveTask.setOnSucceeded(event -> this.showGridSolutions(solveTask));
+            solveTask.setOnCancelled(event -> this.stopSolvingGrid(solveTask, "Solving was cancelled, hints and solutions are not available."));
+            solveTask.setOnFailed(event -> this.stopSolvingGrid(solveTask, "The grid could not be solved, hints and solutions are not available."));
+            this.solveTask = solveTask;
+            this.controlPanel.showSolverProgress(solveTask);
+
+            Thread solveThread = new Thread(solveTask, "grid-solver");
+            solveThread.setDaemon(true); // the solver should not keep the application open
+            solveThread.start();
+        }
+
+        // saving straight away, so the moves made on the new grid are journalled after it
+        this.unsavedChanges = true;
+        this.saveGame();
+
+        updateEvent.end();
+        if(updateEvent.shouldCommit()){
+            updateEvent.dimension = this.dimension;
+            updateEvent.cageCount = grid.getCages().size();
+            updateEvent.commit();
+        }
+    }
+
+    /**
+     * Writes the solutions found by a solving task into the grid, once the task has
+     * finished. Enables the solve and hint buttons if a solution was found.
+     * @param solveTask The task that solved the grid.
+     */
+    private void showGridSolutions(SolveGridTask solveTask){
+        // ignoring the task if the grid has changed since it was started
+        if(solveTask != this.solveTask){
+            return;
+        }
+        this.controlPanel.hideSolverProgress();
+        GridSolver gridSolver = solveTask.getValue();
 
         // testing if grid has solution
         if(gridSolver.getSolutionCount() >= 1){
             // if it has solution, writing the solution into the grid
             this.gameGrid.setSolutions(gridSolver.getSolutions());
             this.currentGridHasSolution = true;
+            this.unsavedChanges = true;
+            this.controlPanel.getToolbar().setSolutionButtonsDisable(false);
         }
         else{
             // if grid doesnt have solution, displaying warning
@@ -322,20 +488,60 @@ public class Game extends BorderPane{
                                             "The grid cannot be solved.");
             noSolutionAlert.showAndWait();
         }
+    }
 
-        this.controlPanel.getToolbar().setToolbarDisable(false);
-        this.controlPanel.getToolbar().setClearGridButtonDisable(true);
+    /**
+     * Deals with a solving task that stopped without finishing, leaving the solve
+     * and hint buttons disabled.
+     * @param solveTask The task that stopped.
+     * @param message The message shown to the user.
+     */
+    private void stopSolvingGrid(SolveGridTask solveTask, String message){
+        // ignoring the task if the grid has changed since it was started
+        if(solveTask != this.solveTask){
+            return;
+        }
+        this.controlPanel.hideSolverProgress();
+        this.controlPanel.setGameMessage(message);
+    }
+
+    /**
+     * Adds a value being entered into a cell, or cleared from it, to the undo history
+     * for the game. Is used by the grid instance of the game object before the value
+     * of the cell is changed.
+     * @param cell The cell being changed.
+     * @param oldValue The value before the change.
+     * @param newValue The value after the change.
+     */
+    public void addCellValueEvent(Cell cell, String oldValue, String newValue){
+        this.undoHistory.addCellEvent(cell.getPosition() - 1, getNumber(oldValue), getNumber(newValue));
+        // enabling the undo button (unless the event undid the one before it on the same cell)
+        this.controlPanel.getToolbar().setUndoButtonDisable(!this.undoHistory.canUndo());
+        this.controlPanel.getToolbar().setRedoButtonDisable(true); // the redo history is dropped by the event
+        this.unsavedChanges = true;
+        this.recordMove(MoveJournal.enterValueMove, cell.getPosition() - 1, getNumber(oldValue), getNumber(newValue));
     }
 
     /**
-     * Adds the given CellValueEvent object to the undo stack for the game.
-     * Is used by the grid instance of the game object whenever a new value is 
-     * entered into a cell, or one is cleared.
-     * @param event The CellValueEvent that has just occured.
+     * Adds the whole grid being cleared to the undo history for the game. Is used by
+     * the grid instance of the game object before its cells are cleared.
      */
-    public void addValueEvent(ValueEvent event){
+    public void addGridValueEvent(){
+        this.undoHistory.addGridEvent(this.gameGrid.getValues());
         this.controlPanel.getToolbar().setUndoButtonDisable(false); // enabling the undo button
-        this.undoStack.push(event); // adding the event to the stack
+        this.controlPanel.getToolbar().setRedoButtonDisable(true); // the redo history is dropped by the event
+        this.unsavedChanges = true;
+        this.recordMove(MoveJournal.clearGridMove, 0, 0, 0);
+    }
+
+    /**
+     * Journals a cell having been revealed by a hint. Used by the grid once the value
+     * of the cell has been entered.
+     * @param cell The position of the cell (starting from 0).
+     */
+    public void addHintEvent(int cell){
+        this.unsavedChanges = true;
+        this.recordMove(MoveJournal.hintMove, cell, 0, 0);
     }
 
     /**
@@ -412,49 +618,167 @@ public class Game extends BorderPane{
     }
 
     /**
-     * Undoes the last event that was completed by the user. Does this
-     * by popping the first object off of the undo stack and running the
-     * 'undo()' method on the corresponding CellValueEvent object. Will then 
-     * add this object to the redo stack, so that the action can be redone.
+     * Undoes the last event that was completed by the user. The values of the
+     * grid are changed back by the undo history, which moves the event onto the
+     * redo side, so that the action can be redone.
      */
     public void undoLastValueEvent(){
         // deselecting currently selected cell (to look better)
         this.gameGrid.deselectSelectedCell();
 
-        ValueEvent lastEvent = this.undoStack.pop(); // getting the most recent event
-        lastEvent.undo(); // undoing this event
-        this.redoStack.push(lastEvent); // adding this event to the redo stack
+        int[] values = this.gameGrid.getValues();
+        if(!this.undoHistory.undo(values)){
+            return;
+        }
+        this.gameGrid.setValues(values);
+        this.unsavedChanges = true;
+        this.recordMove(MoveJournal.undoMove, 0, 0, 0);
+        this.updateAfterValueEvent();
 
         // configuring undo/redobuttons
-        if(this.undoStack.empty()){
-            // disabling undo button if stack is now empty (nothing to undo)
-            this.controlPanel.getToolbar().setUndoButtonDisable(true);
-        }
+        this.controlPanel.getToolbar().setUndoButtonDisable(!this.undoHistory.canUndo());
         // will now be something to redo  (this undo), so can enable the redo
         this.controlPanel.getToolbar().setRedoButtonDisable(false);
     }
 
     /**
-     * Redoes the last event that was undone by the user. Does this
-     * by popping the first object off of the redo stack and running the
-     * 'undo()' method on the corresponding CellValueEvent object. Will then
-     * add this object to the undo stack, so that the action can be undone.
+     * Redoes the last event that was undone by the user. The values of the
+     * grid are changed again by the undo history, which moves the event back
+     * onto the undo side, so that the action can be undone.
      */
     public void redoLastValueEvent(){
         // deselecting currently selected cell (to look better)
         this.gameGrid.deselectSelectedCell();
-        
-        ValueEvent lastEvent = this.redoStack.pop(); // getting the most recent event
-        lastEvent.redo(); // redoing this event
-        this.undoStack.push(lastEvent); // adding this event to the undo stack
 
-        // configuring undo/redobutton based on the stack
-        if(this.redoStack.empty()){
-            // disabling redo button if stack is now empty (nothing to redo)
-            this.controlPanel.getToolbar().setRedoButtonDisable(true);
+        int[] values = this.gameGrid.getValues();
+        if(!this.undoHistory.redo(values)){
+            return;
         }
+        this.gameGrid.setValues(values);
+        this.unsavedChanges = true;
+        this.recordMove(MoveJournal.redoMove, 0, 0, 0);
+        this.updateAfterValueEvent();
+
+        // configuring undo/redobutton based on the history
+        this.controlPanel.getToolbar().setRedoButtonDisable(!this.undoHistory.canRedo());
         // will now be something to undo (this redo), so can enable the undo
         this.controlPanel.getToolbar().setUndoButtonDisable(false);
         this.controlPanel.getToolbar().setClearCellButtonDisable(true);
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks the grid after an event has been undone or redone, showing the winning
+     * animation if it is now complete, and enabling the clear grid button if it has
+     * any values.
+     */
+    private void updateAfterValueEvent(){
+        // need to check if this completes the game or undoes it
+        if(this.gameGrid.testIfCorrect(false)){
+            this.displayWinningAnimation();
+        }
+        else{
+            this.gameGrid.makeDefualtStyle();
+        }
+        this.controlPanel.getToolbar().setClearGridButtonDisable(this.gameGrid.isEmpty());
+    }
+
+    /**
+     * Makes a snapshot of the game in progress: the grid with its values, the solution
+     * (if it has been found), the hints and the undo and redo history.
+     * @return The snapshot, or null if no grid has been loaded.
+     */
+    public GameSnapshot makeSnapshot(){
+        if(this.gameGrid == null){
+            return null;
+        }
+
+        int[] primarySolution = this.currentGridHasSolution ? this.gameGrid.getSolutions().getSolution(0) : null;
+        GameSnapshot snapshot = new GameSnapshot(Puzzle.fromGrid(this.gameGrid), primarySolution,
+                                                 this.gameGrid.getRemainingHintsCount(),
+                                                 (BitSet)this.gameGrid.getHintCells().clone());
+        snapshot.setHistory(this.undoHistory.copy());
+        return snapshot;
+    }
+
+    /**
+     * Saves the game in the background if it has changed since it was last saved. Run
+     * every so often, when the journal of moves has grown large, and when the
+     * application is closed.
+     */
+    public void saveGame(){
+        if(this.unsavedChanges && this.gameGrid != null){
+            this.gameSaver.save(this.makeSnapshot());
+            this.unsavedChanges = false;
+            this.movesSinceSave = 0;
+        }
+    }
+
+    /**
+     * Appends a move to the journal, so it is not lost if the application crashes
+     * before the game is next saved. Once enough moves have been journalled, the game
+     * is saved so the journal starts again.
+     * @param type The type of the move (e.g., MoveJournal.enterValueMove).
+     * @param cell The position of the cell (0 if the move is not of a single cell).
+     * @param oldValue The value of the cell before the move (0 if not of a single cell).
+     * @param newValue The value of the cell after the move (0 if not of a single cell).
+     */
+    private void recordMove(int type, int cell, int oldValue, int newValue){
+        this.gameSaver.recordMove(type, cell, oldValue, newValue);
+        this.movesSinceSave++;
+        if(this.movesSinceSave == compactionMoveCount){
+            // saving once the move has been made, as a cell is only changed after its move is recorded
+            Platform.runLater(() -> this.saveGame());
+        }
+    }
+
+    /**
+     * Resumes the game that was saved last, including the moves journalled after it
+     * was saved. The grid is not solved again if its solution was saved with it.
+     */
+    public void resumeSavedGame(){
+        GameSnapshot snapshot;
+        try{
+            snapshot = this.gameSaver.load();
+        }
+        catch(IOException e){
+            // displaying an error message if the saved game could not be read
+            Alert invalidSaveAlert = new Alert(AlertType.ERROR,
+                                               "The saved game could not be loaded.\n\n" +
+                                               "Cause: " + e.getMessage());
+            invalidSaveAlert.setHeaderText("Error Resuming Game");
+            invalidSaveAlert.showAndWait();
+            return;
+        }
+
+        // making the grid, with its solution and hints
+        Grid grid = snapshot.getPuzzle().toGrid(this);
+        if(snapshot.getPrimarySolution() != null){
+            grid.addSolution(snapshot.getPrimarySolution());
+            grid.setPrimarySolution(snapshot.getPrimarySolution());
+        }
+        grid.setRemainingHintsCount(snapshot.getRemainingHintsCount());
+        grid.setHintCells(snapshot.getHintCells());
+
+        // putting the grid and its history back, which saves the game (starting a new journal)
+        this.updateGrid(grid, snapshot.getHistory());
+    }
+
+    /**
+     * Saves the game and waits for it to be written. Used when the application is closed.
+     */
+    public void close(){
+        this.autosaveTimeline.stop();
+        this.saveGame();
+        this.gameSaver.close();
+        this.puzzlePool.shutdown();
+    }
+
+    /**
+     * Converts the text of a cell into its value.
+     * @param text The text of the cell.
+     * @return The value of the cell (0 if it is empty).
+     */
+    private static int getNumber(String text){
+        return text.equals("") ? 0 : Integer.parseInt(text);
+    }
+}
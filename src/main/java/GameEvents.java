@@ -0,0 +1,117 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder events emitted by the game. Each event times one of the
+ * phases between asking for a grid and being able to play it (reading, generating,
+ * solving and styling the grid), so a recording shows which phase takes the time.
+ *
+ * Every event records the dimension of the grid, the number of cages, the attempt
+ * number and the number of solutions, where these are known for the phase (0 otherwise).
+ * When no recording is running, the events are not committed and cost almost nothing.
+ */
+public class GameEvents{
+
+    /**
+     * Constructor for the class (not used, as the class only holds the events).
+     */
+    private GameEvents(){}
+
+    /**
+     * The fields shared by all of the events of the game.
+     */
+    @Category("Mathdoku")
+    abstract static class GridEvent extends Event{
+        @Label("Dimension")
+        int dimension;
+
+        @Label("Cage Count")
+        int cageCount;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Solution Count")
+        int solutionCount;
+    }
+
+    /**
+     * Checking the format of a configuration and reading the puzzle from it
+     * (see ConfigurationReader.checkConfigurationFormat).
+     */
+    @Name("mathdoku.LoadPuzzle")
+    @Label("Load Puzzle")
+    @Description("Checking a configuration and reading the puzzle from it")
+    static class LoadPuzzleEvent extends GridEvent{
+        @Label("Valid")
+        boolean valid;
+    }
+
+    /**
+     * A search for the solutions of a grid (see GridSolver).
+     */
+    @Name("mathdoku.Solve")
+    @Label("Solve")
+    @Description("Searching for the solutions of a grid")
+    static class SolveEvent extends GridEvent{
+        @Label("Nodes")
+        long nodeCount;
+
+        @Label("Parallel")
+        boolean parallel;
+
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    /**
+     * One attempt at making a random puzzle with a unique solution, from making its
+     * solution to checking (and repairing) its cages (see RandomGridMaker).
+     */
+    @Name("mathdoku.GenerateAttempt")
+    @Label("Generate Attempt")
+    @Description("One attempt at making a random puzzle with a unique solution")
+    static class GenerateAttemptEvent extends GridEvent{
+        @Label("Difficulty")
+        int difficulty;
+
+        @Label("Repairs")
+        int repairCount;
+
+        @Label("Unique")
+        boolean unique;
+    }
+
+    /**
+     * Styling the outlines of all of the cages of a grid (see Grid.styleGrid).
+     */
+    @Name("mathdoku.StyleGrid")
+    @Label("Style Grid")
+    @Description("Styling the outlines of the cages of a grid")
+    static class StyleGridEvent extends GridEvent{
+    }
+
+    /**
+     * Styling the outline of a single cage (see Cage.styleCage).
+     */
+    @Name("mathdoku.StyleCage")
+    @Label("Style Cage")
+    @Description("Styling the outline of a cage")
+    static class StyleCageEvent extends GridEvent{
+        @Label("Cell Count")
+        int cellCount;
+    }
+
+    /**
+     * Putting a new grid into the game and starting to solve it in the
+     * background (see Game.updateGrid).
+     */
+    @Name("mathdoku.UpdateGrid")
+    @Label("Update Grid")
+    @Description("Putting a new grid into the game")
+    static class UpdateGridEvent extends GridEvent{
+    }
+}
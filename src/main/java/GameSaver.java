@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves snapshots of the game (see GameSnapshot) to a file on a background thread,
+ * so that saving never holds up the JavaFX thread. If the game is saved again before
+ * the last snapshot has been written, only the newest snapshot is written.
+ *
+ * Every move made after a snapshot is also appended to a journal (see MoveJournal), so
+ * a game that was not closed properly can be rebuilt up to its last few moves. Moves
+ * are only queued on the JavaFX thread. The background thread writes them in batches,
+ * with one sync of the journal for each batch.
+ *
+ * Each snapshot is given the next generation, and each move the generation of the
+ * snapshot it follows. The journal is started again (with the generation of the
+ * snapshot) only once the snapshot has been written, so the journal on the disk
+ * always follows either the snapshot on the disk, or an older one (in which case
+ * it is ignored).
+ */
+public class GameSaver{
+
+    private Path saveFile; // the file the game is saved to
+    private Path journalFile; // the file the moves since the last snapshot are appended to
+    private ScheduledExecutorService executor; // writes the snapshots and moves
+    private AtomicReference<GameSnapshot> pendingSnapshot; // the newest snapshot that has not been written yet
+    private ConcurrentLinkedQueue<Long> pendingMoves; // the moves not written yet, each with the generation it follows in the upper int
+    private AtomicBoolean movesScheduled; // determines if a write of the pending moves is waiting to run
+    private int generation; // the generation of the newest snapshot (JavaFX thread only)
+    private MoveJournal journal; // the journal (background thread only, null until the first snapshot is written)
+    private int journalGeneration; // the generation of the journal (background thread only)
+    private int[] moveBatch; // holds the moves being written (background thread only)
+
+    // constants
+    private static final Path defaultSaveFile = Paths.get(System.getProperty("user.home"), ".mathdoku", "saved-game.dat"); // where the game is saved
+    private static final String journalExtension = ".journal"; // added to the name of the save file to give the journal file
+    private static final long syncDelay = 100; // the number of milliseconds moves are gathered for before they are written together
+    private static final long closeTimeout = 5; // the number of seconds waited for the last snapshot to be written when closing
+
+    /**
+     * Constructor for the class. Saves to the default save file in the home directory
+     * of the user.
+     */
+    public GameSaver(){
+        this(defaultSaveFile);
+    }
+
+    /**
+     * Constructor for the class.
+     * @param saveFile The file the game is saved to.
+     */
+    public GameSaver(Path saveFile){
+        this.saveFile = saveFile;
+        this.journalFile = saveFile.resolveSibling(saveFile.getFileName() + journalExtension);
+        this.pendingSnapshot = new AtomicReference<GameSnapshot>();
+        this.pendingMoves = new ConcurrentLinkedQueue<Long>();
+        this.movesScheduled = new AtomicBoolean(false);
+        this.moveBatch = new int[64];
+
+        // starting from a random generation, so the snapshots of this session are never
+        // mistaken for those of an earlier one
+        this.generation = ThreadLocalRandom.current().nextInt(1 << 30);
+        this.journalGeneration = this.generation;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Saves a snapshot of the game in the background. The moves made after the snapshot
+     * are journalled from then on.
+     * @param snapshot The snapshot to be saved.
+     */
+    public void save(GameSnapshot snapshot){
+        this.generation++;
+        snapshot.setGeneration(this.generation);
+
+        // only starting a write if one is not already waiting (it will write this snapshot instead)
+        if(this.pendingSnapshot.getAndSet(snapshot) == null){
+            this.executor.execute(() -> this.writePendingSnapshot());
+        }
+    }
+
+    /**
+     * Appends a move to the journal in the background. Only queues the move, so it
+     * costs no more than adding it to a list.
+     * @param type The type of the move (e.g., MoveJournal.enterValueMove).
+     * @param cell The position of the cell (0 if the move is not of a single cell).
+     * @param oldValue The value of the cell before the move (0 if not of a single cell).
+     * @param newValue The value of the cell after the move (0 if not of a single cell).
+     */
+    public void recordMove(int type, int cell, int oldValue, int newValue){
+        int move = MoveJournal.makeMove(type, cell, oldValue, newValue);
+        this.pendingMoves.add((long)this.generation << 32 | (move & 0xFFFFFFFFL));
+        this.scheduleMoves();
+    }
+
+    /**
+     * Tests if there is a saved game that can be resumed.
+     * @return True if the save file exists, false if not.
+     */
+    public boolean hasSavedGame(){
+        return Files.isRegularFile(this.saveFile);
+    }
+
+    /**
+     * Reads the saved game, replaying the journal over it so it includes the moves made
+     * after it was saved.
+     * @return The game as it was when last played.
+     * @throws IOException If the save file could not be read, or is damaged.
+     */
+    public GameSnapshot load() throws IOException{
+        GameSnapshot snapshot = GameSnapshot.read(this.saveFile);
+        try{
+            MoveJournal.replay(this.journalFile, snapshot);
+        }
+        catch(IOException e){
+            // the game is resumed from the snapshot alone
+            System.err.println("Could not read the journal of the saved game: " + e.getMessage());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finishes writing the last snapshot and moves (waiting for a few seconds at most)
+     * and stops the background thread. Used when the application is closing.
+     */
+    public void close(){
+        this.executor.shutdown();
+        try{
+            if(this.executor.awaitTermination(closeTimeout, TimeUnit.SECONDS) && this.journal != null){
+                this.journal.close();
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(IOException e){
+            System.err.println("Could not close the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schedules the pending moves to be written, if a write is not already waiting.
+     * The write is delayed a little, so moves made close together share a sync.
+     */
+    private void scheduleMoves(){
+        if(this.movesScheduled.compareAndSet(false, true)){
+            this.executor.schedule(() -> this.writePendingMoves(), syncDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the newest snapshot to the save file (run on the background thread).
+     */
+    private void writePendingSnapshot(){
+        GameSnapshot snapshot = this.pendingSnapshot.getAndSet(null);
+        if(snapshot == null){
+            return;
+        }
+        try{
+            snapshot.write(this.saveFile);
+        }
+        catch(IOException e){
+            // the game carries on without being saved, the next save will try again. The
+            // journal still follows the last snapshot that was written, and the moves since
+            // are kept for the next one
+            System.err.println("Could not save the game: " + e.getMessage());
+            return;
+        }
+
+        // starting the journal again, now that the moves in it are part of the snapshot
+        this.journalGeneration = snapshot.getGeneration();
+        try{
+            if(this.journal == null){
+                this.journal = new MoveJournal(this.journalFile);
+            }
+            this.journal.reset(this.journalGeneration);
+        }
+        catch(IOException e){
+            // the moves are not journalled until the next snapshot
+            System.err.println("Could not start the journal: " + e.getMessage());
+            this.closeJournal();
+        }
+
+        // writing the moves that were waiting for this snapshot
+        if(!this.pendingMoves.isEmpty()){
+            this.scheduleMoves();
+        }
+    }
+
+    /**
+     * Writes the pending moves to the journal (run on the background thread). Moves
+     * made before the last snapshot that was written are dropped, as the snapshot
+     * includes them. Moves made after a snapshot that is still waiting to be written
+     * are left until it has been.
+     */
+    private void writePendingMoves(){
+        this.movesScheduled.set(false);
+        int count = 0;
+        Long pendingMove;
+        while((pendingMove = this.pendingMoves.peek()) != null){
+            int moveGeneration = (int)(pendingMove >>> 32);
+            if(moveGeneration > this.journalGeneration){
+                break;
+            }
+            this.pendingMoves.poll();
+            if(moveGeneration == this.journalGeneration){
+                if(count == this.moveBatch.length){
+                    this.moveBatch = Arrays.copyOf(this.moveBatch, count * 2);
+                }
+                this.moveBatch[count++] = (int)(long)pendingMove;
+            }
+        }
+        if(count == 0 || this.journal == null){
+            return;
+        }
+
+        try{
+            this.journal.append(this.moveBatch, count);
+        }
+        catch(IOException e){
+            // the moves are not journalled until the next snapshot
+            System.err.println("Could not write to the journal: " + e.getMessage());
+            this.closeJournal();
+        }
+    }
+
+    /**
+     * Closes the journal after it could not be written (run on the background thread).
+     */
+    private void closeJournal(){
+        try{
+            if(this.journal != null){
+                this.journal.close();
+            }
+        }
+        catch(IOException e){}
+        this.journal = null;
+    }
+}
@@ -0,0 +1,385 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Holds the state of a game in progress, so that it can be saved and resumed later
+ * (see GameSaver). The snapshot is made of primitive arrays without any of the JavaFX
+ * components of the game, so it can be written out on a background thread while the
+ * game carries on.
+ *
+ * A snapshot holds:
+ *      - the puzzle, with the values entered into its cells (and the solution it was
+ *        made with, for random grids)
+ *      - the primary solution found by the solver (if it had finished), so a resumed
+ *        game does not have to be solved again
+ *      - the number of hints left, and the cells that were revealed by hints
+ *      - the undo and redo history (see UndoHistory)
+ *      - the generation of the snapshot, which ties it to the journal of the moves
+ *        made after it (see MoveJournal)
+ *
+ * Moves read back from the journal are applied to the snapshot with enterValue,
+ * clearGrid, undo, redo and revealHint, in the same way as the game applies them.
+ *
+ * The format of a saved snapshot (all numbers are big-endian) is the magic number
+ * 'MDSV' and the version of the format, followed by the fields above. Values take a
+ * single byte, so a game takes a few hundred bytes plus a few bytes per event.
+ */
+public class GameSnapshot{
+    private Puzzle puzzle; // the puzzle, with the values of its cells
+    private int[] primarySolution; // the solution used for hints (null if it is not known)
+    private int remainingHintsCount; // the number of hints left
+    private BitSet hintCells; // the cells revealed by hints
+    private UndoHistory history; // the events that can be undone and redone
+    private int generation; // the number of the snapshot among those saved (see GameSaver)
+
+    // constants
+    private static final int magicNumber = 0x4D445356; // 'MDSV'
+    private static final int version = 3; // the version of the format written by write (older versions are read too)
+    private static final int hasSolutionFlag = 1; // set if the puzzle was made with a solution
+    private static final int hasPrimarySolutionFlag = 2; // set if the primary solution is known
+
+    /**
+     * Constructor for the class. The history starts empty.
+     * @param puzzle The puzzle, with the values of its cells.
+     * @param primarySolution The solution used for hints, or null if it is not known.
+     * @param remainingHintsCount The number of hints left.
+     * @param hintCells The cells revealed by hints.
+     */
+    public GameSnapshot(Puzzle puzzle, int[] primarySolution, int remainingHintsCount, BitSet hintCells){
+        this.puzzle = puzzle;
+        this.primarySolution = primarySolution;
+        this.remainingHintsCount = remainingHintsCount;
+        this.hintCells = hintCells;
+        this.history = new UndoHistory();
+        this.generation = 0;
+    }
+
+    /**
+     * Getter method for the puzzle.
+     * @return The puzzle, with the values of its cells.
+     */
+    public Puzzle getPuzzle(){
+        return this.puzzle;
+    }
+
+    /**
+     * Getter method for the primary solution.
+     * @return The value of each cell in the solution used for hints, or null if it is not known.
+     */
+    public int[] getPrimarySolution(){
+        return this.primarySolution;
+    }
+
+    /**
+     * Getter method for the number of hints left.
+     * @return The number of hints.
+     */
+    public int getRemainingHintsCount(){
+        return this.remainingHintsCount;
+    }
+
+    /**
+     * Getter method for the cells revealed by hints.
+     * @return The positions (starting from 0) of the cells.
+     */
+    public BitSet getHintCells(){
+        return this.hintCells;
+    }
+
+    /**
+     * Getter method for the undo and redo history.
+     * @return The history.
+     */
+    public UndoHistory getHistory(){
+        return this.history;
+    }
+
+    /**
+     * Setter method for the undo and redo history.
+     * @param history The history.
+     */
+    public void setHistory(UndoHistory history){
+        this.history = history;
+    }
+
+    /**
+     * Getter method for the generation of the snapshot.
+     * @return The generation.
+     */
+    public int getGeneration(){
+        return this.generation;
+    }
+
+    /**
+     * Setter method for the generation of the snapshot.
+     * @param generation The generation.
+     */
+    public void setGeneration(int generation){
+        this.generation = generation;
+    }
+
+    /**
+     * Enters a value into a cell (or clears it), adding the event to the undo history.
+     * @param cell The position of the cell (starting from 0).
+     * @param oldValue The value before the move (0 if the cell was empty).
+     * @param newValue The value after the move (0 if the cell was cleared).
+     * @return True if the move was applied, false if it is not valid for the puzzle.
+     */
+    public boolean enterValue(int cell, int oldValue, int newValue){
+        int dimension = this.puzzle.getDimension();
+        if(cell >= dimension * dimension || oldValue > dimension || newValue > dimension){
+            return false;
+        }
+        this.history.addCellEvent(cell, oldValue, newValue);
+        this.puzzle.setValue(cell, newValue);
+        return true;
+    }
+
+    /**
+     * Clears every cell, adding the event to the undo history.
+     */
+    public void clearGrid(){
+        this.history.addGridEvent(this.puzzle.getValues());
+        Arrays.fill(this.puzzle.getValues(), 0);
+    }
+
+    /**
+     * Undoes the newest event in the undo history, moving it onto the redo history.
+     * @return True if an event was undone, false if there were none.
+     */
+    public boolean undo(){
+        return this.history.undo(this.puzzle.getValues());
+    }
+
+    /**
+     * Redoes the newest event in the redo history, moving it back onto the undo history.
+     * @return True if an event was redone, false if there were none.
+     */
+    public boolean redo(){
+        return this.history.redo(this.puzzle.getValues());
+    }
+
+    /**
+     * Records that a cell was revealed by a hint (the value itself is entered by enterValue).
+     * @param cell The position of the cell (starting from 0).
+     * @return True if the hint was recorded, false if it is not valid for the puzzle.
+     */
+    public boolean revealHint(int cell){
+        int dimension = this.puzzle.getDimension();
+        if(cell >= dimension * dimension || this.remainingHintsCount == 0){
+            return false;
+        }
+        this.hintCells.set(cell);
+        this.remainingHintsCount--;
+        return true;
+    }
+
+    /**
+     * Writes the snapshot to a file. The snapshot is written to a temporary file that
+     * is synced to the disk and then replaces the file, so a save that is interrupted
+     * (even by a crash of the system) never damages the last one.
+     * @param file The file the snapshot is written to.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void write(Path file) throws IOException{
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try{
+            try(FileOutputStream stream = new FileOutputStream(temporaryFile.toFile())){
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+                this.write(output);
+                output.flush();
+                stream.getFD().sync();
+            }
+            try{
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e){
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally{
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     * @param file The file the snapshot was written to.
+     * @return The snapshot.
+     * @throws IOException If the file could not be read, or is not a saved game.
+     */
+    public static GameSnapshot read(Path file) throws IOException{
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            return read(input);
+        }
+        catch(EOFException e){
+            throw new IOException(file + " is an incomplete saved game", e);
+        }
+    }
+
+    /**
+     * Writes the fields of the snapshot.
+     * @param output The stream the snapshot is written to.
+     * @throws IOException If the snapshot could not be written.
+     */
+    private void write(DataOutputStream output) throws IOException{
+        int dimension = this.puzzle.getDimension();
+        int cellCount = dimension * dimension;
+        output.writeInt(magicNumber);
+        output.writeInt(version);
+        output.writeInt(this.generation);
+
+        // writing the puzzle
+        output.writeByte(dimension);
+        output.writeShort(this.puzzle.getCageCount());
+        for(int cage : this.puzzle.getCellCages()){
+            output.writeShort(cage);
+        }
+        for(int cage = 0; cage < this.puzzle.getCageCount(); cage++){
+            output.writeInt(this.puzzle.getCageTargets()[cage]);
+            output.writeChar(this.puzzle.getCageOperators()[cage]);
+        }
+        writeValues(output, this.puzzle.getValues());
+
+        // writing the solutions
+        int flags = (this.puzzle.getSolution() != null ? hasSolutionFlag : 0)
+                    | (this.primarySolution != null ? hasPrimarySolutionFlag : 0);
+        output.writeByte(flags);
+        if(this.puzzle.getSolution() != null){
+            writeValues(output, this.puzzle.getSolution());
+        }
+        if(this.primarySolution != null){
+            writeValues(output, this.primarySolution);
+        }
+
+        // writing the hints
+        output.writeByte(this.remainingHintsCount);
+        long[] hintWords = this.hintCells.toLongArray();
+        output.writeShort(hintWords.length);
+        for(long word : hintWords){
+            output.writeLong(word);
+        }
+
+        // writing the history, along with the number of events it keeps
+        output.writeInt(this.history.getLimit());
+        this.history.write(output, cellCount);
+    }
+
+    /**
+     * Reads the fields of a snapshot, checking each one.
+     * @param input The stream the snapshot is read from.
+     * @return The snapshot.
+     * @throws IOException If the snapshot could not be read, or is damaged.
+     */
+    private static GameSnapshot read(DataInputStream input) throws IOException{
+        if(input.readInt() != magicNumber){
+            throw new IOException("The file is not a saved game");
+        }
+        int fileVersion = input.readInt();
+        if(fileVersion < 1 || fileVersion > version){
+            throw new IOException("The saved game is of an unknown version (" + fileVersion + ")");
+        }
+        int generation = fileVersion >= 2 ? input.readInt() : 0;
+
+        // reading the puzzle
+        int dimension = input.readUnsignedByte();
+        int cageCount = input.readUnsignedShort();
+        int cellCount = dimension * dimension;
+        if(dimension < 1 || dimension > Settings.maximumGridSize || cageCount == 0 || cageCount > cellCount){
+            throw new IOException("The saved game is damaged");
+        }
+        int[] cellCages = new int[cellCount];
+        for(int cell = 0; cell < cellCount; cell++){
+            cellCages[cell] = input.readUnsignedShort();
+        }
+        int[] cageTargets = new int[cageCount];
+        char[] cageOperators = new char[cageCount];
+        for(int cage = 0; cage < cageCount; cage++){
+            cageTargets[cage] = input.readInt();
+            cageOperators[cage] = input.readChar();
+        }
+        Puzzle puzzle = new Puzzle(dimension, cellCages, cageTargets, cageOperators);
+        if(!puzzle.validateStructure()){
+            throw new IOException("The saved game is damaged");
+        }
+        int[] values = readValues(input, dimension, cellCount);
+        for(int cell = 0; cell < cellCount; cell++){
+            puzzle.setValue(cell, values[cell]);
+        }
+
+        // reading the solutions
+        int flags = input.readUnsignedByte();
+        if((flags & hasSolutionFlag) != 0){
+            puzzle.setSolution(readValues(input, dimension, cellCount));
+        }
+        int[] primarySolution = null;
+        if((flags & hasPrimarySolutionFlag) != 0){
+            primarySolution = readValues(input, dimension, cellCount);
+        }
+
+        // reading the hints
+        int remainingHintsCount = input.readUnsignedByte();
+        long[] hintWords = new long[input.readUnsignedShort()];
+        for(int word = 0; word < hintWords.length; word++){
+            hintWords[word] = input.readLong();
+        }
+        BitSet hintCells = BitSet.valueOf(hintWords);
+        if(hintCells.length() > cellCount){
+            throw new IOException("The saved game is damaged");
+        }
+
+        // reading the history (versions before 3 keep the default number of events)
+        GameSnapshot snapshot = new GameSnapshot(puzzle, primarySolution, remainingHintsCount, hintCells);
+        snapshot.generation = generation;
+        int historyLimit = fileVersion >= 3 ? input.readInt() : UndoHistory.defaultLimit;
+        if(historyLimit < 1){
+            throw new IOException("The saved game is damaged");
+        }
+        snapshot.history = UndoHistory.read(input, dimension, cellCount, historyLimit);
+        return snapshot;
+    }
+
+    /**
+     * Writes the value of each cell, a byte for each.
+     * @param output The stream the values are written to.
+     * @param values The values (0 for an empty cell).
+     * @throws IOException If the values could not be written.
+     */
+    private static void writeValues(DataOutputStream output, int[] values) throws IOException{
+        for(int value : values){
+            output.writeByte(value);
+        }
+    }
+
+    /**
+     * Reads the value of each cell, checking that each value is within the grid.
+     * @param input The stream the values are read from.
+     * @param dimension The dimension of the grid.
+     * @param cellCount The number of cells in the grid.
+     * @return The values (0 for an empty cell).
+     * @throws IOException If the values could not be read, or are damaged.
+     */
+    static int[] readValues(DataInputStream input, int dimension, int cellCount) throws IOException{
+        int[] values = new int[cellCount];
+        for(int cell = 0; cell < cellCount; cell++){
+            values[cell] = input.readUnsignedByte();
+            if(values[cell] > dimension){
+                throw new IOException("The saved game is damaged");
+            }
+        }
+        return values;
+    }
+}
@@ -4,6 +4,7 @@ import javafx.scene.control.ButtonBar;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.layout.*;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Optional;
 import java.util.Random;
 
@@ -22,11 +23,12 @@ public class Grid extends GridPane{
     private int numberOfCellsInCages; // represents how many cells have been added to a cage
     private ArrayList<ArrayList<Cell>> rows; // stores the rows of cells within the grid
     private ArrayList<ArrayList<Cell>> columns; // stores the columns of cells within the grid
-    private ArrayList<Integer> solutionValues; // stores the solution for all of the cells within the grid (for random grids)
-    private ArrayList<ArrayList<Integer>> solutions; // stores the soltutions for this grid
-    private ArrayList<Integer> primarySolution; // stores the primary solution for the grid
+    private int[] solutionValues; // stores the solution for all of the cells within the grid (for random grids)
+    private SolutionStore solutions; // stores the soltutions for this grid (the first is the primary solution)
     private int remainingHintsCount;
+    private BitSet hintCells; // the positions (starting from 0) of the cells revealed by hints
     private boolean editable; // determines if the grid can be edited
+    private GridValidator validator; // keeps track of whether the values in the grid are correct
 
     // constants
     private static final String rowMistakeColour = "-fx-background-color:black, rgb(245, 191, 105);";
@@ -48,10 +50,11 @@ public class Grid extends GridPane{
         this.rows = new ArrayList<ArrayList<Cell>>();
         this.columns = new ArrayList<ArrayList<Cell>>();
         this.numberOfCellsInCages = 0;
-        this.solutions = new ArrayList<ArrayList<Integer>>();
-        this.primarySolution = new ArrayList<Integer>();
+        this.solutions = new SolutionStore(dimension);
         this.remainingHintsCount = numberOfHints;
+        this.hintCells = new BitSet();
         this.editable = true;
+        this.validator = new GridValidator(dimension);
 
         // making a new grid of the required dimension
         for(int r = 0; r < dimension; r++){
@@ -115,24 +118,21 @@ public class Grid extends GridPane{
 
     /**
      * Setter method for the solution values within the grid.
-     * @param solutionValues The solution values for all of the cells as an
-     * ArrayList.
+     * @param solutionValues The solution values for all of the cells.
      */
-    public void setSolutionValues(ArrayList<Integer> solutionValues){
+    public void setSolutionValues(int[] solutionValues){
         this.solutionValues = solutionValues;
 
-        int cellCount = 0;
-        for(Integer solutionValue : this.solutionValues){
-            this.cells.get(cellCount).setSolutionValue(solutionValue);
-            cellCount++;
+        for(int cell = 0; cell < this.solutionValues.length; cell++){
+            this.cells.get(cell).setSolutionValue(this.solutionValues[cell]);
         }
     }
 
     /**
      * Getter method for the solution values within the grid.
-     * @return The solution values for the grid as an ArrayList of integers.
+     * @return The solution values for the grid (null if the grid was not made with a solution).
      */
-    public ArrayList<Integer> getSolutionValues(){
+    public int[] getSolutionValues(){
         return this.solutionValues;
     }
 
@@ -141,7 +141,7 @@ public class Grid extends GridPane{
      * @param solution The solution to be added to this grid
      * as an array of integers.
      */
-    public void addSolution(ArrayList<Integer> solution){
+    public void addSolution(int[] solution){
         this.solutions.add(solution);
     }
 
@@ -149,28 +149,30 @@ public class Grid extends GridPane{
      * Setter method for the solutions for this grid.
      * @param solutions The solutions for this grid.
      */
-    public void setSolutions(ArrayList<ArrayList<Integer>> solutions){
+    public void setSolutions(SolutionStore solutions){
         this.solutions = solutions;
 
         // setting the primary solution into the grid and the cells
         // using the first solution
-        this.setPrimarySolution(this.solutions.get(0));
+        this.setPrimarySolution(this.solutions.getSolution(0));
     }
 
     /**
      * Getter method for the solutions within this grid.
      * @return The solutions for this grid.
      */
-    public ArrayList<ArrayList<Integer>> getSolutions(){
+    public SolutionStore getSolutions(){
         return this.solutions;
     }
 
-    public void setPrimarySolution(ArrayList<Integer> primarySolution){
-        this.primarySolution = primarySolution;
-
+    /**
+     * Setter method for the primary solution of the grid (the solution used for hints).
+     * @param primarySolution The value of each cell in the primary solution.
+     */
+    public void setPrimarySolution(int[] primarySolution){
         // setting primary solution for cells
-        for(int index  = 0; index < this.primarySolution.size(); index ++){
-            this.cells.get(index).setPrimarySolutionValue(this.primarySolution.get(index));
+        for(int index  = 0; index < primarySolution.length; index ++){
+            this.cells.get(index).setPrimarySolutionValue(primarySolution[index]);
         }
     }
 
@@ -223,16 +225,7 @@ public class Grid extends GridPane{
      * @return ArrayList of cells representing this cells row of cells.
      */
     public ArrayList<Cell> getRowFromCell(Cell cell){
-        // iterating over all of the rows in this grid
-        for(ArrayList<Cell> row : this.rows){
-            // testing if this row contains the cell
-            if(row.contains(cell)){
-                return row; // returning row when match is found
-            }
-        }
-
-        // if no match is found, then returning null
-        return null;
+        return this.rows.get(cell.getRow()); // the cell knows the index of its row
     }
 
     /**
@@ -242,16 +235,7 @@ public class Grid extends GridPane{
      * @return ArrayList of cells representing this cells column of cells.
      */
     public ArrayList<Cell> getColumnFromCell(Cell cell){
-        // iterating over all of the columns in this grid
-        for(ArrayList<Cell> column : this.columns){
-            // testing if this column contains the cell
-            if(column.contains(cell)){
-                return column; // returning column when match is found
-            }
-        }
-
-        // if no match is found, then returning null
-        return null;
+        return this.columns.get(cell.getColumn()); // the cell knows the index of its column
     }
 
     /**
@@ -338,10 +322,8 @@ public class Grid extends GridPane{
     public void enterValueIntoSelectedCell(String value){
         // testing if a cell is currently selected, and if the value is different to the current one
         if(this.selectedCell!=null && !this.selectedCell.getValue().equals(value)){
-            // adding this event to the undo stack on the game object
-            this.game.addValueEvent(new CellValueEvent(this.selectedCell, 
-                                                   this.selectedCell.getValue(), 
-                                                   value));
+            // adding this event to the undo history on the game object
+            this.game.addCellValueEvent(this.selectedCell, this.selectedCell.getValue(), value);
 
             // placing the given value into the cell
             this.selectedCell.setValue(value);
@@ -377,10 +359,8 @@ public class Grid extends GridPane{
     public void clearSelectedCell(){
         // testing if a cell is currently selected and that it has a value
         if(this.selectedCell!=null && !this.selectedCell.getValue().equals("")){
-            // adding this event to the undo stack on the game object
-            this.game.addValueEvent(new CellValueEvent(this.selectedCell, 
-                                                   this.selectedCell.getValue(), 
-                                                   ""));
+            // adding this event to the undo history on the game object
+            this.game.addCellValueEvent(this.selectedCell, this.selectedCell.getValue(), "");
 
             // if a cell is selected, then setting its value to empty string
             this.selectedCell.clear();
@@ -410,8 +390,8 @@ public class Grid extends GridPane{
             Optional<ButtonType> result = alert.showAndWait();
             if (result.get() == ButtonType.OK){
                 // ... user chose OK
-                // adding this event to the stack
-                this.game.addValueEvent(new GridValueEvent(this));
+                // adding this event to the undo history
+                this.game.addGridValueEvent();
                 this.makeDefualtStyle(); // styling the grid back to normal in case the winning animation was shown
                 this.deselectSelectedCell(); // deselecting current cell
                 this.game.setWinningState(false);
@@ -431,16 +411,39 @@ public class Grid extends GridPane{
         }
     }
 
-    public boolean isEmpty(){
-        // testing if any of the cells have any content
-        for(Cell cell : this.cells){
-            if(!cell.getValue().equals("")){
-                // returning false if cell content is found
-                return false;
+    /**
+     * Getter method for the values of the cells.
+     * @return The value of each cell, in order of position (0 if the cell is empty).
+     */
+    public int[] getValues(){
+        int[] values = new int[this.cells.size()];
+        for(int cell = 0; cell < values.length; cell++){
+            String value = this.cells.get(cell).getValue();
+            values[cell] = value.equals("") ? 0 : Integer.parseInt(value);
+        }
+        return values;
+    }
+
+    /**
+     * Setter method for the values of the cells. Only the cells whose value has
+     * changed are updated.
+     * @param values The value of each cell, in order of position (0 if the cell is empty).
+     */
+    public void setValues(int[] values){
+        for(int cell = 0; cell < values.length; cell++){
+            String value = values[cell] == 0 ? "" : String.valueOf(values[cell]);
+            if(!this.cells.get(cell).getValue().equals(value)){
+                this.cells.get(cell).setValue(value);
             }
         }
-        // returning true if no cells were found that contain any content
-        return true;
+    }
+
+    /**
+     * Checks if none of the cells in the grid have a value.
+     * @return True if the grid is empty, false if not.
+     */
+    public boolean isEmpty(){
+        return this.validator.isEmpty(); // the validator counts the filled cells
     }
 
     /**
@@ -450,6 +453,15 @@ public class Grid extends GridPane{
     public void addCage(Cage cage){
         this.cages.add(cage);
         this.numberOfCellsInCages += cage.getNumberOfCells(); // incrementing the number of cells in cages
+        this.validator.addCage(cage);
+    }
+
+    /**
+     * Getter method for the validator that keeps track of the values in the grid.
+     * @return The GridValidator for this grid.
+     */
+    public GridValidator getValidator(){
+        return this.validator;
     }
 
     /**
@@ -460,6 +472,38 @@ public class Grid extends GridPane{
         return this.cages;
     }
 
+    /**
+     * Getter method for the number of hints the user has left.
+     * @return The number of hints left.
+     */
+    public int getRemainingHintsCount(){
+        return this.remainingHintsCount;
+    }
+
+    /**
+     * Setter method for the number of hints the user has left (used when a game is resumed).
+     * @param remainingHintsCount The number of hints left.
+     */
+    public void setRemainingHintsCount(int remainingHintsCount){
+        this.remainingHintsCount = remainingHintsCount;
+    }
+
+    /**
+     * Getter method for the cells that were revealed by hints.
+     * @return The positions (starting from 0) of the cells.
+     */
+    public BitSet getHintCells(){
+        return this.hintCells;
+    }
+
+    /**
+     * Setter method for the cells that were revealed by hints (used when a game is resumed).
+     * @param hintCells The positions (starting from 0) of the cells.
+     */
+    public void setHintCells(BitSet hintCells){
+        this.hintCells = hintCells;
+    }
+
     /**
      * Will reveal a hint to the user by revealing the value of one of the cells.
      */
@@ -541,6 +585,8 @@ public class Grid extends GridPane{
                     // showing hint for this cell if it doesnt
                     this.deselectSelectedCell();
                     this.cells.get(randomNumber).showHint();
+                    this.hintCells.set(randomNumber);
+                    this.game.addHintEvent(randomNumber);
                     cellFound = true;
                 }
             }
@@ -613,6 +659,11 @@ public class Grid extends GridPane{
         }
 
 
+        // if not showing mistakes, the validator already knows if the grid is complete
+        if(!showMistakes){
+            return this.validator.isCorrect();
+        }
+
         boolean mistakeFound = false; // records if a mistake was found 
 
         /**  CHECKING ROWS
@@ -721,21 +772,12 @@ public class Grid extends GridPane{
     }
 
     /**
-     * Given an array list of cells representing a row, column or whole grid 
-     * check if all cells are full. That is, if there is a value within
-     * each one of the given cells.
-     * @param cells The array list of cells to be checked
-     * @return True if the column or row is full, false if not.
+     * Checks if all cells in the grid are full. That is, if there is a value
+     * within each one of the cells.
+     * @return True if the grid is full, false if not.
      */
     private boolean isFull(){
-        // testing to see if any of the cells dont have a value
-        for(Cell cell : this.cells){
-            if(cell.getValue().equals("")){
-                return false; // returning false if cell found with no value
-            }
-        }
-        // if no cell found with no value, then the row/column/grid must be full
-        return true;
+        return this.validator.isFull(); // the validator counts the filled cells
     }
 
     /**
@@ -746,14 +788,15 @@ public class Grid extends GridPane{
      * @return True if the row or column follows the rules.
      */
     private static boolean rowOrColumnisCorrect(ArrayList<Cell> rowOrColumn, int dimension){
-        ArrayList<String> values = new ArrayList<String>();
-        // iterating through the list, and adding the unique numbers to the array list
+        int values = 0; // the values seen so far (bit 'v' is set for the value 'v')
+        // iterating through the list, and recording the numbers seen
         for(Cell cell : rowOrColumn){
-            if(!values.contains(cell.getValue()) || cell.getValue().equals("")){
-                values.add(cell.getValue());
-            }
-            else{
-                return false;
+            if(!cell.getValue().equals("")){
+                int value = 1 << Integer.parseInt(cell.getValue());
+                if((values & value) != 0){
+                    return false;
+                }
+                values |= value;
             }
         }
 
@@ -765,10 +808,21 @@ public class Grid extends GridPane{
      * Will add outline to the cages contained within this grid.
      */
     public void styleGrid(){
+        // recording the time taken to style the grid
+        GameEvents.StyleGridEvent event = new GameEvents.StyleGridEvent();
+        event.begin();
+
         // looping through the cages in the grid and styling them
         for(Cage cage : this.cages){
             cage.styleCage();
         }
+
+        event.end();
+        if(event.shouldCommit()){
+            event.dimension = this.dimension;
+            event.cageCount = this.cages.size();
+            event.commit();
+        }
     }
 
     /**
@@ -1,110 +1,1084 @@
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Class handles the solving of a grid object
+ * Class handles the solving of a grid object. The solver does not work on the
+ * cells of the grid directly, but on a copy of the grid held in primitive arrays.
+ * The values that are still possible for each cell (its domain), and the values
+ * used in each row and column, are stored as bitmasks (bit 'v' is set for the
+ * value 'v').
+ *
+ * After each value is placed, the consequences of the placement are propagated
+ * through the grid before the search branches again:
+ *      - the value is removed from the other cells in its row and column
+ *      - the cells in its cage are reduced to the values used by the cage's combinations
+ *        (see CageCombinations) that are still possible
+ *      - a cell left with one possible value is filled (naked single)
+ *      - a value that only fits in one cell of a row or column is placed there (hidden single)
+ *
+ * The search then branches on the empty cell with the fewest possible values. Every
+ * change made to the domains is recorded on a trail, so that it can be undone when
+ * the search backtracks, meaning the search itself does not allocate any objects.
+ *
+ * Solutions can be stored (solve), only counted (countSolutions), passed to a
+ * visitor as they are found (solve with a SolutionVisitor), or found one at a time
+ * as they are asked for (solutionIterator), so the solutions of a grid with a very
+ * large number of them never have to be held in memory at once.
  */
 public class GridSolver{
-    private Grid grid; // the grid that is being solved
-    private ArrayList<ArrayList<Integer>> solutions; // the solutions that were found
+    private int dimension; // the dimension of the grid being solved
+    private int allValuesMask; // the bitmask containing every value from 1 to the dimension
+    private int[] values; // the value placed in each cell (0 if the cell is empty)
+    private int[] domains; // the values that are still possible for each cell
+    private int[] rowMasks; // the values that have been used in each row
+    private int[] columnMasks; // the values that have been used in each column
+    private int[] cellMasks; // the values that are allowed in each cell
+    private int[] cellCages; // the index of the cage each cell belongs to
+    private int[][] cageCells; // the indexes of the cells within each cage
+    private int[] cageTargets; // the target number of each cage
+    private char[] cageOperators; // the target operator of each cage
+    private CageCombinations[] cageCombinations; // the combinations that meet the target of each cage (null if too many)
+    private int[] cageSupports; // used to collect the values supported by the combinations of a cage
+    private int[] cageFilledCounts; // the number of cells in each cage that have a value
+    private int[] cageSums; // the sum of the values placed in each cage
+    private long[] cageProducts; // the product of the values placed in each cage
+    private int[] trailCells; // the cell changed by each entry on the trail (negative for a placement)
+    private int[] trailDomains; // the domain the cell had before each entry on the trail
+    private int trailSize; // the number of entries on the trail
+    private int[] queue; // the placed cells that are waiting to be propagated
+    private int queueHead; // the position of the next cell in the queue
+    private int queueSize; // the number of cells that have been added to the queue
+    private SolutionStore solutions; // the solutions that were found (packed, see SolutionStore)
     private int solutionCount; // stores the number of solutions for this grid
+    private int solutionLimit; // the number of solutions after which the search stops
+    private boolean storingSolutions; // determines if the solutions found are stored
+    private long nodeCount; // the number of positions visited by the search
+    private AtomicBoolean cancelled; // set (from any thread) to stop the search early (shared with the copies of the solver)
+    private LongConsumer progressListener; // told the node count as the search goes (null if not needed)
+    private int depth; // the number of cells branched on to reach the current node of the search
+    private boolean statisticsEnabled; // determines if statistics are collected for each search
+    private SolverStatistics statistics; // the statistics of the last search (null if they were not collected)
+    private SolutionVisitor solutionVisitor; // told about each solution as it is found (null if not needed)
+    private int searchNumber; // counts the searches started, so an old solution iterator can tell it is out of date
+    private boolean resumableSearchRunning; // determines if a search run by findNextSolution is part way through
+    private boolean resumableSearchStarting; // determines if the grid of the resumable search still has to be propagated
+    private boolean solutionPending; // determines if the last solution found by findNextSolution is still placed
+    private int branchDepth; // the deepest level of the resumable search (-1 if there are no levels)
+    private int[] branchCells; // the cell branched on at each level of the resumable search
+    private int[] branchCandidates; // the values still to be tried at each level of the resumable search
+    private int[] branchTrailMarks; // the size of the trail before the value at each level was placed
+    private int[] branchSolutionCounts; // the number of solutions found before the value at each level was placed
+
+    // constants
+    private static final int progressInterval = 4096; // the number of nodes between progress updates (a power of 2)
 
     /**
-     * Constructor for the class. Instantiates the grid 
+     * Constructor for the class. Instantiates the grid
      * object that is to be solved by this grid solver.
      */
     GridSolver(Grid grid){
-        this.grid = grid;
-        this.solutions = new ArrayList<ArrayList<Integer>>();
+        this(grid.getDimension(), getCageCells(grid), getCageTargets(grid), getCageOperators(grid), getCageCombinations(grid));
+    }
+
+    /**
+     * Constructor for the class. Sets up the solver from the cages of a puzzle,
+     * so that it can be solved without making a grid.
+     * @param puzzle The puzzle to be solved.
+     */
+    GridSolver(Puzzle puzzle){
+        this(puzzle.getDimension(), puzzle.getCageCells(), puzzle.getCageTargets(), puzzle.getCageOperators(), puzzle.getCageCombinations());
+    }
+
+    /**
+     * Constructor for the class. Sets up the solver from the structure of a grid
+     * given as primitive arrays.
+     * @param dimension The dimension of the grid.
+     * @param cageCells The positions (starting from 0) of the cells in each cage.
+     * @param cageTargets The target number of each cage.
+     * @param cageOperators The target operator of each cage.
+     */
+    GridSolver(int dimension, int[][] cageCells, int[] cageTargets, char[] cageOperators){
+        this(dimension, cageCells, cageTargets, cageOperators, null);
+    }
+
+    /**
+     * Constructor for the class. Sets up the solver from the structure of a grid
+     * given as primitive arrays, along with the combinations for each of its cages.
+     * @param dimension The dimension of the grid.
+     * @param cageCells The positions (starting from 0) of the cells in each cage.
+     * @param cageTargets The target number of each cage.
+     * @param cageOperators The target operator of each cage.
+     * @param cageCombinations The combinations for each cage, or null if they are
+     * to be worked out by the solver.
+     */
+    GridSolver(int dimension, int[][] cageCells, int[] cageTargets, char[] cageOperators, CageCombinations[] cageCombinations){
+        int cellCount = dimension * dimension;
+        this.dimension = dimension;
+        this.allValuesMask = ((1 << (dimension + 1)) - 1) & ~1;
+        this.values = new int[cellCount];
+        this.domains = new int[cellCount];
+        this.rowMasks = new int[dimension];
+        this.columnMasks = new int[dimension];
+        this.cellMasks = new int[cellCount];
+        this.cellCages = new int[cellCount];
+        this.cageCells = cageCells;
+        this.cageTargets = cageTargets;
+        this.cageOperators = cageOperators;
+        this.cageCombinations = cageCombinations;
+        this.cageFilledCounts = new int[cageCells.length];
+        this.cageSums = new int[cageCells.length];
+        this.cageProducts = new long[cageCells.length];
+        // each cell can lose each of its values and be placed once along a path of the search
+        this.trailCells = new int[cellCount * (dimension + 2)];
+        this.trailDomains = new int[cellCount * (dimension + 2)];
+        this.trailSize = 0;
+        this.queue = new int[cellCount];
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = Integer.MAX_VALUE;
+        this.storingSolutions = true;
+        this.cancelled = new AtomicBoolean();
+
+        // working out the combinations for each cage if they were not given
+        if(this.cageCombinations == null){
+            this.cageCombinations = new CageCombinations[cageCells.length];
+            for(int cage = 0; cage < cageCells.length; cage++){
+                this.cageCombinations[cage] = CageCombinations.make(dimension, cageCells[cage], cageTargets[cage], cageOperators[cage]);
+            }
+        }
+
+        // linking the cells to their cages and setting the values allowed in each cell
+        int largestCage = 0;
+        for(int cage = 0; cage < cageCells.length; cage++){
+            this.cageProducts[cage] = 1;
+            largestCage = Math.max(largestCage, cageCells[cage].length);
+            for(int index = 0; index < cageCells[cage].length; index++){
+                int cell = cageCells[cage][index];
+                this.cellCages[cell] = cage;
+                this.cellMasks[cell] = this.allValuesMask;
+
+                // only allowing the values that appear in the combinations for the cage
+                if(this.cageCombinations[cage] != null){
+                    this.cellMasks[cell] &= this.cageCombinations[cage].getCellMask(index);
+                }
+            }
+        }
+        this.cageSupports = new int[largestCage];
+        for(int cell = 0; cell < cellCount; cell++){
+            this.domains[cell] = this.cellMasks[cell];
+        }
+    }
+
+    /**
+     * Constructor for the class. Copies the state of the search from another
+     * solver, sharing the structure of the grid.
+     * @param solver The solver to be copied.
+     */
+    private GridSolver(GridSolver solver){
+        int cellCount = solver.values.length;
+        this.dimension = solver.dimension;
+        this.allValuesMask = solver.allValuesMask;
+        this.values = solver.values.clone();
+        this.domains = solver.domains.clone();
+        this.rowMasks = solver.rowMasks.clone();
+        this.columnMasks = solver.columnMasks.clone();
+        this.cellMasks = solver.cellMasks;
+        this.cellCages = solver.cellCages;
+        this.cageCells = solver.cageCells;
+        this.cageTargets = solver.cageTargets;
+        this.cageOperators = solver.cageOperators;
+        this.cageCombinations = solver.cageCombinations;
+        this.cageSupports = new int[solver.cageSupports.length];
+        this.cageFilledCounts = solver.cageFilledCounts.clone();
+        this.cageSums = solver.cageSums.clone();
+        this.cageProducts = solver.cageProducts.clone();
+        this.trailCells = new int[solver.trailCells.length];
+        this.trailDomains = new int[solver.trailDomains.length];
+        this.trailSize = 0;
+        this.queue = new int[cellCount];
+        this.solutions = new SolutionStore(this.dimension);
         this.solutionCount = 0;
+        this.solutionLimit = solver.solutionLimit;
+        this.storingSolutions = solver.storingSolutions;
+        this.cancelled = solver.cancelled;
+        this.depth = solver.depth;
+        this.statisticsEnabled = solver.statisticsEnabled;
+        this.statistics = solver.statistics == null ? null : solver.statistics.branch();
     }
 
     /**
      * Solves the grid instance associated with this solver.
-     * Returns an array of cell values for every solution that 
-     * is found for the grid
-     * @return The arraylist of arraylist of cell values for the 
-     * solution for the grid.
+     * Stores the cell values for every solution that is
+     * found for the grid.
      */
     public void solve(){
-        ArrayList<Integer> solution = new ArrayList<Integer>();
-
-        int rowCount  =  0;
-        // iterating through rows
-        for(ArrayList<Cell> row : this.grid.getRows()){
-            int cellCount = 0;
-            // iterating over row
-            for(Cell cell : row){
-                // testing if cell is blank
-                if(cell.getPossibleValue() == 0){
-                    // if blank, iterating values
-                    for(int possibleValue = 1; possibleValue <= this.grid.getDimension(); possibleValue++){
-                        // testing if value is possible
-                        if(isPossible(cell, possibleValue)){
-                            // if possible, inserting it
-                            cell.setPossibleValue(possibleValue);                   
-                            solve(); // recursive call
-                            cell.setPossibleValue(0);        
-                        }
+        this.solve(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Solves the grid instance associated with this solver, stopping once
+     * the given number of solutions have been found. Stores the cell values
+     * for each of the solutions that were found.
+     * @param solutionLimit The maximum number of solutions to be found.
+     */
+    public void solve(int solutionLimit){
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = solutionLimit;
+        this.storingSolutions = true;
+        this.solutionVisitor = null;
+        this.startSearch();
+    }
+
+    /**
+     * Solves the grid instance associated with this solver, passing each solution to
+     * the visitor as soon as it is found instead of storing it. The search stops once
+     * the given number of solutions have been found, or when the visitor asks it to.
+     * @param solutionLimit The maximum number of solutions to be found.
+     * @param solutionVisitor The visitor given each solution.
+     */
+    public void solve(int solutionLimit, SolutionVisitor solutionVisitor){
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = solutionLimit;
+        this.storingSolutions = false;
+        this.solutionVisitor = solutionVisitor;
+        try{
+            this.startSearch();
+        }
+        finally{
+            this.solutionVisitor = null;
+        }
+    }
+
+    /**
+     * Counts the solutions for the grid, without storing them. The search stops
+     * as soon as the given number of solutions have been found, so testing if a
+     * grid has a unique solution only needs a limit of two.
+     * @param solutionLimit The number of solutions after which counting stops.
+     * @return The number of solutions found, which is at most the limit.
+     */
+    public int countSolutions(int solutionLimit){
+        this.solutionCount = 0;
+        this.solutionLimit = solutionLimit;
+        this.storingSolutions = false;
+        this.solutionVisitor = null;
+        this.startSearch();
+        return this.solutionCount;
+    }
+
+    /**
+     * Solves the grid instance associated with this solver in parallel, storing
+     * every solution found. The search tree is split into tasks at the first few
+     * branching cells, and these tasks are run on the given fork/join pool, which
+     * balances the work between its threads by work stealing.
+     * @param pool The pool the tasks are run on.
+     */
+    public void solveParallel(ForkJoinPool pool){
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = Integer.MAX_VALUE;
+        this.storingSolutions = true;
+        this.solutionVisitor = null;
+        this.startParallelSearch(pool);
+    }
+
+    /**
+     * Solves the grid instance associated with this solver in parallel, using the
+     * common fork/join pool (which has a thread for each core).
+     */
+    public void solveParallel(){
+        this.solveParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts every solution for the grid in parallel, without storing them, using
+     * the common fork/join pool. The count stops early if the solver is cancelled.
+     * @return The number of solutions found.
+     */
+    public int countSolutionsParallel(){
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = Integer.MAX_VALUE;
+        this.storingSolutions = false;
+        this.solutionVisitor = null;
+        this.startParallelSearch(ForkJoinPool.commonPool());
+        return this.solutionCount;
+    }
+
+    /**
+     * Propagates the rules of the empty grid and then searches it in parallel, by
+     * splitting the search tree into tasks (see GridSolverTask) that are run on a
+     * fork/join pool.
+     * @param pool The pool the tasks are run on.
+     */
+    private void startParallelSearch(ForkJoinPool pool){
+        this.resetSearch();
+        this.startStatistics();
+        GameEvents.SolveEvent event = new GameEvents.SolveEvent();
+        event.begin();
+
+        // propagating a copy of the empty grid, and splitting the search from there
+        GridSolver root = this.copy();
+        if(root.propagateGrid()){
+            this.addSolutions(pool.invoke(new GridSolverTask(root, 0)));
+        }
+        if(this.statistics != null){
+            this.statistics.finish(this.solutionCount);
+        }
+        this.commitSolveEvent(event, true);
+    }
+
+    /**
+     * Propagates the rules of the empty grid and then searches it. The grid is
+     * returned to its empty state afterwards, so the solver can be run again.
+     */
+    private void startSearch(){
+        this.resetSearch();
+        this.startStatistics();
+        GameEvents.SolveEvent event = new GameEvents.SolveEvent();
+        event.begin();
+        if(this.propagateGrid()){
+            this.search();
+        }
+        if(this.statistics != null){
+            this.statistics.finish(this.solutionCount);
+        }
+        this.undo(0);
+        this.commitSolveEvent(event, false);
+    }
+
+    /**
+     * Ends the flight recorder event for a search, recording what the search found
+     * if the event is being recorded.
+     * @param event The event started with the search.
+     * @param parallel True if the search was run in parallel, false if not.
+     */
+    private void commitSolveEvent(GameEvents.SolveEvent event, boolean parallel){
+        event.end();
+        if(event.shouldCommit()){
+            event.dimension = this.dimension;
+            event.cageCount = this.cageCells.length;
+            event.solutionCount = this.solutionCount;
+            event.nodeCount = this.nodeCount;
+            event.parallel = parallel;
+            event.cancelled = this.cancelled.get();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the grid to its empty state before a new search, ending any search
+     * that was being run by findNextSolution. The solver is no longer cancelled, so
+     * it can be run again after an earlier search was cancelled.
+     */
+    private void resetSearch(){
+        this.searchNumber++;
+        this.cancelled.set(false);
+        this.resumableSearchRunning = false;
+        this.undo(0);
+        this.nodeCount = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Gets an iterator over the solutions of the grid, which only searches for each
+     * solution when it is asked for, so a grid with a very large number of solutions
+     * can be looked through a few solutions at a time. Each solution is a new array
+     * holding the value of each cell. The iterator stops working if another search
+     * is started on this solver.
+     * @return The iterator over the solutions.
+     */
+    public Iterator<int[]> solutionIterator(){
+        return new SolutionIterator(this);
+    }
+
+    /**
+     * Gets a stream of the solutions of the grid, which are found as the stream is
+     * consumed (see solutionIterator).
+     * @return The stream of solutions.
+     */
+    public Stream<int[]> solutionStream(){
+        Spliterator<int[]> spliterator = Spliterators.spliteratorUnknownSize(this.solutionIterator(),
+                                                                             Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Starts a search that is run a step at a time by findNextSolution. Rather than
+     * recursing, the search keeps the cell and the values still to be tried at each
+     * level in arrays, so it can stop at each solution and carry on from there later.
+     * @return The number of the search, which must be passed to findNextSolution.
+     */
+    int startResumableSearch(){
+        this.solutions = new SolutionStore(this.dimension);
+        this.solutionCount = 0;
+        this.solutionLimit = Integer.MAX_VALUE;
+        this.storingSolutions = false;
+        this.solutionVisitor = null;
+        this.resetSearch();
+        this.startStatistics();
+        if(this.statistics != null){
+            this.statistics.pause(); // the search is only timed while findNextSolution is running
+        }
+
+        // there is at most one level for each cell
+        if(this.branchCells == null){
+            int cellCount = this.values.length;
+            this.branchCells = new int[cellCount];
+            this.branchCandidates = new int[cellCount];
+            this.branchTrailMarks = new int[cellCount];
+            this.branchSolutionCounts = new int[cellCount];
+        }
+        this.branchDepth = -1;
+        this.solutionPending = false;
+        this.resumableSearchStarting = true;
+        this.resumableSearchRunning = true;
+        return this.searchNumber;
+    }
+
+    /**
+     * Carries on the search started by startResumableSearch until the next solution is found.
+     * @param searchNumber The number of the search, given by startResumableSearch.
+     * @return A copy of the values of the next solution, or null if there are no more solutions.
+     * @throws ConcurrentModificationException If another search has been started on this solver since.
+     */
+    int[] findNextSolution(int searchNumber){
+        if(searchNumber != this.searchNumber){
+            throw new ConcurrentModificationException("Another search has been started on the solver");
+        }
+        if(!this.resumableSearchRunning){
+            return null;
+        }
+
+        // timing the search only while it runs, not while it waits for the next solution to be asked for
+        SolverStatistics statistics = this.statistics;
+        if(statistics != null){
+            statistics.resume();
+        }
+        try{
+            return this.searchNextSolution();
+        }
+        finally{
+            if(statistics != null){
+                statistics.pause();
+            }
+        }
+    }
+
+    /**
+     * Runs the search started by startResumableSearch until the next solution is found
+     * (see findNextSolution).
+     * @return A copy of the values of the next solution, or null if there are no more solutions.
+     */
+    private int[] searchNextSolution(){
+        if(this.resumableSearchStarting){
+            // propagating the empty grid, which may already be a solution
+            this.resumableSearchStarting = false;
+            if(this.propagateGrid() && this.enterResumableNode()){
+                return this.takeSolution();
+            }
+        }
+        else if(this.solutionPending){
+            // taking back the value that completed the last solution
+            this.solutionPending = false;
+            if(this.branchDepth >= 0){
+                this.undoBranch(this.branchDepth);
+            }
+        }
+
+        while(this.branchDepth >= 0 && !this.cancelled.get()){
+            int level = this.branchDepth;
+            int candidates = this.branchCandidates[level];
+
+            // going back up a level once every value has been tried at this one
+            if(candidates == 0){
+                this.branchDepth--;
+                if(this.branchDepth >= 0){
+                    this.undoBranch(this.branchDepth);
+                }
+                continue;
+            }
+
+            // placing the next value, and going down a level if it does not break the rules
+            int valueBit = candidates & -candidates;
+            this.branchCandidates[level] = candidates & (candidates - 1);
+            this.branchSolutionCounts[level] = this.solutionCount;
+            if(this.placeAndPropagate(this.branchCells[level], valueBit)){
+                if(this.enterResumableNode()){
+                    return this.takeSolution();
+                }
+            }
+            else{
+                this.undoBranch(level);
+            }
+        }
+
+        // there are no more solutions (or the search was cancelled)
+        this.resumableSearchRunning = false;
+        if(this.statistics != null){
+            this.statistics.finish(this.solutionCount);
+        }
+        this.undo(0);
+        return null;
+    }
+
+    /**
+     * Visits the node the resumable search has just reached, adding a level to the
+     * search if the grid is not yet full.
+     * @return True if the grid is full (so the node is a solution), false if not.
+     */
+    private boolean enterResumableNode(){
+        this.depth = this.branchDepth + 1;
+        this.visitNode();
+        int position = this.findBranchCell();
+        if(position == -1){
+            return true;
+        }
+        this.branchDepth++;
+        this.branchCells[this.branchDepth] = position;
+        this.branchCandidates[this.branchDepth] = this.domains[position];
+        this.branchTrailMarks[this.branchDepth] = this.trailSize;
+        return false;
+    }
+
+    /**
+     * Takes back the value placed at a level of the resumable search.
+     * @param level The level of the search.
+     */
+    private void undoBranch(int level){
+        this.undo(this.branchTrailMarks[level]);
+        if(this.statistics != null && this.solutionCount == this.branchSolutionCounts[level]){
+            this.statistics.recordBacktrack();
+        }
+    }
+
+    /**
+     * Records the solution the resumable search has found, which stays in the grid
+     * until the search carries on.
+     * @return A copy of the values of the solution.
+     */
+    private int[] takeSolution(){
+        if(this.statistics != null){
+            this.statistics.recordSolution();
+        }
+        this.solutionCount++;
+        this.solutionPending = true;
+        return this.values.clone();
+    }
+
+    /**
+     * Sets up the statistics for a new search, if they are being collected.
+     */
+    private void startStatistics(){
+        this.statistics = null;
+        if(this.statisticsEnabled){
+            this.statistics = new SolverStatistics(this.values.length);
+            this.statistics.start();
+        }
+    }
+
+    /**
+     * Propagates the rules of the empty grid, before any value has been tried.
+     * @return False if the grid has no solution, true otherwise.
+     */
+    boolean propagateGrid(){
+        this.queueHead = 0;
+        this.queueSize = 0;
+        boolean consistent = true;
+
+        // reducing every cage to the values that can meet its target
+        for(int cage = 0; cage < this.cageCells.length && consistent; cage++){
+            consistent = this.filterCage(cage);
+        }
+        // placing the cells that only have one possible value
+        for(int cell = 0; cell < this.values.length && consistent; cell++){
+            if(this.values[cell] == 0 && Integer.bitCount(this.domains[cell]) <= 1){
+                consistent = this.setDomain(cell, this.domains[cell]);
+            }
+        }
+
+        return consistent && this.propagate();
+    }
+
+    /**
+     * Recursive search used by the solve methods. Picks the empty cell with the
+     * fewest possible values and tries each of them in turn, propagating each
+     * placement before searching further.
+     */
+    void search(){
+        this.visitNode();
+        int position = this.findBranchCell();
+
+        // if there are no empty cells left, the state of the grid is a solution
+        if(position == -1){
+            if(this.storingSolutions){
+                this.addSolution();
+            }
+            if(this.statistics != null){
+                this.statistics.recordSolution();
+            }
+            this.solutionCount++; // incrementing the solution count
+            if(this.solutionVisitor != null && !this.solutionVisitor.visitSolution(this.values)){
+                this.solutionLimit = this.solutionCount; // the visitor has asked for the search to stop
+            }
+            return;
+        }
+
+        // iterating over the values that are possible for this cell
+        int candidates = this.domains[position];
+        while(candidates != 0){
+            int valueBit = candidates & -candidates;
+            candidates &= candidates - 1; // removing this value from the candidates
+
+            // placing the value, and searching further if it does not break the rules
+            int trailMark = this.trailSize;
+            int previousSolutionCount = this.solutionCount;
+            if(this.placeAndPropagate(position, valueBit)){
+                this.depth++;
+                this.search(); // recursive call
+                this.depth--;
+            }
+            this.undo(trailMark);
+            if(this.statistics != null && this.solutionCount == previousSolutionCount){
+                this.statistics.recordBacktrack();
+            }
+
+            // stopping the search once enough solutions have been found (or if it was cancelled)
+            if(this.solutionCount >= this.solutionLimit || this.cancelled.get()){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts a node of the search, letting the progress listener know how far the
+     * search has got every few thousand nodes.
+     */
+    void visitNode(){
+        if((++this.nodeCount & (progressInterval - 1)) == 0 && this.progressListener != null){
+            this.progressListener.accept(this.nodeCount);
+        }
+        if(this.statistics != null){
+            this.statistics.recordNode(this.depth);
+        }
+    }
+
+    /**
+     * Records a value that was tried and ruled out straight away (used when the
+     * search is split into tasks, see GridSolverTask).
+     */
+    void recordBacktrack(){
+        if(this.statistics != null){
+            this.statistics.recordBacktrack();
+        }
+    }
+
+    /**
+     * Setter method for the depth of the current node of the search (used when
+     * the search is split into tasks, see GridSolverTask).
+     * @param depth The number of cells branched on to reach the node.
+     */
+    void setDepth(int depth){
+        this.depth = depth;
+    }
+
+    /**
+     * Finds the empty cell with the fewest possible values, which is the cell
+     * the search branches on next.
+     * @return The position of the cell, or -1 if there are no empty cells.
+     */
+    int findBranchCell(){
+        int position = -1;
+        int fewestValues = Integer.MAX_VALUE;
+        for(int cell = 0; cell < this.values.length; cell++){
+            if(this.values[cell] == 0){
+                int valueCount = Integer.bitCount(this.domains[cell]);
+                if(valueCount < fewestValues){
+                    position = cell;
+                    fewestValues = valueCount;
+                    // a cell with two values cannot be beaten (cells with one value are already placed)
+                    if(valueCount == 2){
+                        break;
                     }
-                    return;
                 }
-                cellCount++;
             }
-            rowCount++;
         }
+        return position;
+    }
+
+    /**
+     * Places a value into a cell and propagates the placement.
+     * @param position The position of the cell.
+     * @param valueBit The value to be placed, as a bitmask.
+     * @return False if the grid can no longer be solved, true otherwise.
+     */
+    boolean placeAndPropagate(int position, int valueBit){
+        this.queueHead = 0;
+        this.queueSize = 0;
+        return this.setDomain(position, valueBit) && this.propagate();
+    }
+
+    /**
+     * Getter method for the values that are still possible for a cell.
+     * @param position The position of the cell.
+     * @return The bitmask of possible values.
+     */
+    int getDomain(int position){
+        return this.domains[position];
+    }
+
+    /**
+     * Makes a copy of this solver in its current state. The structure of the grid
+     * is shared, while the state of the search is copied, so the copy can carry on
+     * searching independently of this solver.
+     * @return The copy of this solver.
+     */
+    GridSolver copy(){
+        return new GridSolver(this);
+    }
+
+    /**
+     * Adds the solutions found by another solver to the solutions of this solver.
+     * @param solver The solver whose solutions are added.
+     */
+    void addSolutions(GridSolver solver){
+        this.solutions.addAll(solver.solutions);
+        this.solutionCount += solver.solutionCount;
+        this.nodeCount += solver.nodeCount;
+        if(this.statistics != null && solver.statistics != null){
+            this.statistics.add(solver.statistics);
+        }
+    }
+
+    /**
+     * Propagates the cells waiting in the queue, and then looks for hidden singles,
+     * until nothing more can be deduced.
+     * @return False if the grid can no longer be solved, true otherwise.
+     */
+    private boolean propagate(){
+        while(true){
+            // propagating the cells that have been placed
+            while(this.queueHead < this.queueSize){
+                if(!this.propagatePlacement(this.queue[this.queueHead++])){
+                    return false;
+                }
+            }
+
+            // looking for values that only fit in one cell of a row or column
+            int hiddenSingles = this.placeHiddenSingles();
+            if(hiddenSingles < 0){
+                return false;
+            }
+            if(hiddenSingles == 0){
+                return true;
+            }
+        }
+    }
 
-        // at this point, the state of the grid is a solution, so need to store this solution
-        this.solutions.add(new ArrayList<Integer>());
-        for(ArrayList<Cell> row : this.grid.getRows()){
-            for(Cell cell : row){
-                this.solutions.get(this.solutionCount).add(cell.getPossibleValue());
+    /**
+     * Removes the value of a placed cell from the other cells in its row and
+     * column, and reduces the other cells in its cage.
+     * @param position The position of the placed cell.
+     * @return False if the grid can no longer be solved, true otherwise.
+     */
+    private boolean propagatePlacement(int position){
+        int valueBit = 1 << this.values[position];
+        int row = position / this.dimension;
+        int column = position % this.dimension;
+
+        for(int index = 0; index < this.dimension; index++){
+            // removing the value from the row
+            int rowCell = row * this.dimension + index;
+            if(this.values[rowCell] == 0 && (this.domains[rowCell] & valueBit) != 0){
+                if(this.statistics != null){
+                    this.statistics.recordRowRejection();
+                }
+                if(!this.setDomain(rowCell, this.domains[rowCell] & ~valueBit)){
+                    return false;
+                }
+            }
+            // removing the value from the column
+            int columnCell = index * this.dimension + column;
+            if(this.values[columnCell] == 0 && (this.domains[columnCell] & valueBit) != 0){
+                if(this.statistics != null){
+                    this.statistics.recordColumnRejection();
+                }
+                if(!this.setDomain(columnCell, this.domains[columnCell] & ~valueBit)){
+                    return false;
+                }
             }
         }
-        this.solutionCount++; // incrementing the solution count
+
+        return this.filterCage(this.cellCages[position]);
     }
 
     /**
-     * Given a Cell object, and a value, will test if this value can 
-     * be placed into the cell.
-     * @param cell The Cell object to be checked.
-     * @param value The value to be tested within the cell.
-     * @return  True if the value can be inserted, false if not.
+     * Reduces the empty cells of a cage to the values that can still meet the target
+     * of the cage. If the cage is full, checks that the target has been met.
+     * @param cage The index of the cage.
+     * @return False if the cage can no longer meet its target, true otherwise.
      */
-    public boolean isPossible(Cell targetCell, int targetValue){
-        /**
-         * CHECKING IF CELL VALUE IS POSSIBLE:
-         *      -check if samevalue is in any of the other cells in the column
-         *      - check if the same value is inany of the other cells in the row
-         *      - checl if the value can be put into the cage and the cage still be okay
-         *      - if none of these constraints broke, the value must be okay, and so return true
-         */
+    private boolean filterCage(int cage){
+        if(this.cageFilledCounts[cage] == this.cageCells[cage].length){
+            return this.cageTargetMet(cage);
+        }
+        if(this.cageCombinations[cage] != null){
+            return this.filterCageFromCombinations(cage);
+        }
 
-        // checking if the value can be placed into this cell's row
-        ArrayList<Cell> row = this.grid.getRowFromCell(targetCell);
-        for(Cell cell : row){
-            if(cell.getPossibleValue() != 0){
-                if(cell.getPossibleValue() == targetValue && !(cell==targetCell)){
-                    return false; // returning false if a cell is found with this  value
+        // no combinations are stored for the cage, so applying the operator to each value
+        for(int cell : this.cageCells[cage]){
+            if(this.values[cell] == 0){
+                // keeping only the values that the cage allows
+                int domain = 0;
+                int candidates = this.domains[cell];
+                while(candidates != 0){
+                    int value = Integer.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    if(this.cageAllows(cage, value)){
+                        domain |= 1 << value;
+                    }
+                }
+                this.recordCageRejections(cage, this.domains[cell], domain);
+                if(!this.setDomain(cell, domain)){
+                    return false;
                 }
             }
         }
+        return true;
+    }
 
-        // checking if the value can be placed into the cell's column
-        ArrayList<Cell> column = this.grid.getColumnFromCell(targetCell);
-        for(Cell cell : column){
-            if(cell.getPossibleValue() != 0){
-                if(cell.getPossibleValue() == targetValue && !(cell==targetCell)){
-                    return false; // returning false if a cell is found with this  value
+    /**
+     * Reduces the empty cells of a cage to the values used by the combinations of
+     * the cage that are still possible (every value of the combination is still in
+     * the domain of its cell).
+     * @param cage The index of the cage.
+     * @return False if none of the combinations are still possible, true otherwise.
+     */
+    private boolean filterCageFromCombinations(int cage){
+        int[] cells = this.cageCells[cage];
+        if(!this.cageCombinations[cage].findSupports(this.domains, cells, this.cageSupports)){
+            return false;
+        }
+
+        // keeping only these values in the empty cells
+        for(int index = 0; index < cells.length; index++){
+            if(this.cageSupports[index] == 0){
+                return false;
+            }
+            if(this.values[cells[index]] == 0){
+                this.recordCageRejections(cage, this.domains[cells[index]], this.domains[cells[index]] & this.cageSupports[index]);
+                if(!this.setDomain(cells[index], this.domains[cells[index]] & this.cageSupports[index])){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the values of a cell that were ruled out by its cage, if statistics
+     * are being collected.
+     * @param cage The index of the cage.
+     * @param oldDomain The domain of the cell before the cage was filtered.
+     * @param newDomain The domain of the cell after the cage was filtered.
+     */
+    private void recordCageRejections(int cage, int oldDomain, int newDomain){
+        if(this.statistics != null && oldDomain != newDomain){
+            this.statistics.recordCageRejections(this.cageOperators[cage], Integer.bitCount(oldDomain & ~newDomain));
+        }
+    }
+
+    /**
+     * Finds the values in each row and column that only fit into one of its cells,
+     * and places them into these cells.
+     * @return The number of values placed, or -1 if a row or column has a value
+     * that no longer fits into any of its cells.
+     */
+    private int placeHiddenSingles(){
+        int placedCount = 0;
+        for(int unit = 0; unit < this.dimension * 2; unit++){
+            // units 0 to dimension - 1 are the rows, the rest are the columns
+            int start = unit < this.dimension ? unit * this.dimension : unit - this.dimension;
+            int step = unit < this.dimension ? 1 : this.dimension;
+
+            // finding the values that appear in at least one, and at least two, of the cells
+            int once = 0;
+            int twice = 0;
+            for(int index = 0, cell = start; index < this.dimension; index++, cell += step){
+                twice |= once & this.domains[cell];
+                once |= this.domains[cell];
+            }
+            if(once != this.allValuesMask){
+                return -1;
+            }
+
+            // placing the values that appear in exactly one empty cell
+            int usedValues = unit < this.dimension ? this.rowMasks[unit] : this.columnMasks[unit - this.dimension];
+            int singles = once & ~twice & ~usedValues;
+            while(singles != 0){
+                int valueBit = singles & -singles;
+                singles &= singles - 1;
+                for(int index = 0, cell = start; index < this.dimension; index++, cell += step){
+                    if((this.domains[cell] & valueBit) != 0){
+                        if(this.values[cell] == 0){
+                            if(!this.setDomain(cell, valueBit)){
+                                return -1;
+                            }
+                            placedCount++;
+                        }
+                        break;
+                    }
                 }
             }
         }
-        
-        // checking if the value can be placed into the cells cage
-        if(!targetCell.getCage().isPossible(targetValue)){
+        return placedCount;
+    }
+
+    /**
+     * Changes the domain of a cell, recording the change on the trail. If only one
+     * value is left, the value is placed into the cell.
+     * @param position The position of the cell.
+     * @param domain The new domain for the cell.
+     * @return False if the cell has no possible values left, or its value clashes
+     * with its row or column, true otherwise.
+     */
+    private boolean setDomain(int position, int domain){
+        if(domain != this.domains[position]){
+            this.trailCells[this.trailSize] = position;
+            this.trailDomains[this.trailSize] = this.domains[position];
+            this.trailSize++;
+            this.domains[position] = domain;
+        }
+        if(domain == 0){
             return false;
         }
 
-        return true; // returning true if the value is allowed
+        // placing the value if it is the only one left (naked single)
+        if(this.values[position] == 0 && (domain & (domain - 1)) == 0){
+            int value = Integer.numberOfTrailingZeros(domain);
+            if((this.rowMasks[position / this.dimension] & domain) != 0
+                || (this.columnMasks[position % this.dimension] & domain) != 0){
+                return false;
+            }
+            this.place(position, value);
+            this.trailCells[this.trailSize] = -position - 1;
+            this.trailSize++;
+            this.queue[this.queueSize++] = position;
+        }
+        return true;
+    }
+
+    /**
+     * Undoes the changes on the trail back to the given size.
+     * @param trailMark The size of the trail to return to.
+     */
+    private void undo(int trailMark){
+        while(this.trailSize > trailMark){
+            this.trailSize--;
+            int position = this.trailCells[this.trailSize];
+            if(position < 0){
+                this.unplace(-position - 1);
+            }
+            else{
+                this.domains[position] = this.trailDomains[this.trailSize];
+            }
+        }
+    }
+
+    /**
+     * Places a value into a cell and updates the row, column and cage state.
+     * @param position The position of the cell.
+     * @param value The value to be placed into the cell.
+     */
+    private void place(int position, int value){
+        int cage = this.cellCages[position];
+        this.values[position] = value;
+        this.rowMasks[position / this.dimension] |= 1 << value;
+        this.columnMasks[position % this.dimension] |= 1 << value;
+        this.cageFilledCounts[cage]++;
+        this.cageSums[cage] += value;
+        this.cageProducts[cage] *= value;
+    }
+
+    /**
+     * Removes the value from a cell and reverts the row, column and cage state.
+     * @param position The position of the cell.
+     */
+    private void unplace(int position){
+        int cage = this.cellCages[position];
+        int value = this.values[position];
+        this.values[position] = 0;
+        this.rowMasks[position / this.dimension] &= ~(1 << value);
+        this.columnMasks[position % this.dimension] &= ~(1 << value);
+        this.cageFilledCounts[cage]--;
+        this.cageSums[cage] -= value;
+        this.cageProducts[cage] /= value;
+    }
+
+    /**
+     * Tests if the given value can be inserted into an empty cell of a cage without
+     * breaking the rules of the cage. Addition and multiplication cages are checked
+     * as they are filled (taking into account that every cell holds at least a 1),
+     * and all cages are checked against their target by the last value.
+     * @param cage The index of the cage.
+     * @param value The value to be tested within the cage.
+     * @return True if the value can be inserted, false if not.
+     */
+    private boolean cageAllows(int cage, int value){
+        char operator = this.cageOperators[cage];
+        int target = this.cageTargets[cage];
+        int emptyCellsAfter = this.cageCells[cage].length - this.cageFilledCounts[cage] - 1;
+        int sum = this.cageSums[cage] + value;
+        long product = this.cageProducts[cage] * value;
+
+        // cage is not full, only addition and multiplication can be checked
+        if(emptyCellsAfter > 0){
+            if(operator == 'x' || operator == '*'){
+                return product <= target && target % product == 0;
+            }
+            if(operator == '+'){
+                return sum + emptyCellsAfter <= target;
+            }
+            return true;
+        }
+
+        // cage is full, so the result must be the target
+        int largest = value;
+        for(int cell : this.cageCells[cage]){
+            largest = Math.max(largest, this.values[cell]);
+        }
+        return CageCombinations.getResult(this.cageOperators[cage], sum, product, largest) == target;
+    }
+
+    /**
+     * Tests if a full cage meets its target.
+     * @param cage The index of the cage.
+     * @return True if the target is met, false if not.
+     */
+    private boolean cageTargetMet(int cage){
+        int largest = 0;
+        for(int cell : this.cageCells[cage]){
+            largest = Math.max(largest, this.values[cell]);
+        }
+        return CageCombinations.getResult(this.cageOperators[cage], this.cageSums[cage], this.cageProducts[cage], largest)
+               == this.cageTargets[cage];
+    }
+
+    /**
+     * Stores the current state of the grid as a solution.
+     */
+    private void addSolution(){
+        this.solutions.add(this.values);
     }
 
     /**
@@ -116,10 +1090,117 @@ public class GridSolver{
     }
 
     /**
-     * Getter methos for the solutions found.
+     * Stops the search as soon as possible. Can be called from any thread while
+     * the solver is running, in which case the solutions found so far are kept.
+     */
+    public void cancel(){
+        this.cancelled.set(true);
+    }
+
+    /**
+     * Getter method for whether the search was cancelled.
+     * @return True if the search was cancelled, false if not.
+     */
+    public boolean isCancelled(){
+        return this.cancelled.get();
+    }
+
+    /**
+     * Getter method for the number of positions visited by the last search.
+     * @return The number of search nodes.
+     */
+    public long getNodeCount(){
+        return this.nodeCount;
+    }
+
+    /**
+     * Setter method for the listener told about the progress of the search. The
+     * listener is given the number of nodes searched so far every few thousand
+     * nodes, on the thread running the search.
+     * @param progressListener The listener, or null for no updates.
+     */
+    public void setProgressListener(LongConsumer progressListener){
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Setter method for whether statistics are collected for each search. Collecting
+     * statistics slows the search down slightly, so they are not collected unless asked for.
+     * @param statisticsEnabled True if statistics are to be collected, false if not.
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled){
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * Getter method for the statistics of the last search.
+     * @return The statistics, or null if they were not collected.
+     */
+    public SolverStatistics getStatistics(){
+        return this.statistics;
+    }
+
+    /**
+     * Getter method for the solutions found.
      * @return The solutions found.
      */
-    public ArrayList<ArrayList<Integer>> getSolutions(){
+    public SolutionStore getSolutions(){
         return this.solutions;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the positions (starting from 0) of the cells in each of the cages in a grid.
+     * @param grid The grid to get the cages from.
+     * @return The positions of the cells in each cage.
+     */
+    private static int[][] getCageCells(Grid grid){
+        int[][] cageCells = new int[grid.getCages().size()][];
+        for(int cage = 0; cage < cageCells.length; cage++){
+            ArrayList<Cell> cells = grid.getCages().get(cage).getCells();
+            cageCells[cage] = new int[cells.size()];
+            for(int cell = 0; cell < cells.size(); cell++){
+                cageCells[cage][cell] = cells.get(cell).getPosition() - 1;
+            }
+        }
+        return cageCells;
+    }
+
+    /**
+     * Gets the target number of each of the cages in a grid.
+     * @param grid The grid to get the cages from.
+     * @return The target numbers of the cages.
+     */
+    private static int[] getCageTargets(Grid grid){
+        int[] cageTargets = new int[grid.getCages().size()];
+        for(int cage = 0; cage < cageTargets.length; cage++){
+            cageTargets[cage] = grid.getCages().get(cage).getTargetNumber();
+        }
+        return cageTargets;
+    }
+
+    /**
+     * Gets the combinations of each of the cages in a grid.
+     * @param grid The grid to get the cages from.
+     * @return The combinations of the cages.
+     */
+    private static CageCombinations[] getCageCombinations(Grid grid){
+        CageCombinations[] cageCombinations = new CageCombinations[grid.getCages().size()];
+        for(int cage = 0; cage < cageCombinations.length; cage++){
+            cageCombinations[cage] = grid.getCages().get(cage).getCombinations();
+        }
+        return cageCombinations;
+    }
+
+    /**
+     * Gets the target operator of each of the cages in a grid.
+     * @param grid The grid to get the cages from.
+     * @return The target operators of the cages.
+     */
+    private static char[] getCageOperators(Grid grid){
+        char[] cageOperators = new char[grid.getCages().size()];
+        for(int cage = 0; cage < cageOperators.length; cage++){
+            cageOperators[cage] = grid.getCages().get(cage).getTargetOperator();
+        }
+        return cageOperators;
+    }
+}
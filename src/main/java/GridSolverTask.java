@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Represents part of the search for the solutions of a grid, so that the search
+ * can be run in parallel on a fork/join pool. A task branches on the cell with
+ * the fewest possible values, and makes a new task for each value, until the
+ * split depth is reached. After this, the task searches the rest of its part of
+ * the tree itself. The solutions found by the tasks are merged back in order.
+ */
+public class GridSolverTask extends RecursiveTask<GridSolver>{
+    private GridSolver solver; // the solver holding the state of the grid for this task
+    private int depth; // the number of cells that have been branched on before this task
+
+    // constants
+    private static final long serialVersionUID = 1L;
+    private static final int splitDepth = 4;
+
+    /**
+     * Constructor for the class.
+     * @param solver The solver holding the state of the grid for this task.
+     * @param depth The number of cells that have been branched on before this task.
+     */
+    public GridSolverTask(GridSolver solver, int depth){
+        this.solver = solver;
+        this.depth = depth;
+    }
+
+    /**
+     * Searches this task's part of the tree, splitting it into more tasks if
+     * the split depth has not yet been reached.
+     * @return The solver, holding the solutions found for this part of the tree.
+     */
+    @Override
+    protected GridSolver compute(){
+        // stopping straight away if the search was cancelled (the flag is shared by every task)
+        if(this.solver.isCancelled()){
+            return this.solver;
+        }
+
+        // searching sequentially once deep enough (or if the grid is already full)
+        int position = this.solver.findBranchCell();
+        if(position == -1 || this.depth == splitDepth){
+            this.solver.search();
+            return this.solver;
+        }
+
+        // making a new task for each value that is possible for the cell
+        this.solver.visitNode();
+        ArrayList<GridSolverTask> tasks = new ArrayList<GridSolverTask>();
+        int candidates = this.solver.getDomain(position);
+        while(candidates != 0){
+            int valueBit = candidates & -candidates;
+            candidates &= candidates - 1;
+
+            GridSolver branch = this.solver.copy();
+            if(branch.placeAndPropagate(position, valueBit)){
+                branch.setDepth(this.depth + 1);
+                tasks.add(new GridSolverTask(branch, this.depth + 1));
+            }
+            else{
+                this.solver.recordBacktrack();
+            }
+        }
+
+        // running the tasks and merging their solutions
+        invokeAll(tasks);
+        for(GridSolverTask task : tasks){
+            this.solver.addSolutions(task.join());
+        }
+        return this.solver;
+    }
+}
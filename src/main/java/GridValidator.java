@@ -0,0 +1,210 @@
+/**
+ * Keeps track of whether the values in a grid follow the rules of Mathdoku as
+ * they are entered. The number of times each value appears in each row and column,
+ * the number of filled cells and the sum and product of each cage are updated
+ * every time a cell changes, so checking if the grid is complete (or has a clash)
+ * does not need the whole grid to be looked at again.
+ */
+public class GridValidator{
+    private int dimension; // the dimension of the grid
+    private int[] values; // the value in each cell (0 if the cell is empty)
+    private int[][] rowCounts; // the number of times each value appears in each row
+    private int[][] columnCounts; // the number of times each value appears in each column
+    private int clashCount; // the number of repeated values across all rows and columns
+    private int filledCount; // the number of cells that have a value
+    private int[] cellCages; // the index of the cage each cell belongs to (-1 if it is not in a cage)
+    private int cageCount; // the number of cages in the grid
+    private int[] cageTargets; // the target number of each cage
+    private char[] cageOperators; // the target operator of each cage
+    private int[][] cageCells; // the positions (starting from 0) of the cells in each cage
+    private int[] cageFilledCounts; // the number of filled cells in each cage
+    private int[] cageSums; // the sum of the values in each cage
+    private long[] cageProducts; // the product of the values in each cage
+    private boolean[] cageCorrect; // whether each cage is full and meets its target
+    private int correctCageCount; // the number of cages that are full and meet their target
+
+    /**
+     * Constructor for the class.
+     * @param dimension The dimension of the grid being validated.
+     */
+    public GridValidator(int dimension){
+        this.dimension = dimension;
+        this.values = new int[dimension * dimension];
+        this.rowCounts = new int[dimension][dimension + 1];
+        this.columnCounts = new int[dimension][dimension + 1];
+        this.clashCount = 0;
+        this.filledCount = 0;
+        this.cellCages = new int[dimension * dimension];
+        // there can be at most one cage per cell
+        this.cageCount = 0;
+        this.cageTargets = new int[dimension * dimension];
+        this.cageOperators = new char[dimension * dimension];
+        this.cageCells = new int[dimension * dimension][];
+        this.cageFilledCounts = new int[dimension * dimension];
+        this.cageSums = new int[dimension * dimension];
+        this.cageProducts = new long[dimension * dimension];
+        this.cageCorrect = new boolean[dimension * dimension];
+        this.correctCageCount = 0;
+
+        for(int cell = 0; cell < this.cellCages.length; cell++){
+            this.cellCages[cell] = -1;
+        }
+    }
+
+    /**
+     * Adds a cage to be tracked. The values already in the cells of the cage
+     * are counted towards it.
+     * @param cage The cage that was added to the grid.
+     */
+    public void addCage(Cage cage){
+        int[] cells = new int[cage.getCells().size()];
+        for(int cell = 0; cell < cells.length; cell++){
+            cells[cell] = cage.getCells().get(cell).getPosition() - 1;
+        }
+        this.addCage(cells, cage.getTargetNumber(), cage.getTargetOperator());
+    }
+
+    /**
+     * Adds a cage to be tracked, given as the positions of its cells. The values
+     * already in the cells of the cage are counted towards it.
+     * @param cells The positions (starting from 0) of the cells in the cage.
+     * @param targetNumber The target number of the cage.
+     * @param targetOperator The target operator of the cage.
+     */
+    public void addCage(int[] cells, int targetNumber, char targetOperator){
+        int index = this.cageCount++;
+        int filledCount = 0;
+        int sum = 0;
+        long product = 1;
+        for(int cell = 0; cell < cells.length; cell++){
+            this.cellCages[cells[cell]] = index;
+            if(this.values[cells[cell]] != 0){
+                filledCount++;
+                sum += this.values[cells[cell]];
+                product *= this.values[cells[cell]];
+            }
+        }
+
+        this.cageTargets[index] = targetNumber;
+        this.cageOperators[index] = targetOperator;
+        this.cageCells[index] = cells;
+        this.cageFilledCounts[index] = filledCount;
+        this.cageSums[index] = sum;
+        this.cageProducts[index] = product;
+        this.cageCorrect[index] = false;
+        this.updateCage(index);
+    }
+
+    /**
+     * Records the change of the value within a cell.
+     * @param position The position (starting from 0) of the cell.
+     * @param value The new value of the cell (0 if it was cleared).
+     */
+    public void setValue(int position, int value){
+        int oldValue = this.values[position];
+        if(oldValue == value){
+            return;
+        }
+        int row = position / this.dimension;
+        int column = position % this.dimension;
+        int cage = this.cellCages[position];
+
+        // removing the old value from the row, column and cage
+        if(oldValue != 0){
+            if(--this.rowCounts[row][oldValue] > 0){
+                this.clashCount--;
+            }
+            if(--this.columnCounts[column][oldValue] > 0){
+                this.clashCount--;
+            }
+            this.filledCount--;
+            if(cage != -1){
+                this.cageFilledCounts[cage]--;
+                this.cageSums[cage] -= oldValue;
+                this.cageProducts[cage] /= oldValue;
+            }
+        }
+
+        // adding the new value to the row, column and cage
+        if(value != 0){
+            if(this.rowCounts[row][value]++ > 0){
+                this.clashCount++;
+            }
+            if(this.columnCounts[column][value]++ > 0){
+                this.clashCount++;
+            }
+            this.filledCount++;
+            if(cage != -1){
+                this.cageFilledCounts[cage]++;
+                this.cageSums[cage] += value;
+                this.cageProducts[cage] *= value;
+            }
+        }
+
+        this.values[position] = value;
+        if(cage != -1){
+            this.updateCage(cage);
+        }
+    }
+
+    /**
+     * Works out if a cage is full and meets its target, and updates the count
+     * of correct cages.
+     * @param cage The index of the cage.
+     */
+    private void updateCage(int cage){
+        int[] cells = this.cageCells[cage];
+        boolean correct = false;
+        if(this.cageFilledCounts[cage] == cells.length){
+            // the cage is full, so applying its operator to the values
+            int largest = 0;
+            for(int cell : cells){
+                largest = Math.max(largest, this.values[cell]);
+            }
+            long result = CageCombinations.getResult(this.cageOperators[cage],
+                                                     this.cageSums[cage],
+                                                     this.cageProducts[cage],
+                                                     largest);
+            correct = result == this.cageTargets[cage];
+        }
+
+        // updating the number of correct cages
+        if(correct != this.cageCorrect[cage]){
+            this.correctCageCount += correct ? 1 : -1;
+            this.cageCorrect[cage] = correct;
+        }
+    }
+
+    /**
+     * Checks if the grid is complete. That is, if every cell has a value, no value
+     * is repeated in a row or column, and every cage meets its target.
+     * @return True if the grid is complete, false if not.
+     */
+    public boolean isCorrect(){
+        return this.isFull() && this.clashCount == 0 && this.correctCageCount == this.cageCount;
+    }
+
+    /**
+     * Checks if a value is repeated within any row or column of the grid.
+     * @return True if there is a repeated value, false if not.
+     */
+    public boolean hasClash(){
+        return this.clashCount > 0;
+    }
+
+    /**
+     * Checks if every cell of the grid has a value.
+     * @return True if the grid is full, false if not.
+     */
+    public boolean isFull(){
+        return this.filledCount == this.values.length;
+    }
+
+    /**
+     * Checks if no cell of the grid has a value.
+     * @return True if the grid is empty, false if not.
+     */
+    public boolean isEmpty(){
+        return this.filledCount == 0;
+    }
+}
@@ -17,6 +17,10 @@ public class Mathdoku extends Application {
     private static final String titleName = "mathdoku";
     private static final String authorName = "charles powell";
     private Game game;
+    private String typedValue = ""; // the value most recently typed into the selected cell
+    private Cell typedCell; // the cell the value was typed into
+    private long typedTime; // the time (in milliseconds) the last digit was typed
+    private static final long multiDigitDelay = 1000; // the time within which two digits make a single value
 
     @Override
     public void start(Stage stage) {
@@ -29,14 +33,10 @@ public class Mathdoku extends Application {
 
         // adding event listener to scene to register keypress
         scene.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
-            // testing if it was a digit, but not 0
-            if(event.getCode().isDigitKey() && !event.getCode().equals(KeyCode.DIGIT0)){
+            // testing if it was a digit
+            if(event.getCode().isDigitKey()){
                 try{
-                    // making sure the digit is less than the dimension
-                    if(Integer.parseInt(event.getText()) <= this.game.getGrid().getDimension()){
-                        // passing the digit into the method to add it
-                        this.game.getGrid().enterValueIntoSelectedCell(event.getText());
-                    }
+                    this.enterDigit(event.getText());
                 }
                 catch(Exception e){}
             }
@@ -70,6 +70,50 @@ public class Mathdoku extends Application {
         stage.show();
     }
 
+    /**
+     * Saves the game when the application is closed, so it can be resumed.
+     */
+    @Override
+    public void stop(){
+        if(this.game != null){
+            this.game.close();
+        }
+    }
+
+    /**
+     * Enters a typed digit into the selected cell. For grids larger than 9x9, a digit
+     * typed soon after another one into the same cell is joined onto it (e.g., '1'
+     * followed by '2' enters 12), as long as the joined value fits in the grid.
+     * @param digit The digit that was typed.
+     */
+    private void enterDigit(String digit){
+        Grid grid = this.game.getGrid();
+        long time = System.currentTimeMillis();
+        String value = digit;
+
+        // joining the digit onto the last one if it was typed quickly into the same cell
+        if(grid.getDimension() > 9 && grid.getSelectedCell() == this.typedCell
+            && time - this.typedTime < multiDigitDelay && this.typedValue.length() == 1
+            && Integer.parseInt(this.typedValue + digit) <= grid.getDimension()){
+            value = this.typedValue + digit;
+        }
+
+        // making sure the value is between 1 and the dimension (a rejected digit, such
+        // as a leading 0, is not kept to be joined onto)
+        int number = Integer.parseInt(value);
+        if(number < 1 || number > grid.getDimension()){
+            this.typedValue = "";
+            return;
+        }
+
+        // passing the value into the method to add it
+        grid.enterValueIntoSelectedCell(String.valueOf(number));
+
+        this.typedValue = String.valueOf(number);
+        this.typedCell = grid.getSelectedCell();
+        this.typedTime = time;
+    }
+
     public static void main(String[] args) {
         launch();
     }
@@ -0,0 +1,244 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of the moves made since the game was last saved as a snapshot
+ * (see GameSnapshot). If the application crashes, the game is rebuilt by replaying
+ * the journal over the last snapshot. The journal is written by GameSaver on its
+ * background thread.
+ *
+ * The file is preallocated (filled with zeros) in blocks, so appending a move only
+ * writes over space that is already part of the file. The format of the journal (all
+ * numbers are big-endian) is:
+ *      - a header of four ints: the magic number 'MDJL', the version of the format,
+ *        the generation of the snapshot the moves were made after, and 0
+ *      - a record of two ints for each move: the move (see makeMove) and a check of
+ *        the move against the generation
+ * The first record that fails its check marks the end of the journal. This is the
+ * first unused record (which is zero), a record that was only partly written, or a
+ * record left over from an older generation.
+ */
+public class MoveJournal implements Closeable{
+    private FileChannel channel; // the channel the journal is written through
+    private ByteBuffer buffer; // holds the records being written
+    private int generation; // the generation of the snapshot the moves follow
+    private long position; // the position the next record is written to
+    private long allocatedSize; // the size the file has been preallocated to
+
+    // constants
+    static final int enterValueMove = 1; // a value entered into (or cleared from) a cell
+    static final int clearGridMove = 2; // every cell of the grid cleared
+    static final int undoMove = 3; // the newest event undone
+    static final int redoMove = 4; // the newest undone event redone
+    static final int hintMove = 5; // a cell revealed by a hint (after its value was entered)
+    private static final int magicNumber = 0x4D444A4C; // 'MDJL'
+    private static final int version = 1; // the version of the format written by the journal
+    private static final int headerSize = 16; // the size of the header in bytes
+    private static final int recordSize = 8; // the size of each record in bytes
+    private static final int allocationRecords = 1024; // the number of records the file is grown by at a time
+
+    /**
+     * Constructor for the class. Opens (or creates) the journal file, which is not
+     * changed until the journal is reset.
+     * @param file The journal file.
+     * @throws IOException If the file could not be opened.
+     */
+    public MoveJournal(Path file) throws IOException{
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocate(allocationRecords * recordSize);
+        this.allocatedSize = this.channel.size();
+    }
+
+    /**
+     * Makes a move that can be appended to the journal.
+     * @param type The type of the move (e.g., enterValueMove).
+     * @param cell The position of the cell (0 if the move is not of a single cell).
+     * @param oldValue The value of the cell before the move (0 if not of a single cell).
+     * @param newValue The value of the cell after the move (0 if not of a single cell).
+     * @return The move packed into an int: the type, cell, old value and new value in
+     * 4, 12, 8 and 8 bits.
+     */
+    public static int makeMove(int type, int cell, int oldValue, int newValue){
+        return type << 28 | cell << 16 | oldValue << 8 | newValue;
+    }
+
+    /**
+     * Empties the journal, starting it again after a new snapshot. The header is
+     * synced to the disk before returning.
+     * @param generation The generation of the snapshot the next moves follow.
+     * @throws IOException If the journal could not be written.
+     */
+    public void reset(int generation) throws IOException{
+        this.generation = generation;
+        this.position = headerSize;
+        this.allocate(headerSize + (long)allocationRecords * recordSize);
+
+        // writing the header
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putInt(magicNumber).putInt(version).putInt(generation).putInt(0).flip();
+        this.writeFully(header, 0);
+        this.channel.force(false);
+    }
+
+    /**
+     * Appends moves to the journal and syncs them to the disk, so a batch of moves
+     * costs a single sync.
+     * @param moves The moves (see makeMove).
+     * @param count The number of moves to append from the start of the array.
+     * @throws IOException If the moves could not be written.
+     */
+    public void append(int[] moves, int count) throws IOException{
+        this.allocate(this.position + (long)count * recordSize);
+        for(int start = 0; start < count; start += allocationRecords){
+            this.buffer.clear();
+            for(int move = start; move < Math.min(count, start + allocationRecords); move++){
+                this.buffer.putInt(moves[move]).putInt(getCheck(moves[move], this.generation));
+            }
+            this.buffer.flip();
+            int length = this.buffer.remaining();
+            this.writeFully(this.buffer, this.position);
+            this.position += length;
+        }
+        this.channel.force(false);
+    }
+
+    /**
+     * Replays a journal over the snapshot it follows. The moves are replayed until the
+     * end of the journal, or until a move that cannot be applied to the snapshot.
+     * @param file The journal file.
+     * @param snapshot The snapshot the moves are applied to.
+     * @return The number of moves replayed (0 if the journal does not follow the
+     * snapshot, or does not exist).
+     * @throws IOException If the journal could not be read.
+     */
+    public static int replay(Path file, GameSnapshot snapshot) throws IOException{
+        if(!Files.isRegularFile(file)){
+            return 0;
+        }
+        try(FileChannel input = FileChannel.open(file, StandardOpenOption.READ)){
+            // reading the header
+            ByteBuffer buffer = ByteBuffer.allocate(allocationRecords * recordSize);
+            buffer.limit(headerSize);
+            readFully(input, buffer, 0);
+            if(buffer.position() < headerSize || buffer.getInt(0) != magicNumber || buffer.getInt(4) != version
+               || buffer.getInt(8) != snapshot.getGeneration()){
+                return 0;
+            }
+            int generation = buffer.getInt(8);
+
+            // replaying the records, a block at a time
+            int replayed = 0;
+            long position = headerSize;
+            while(true){
+                buffer.clear();
+                readFully(input, buffer, position);
+                buffer.flip();
+                if(buffer.remaining() < recordSize){
+                    return replayed;
+                }
+                while(buffer.remaining() >= recordSize){
+                    int move = buffer.getInt();
+                    if(buffer.getInt() != getCheck(move, generation) || !applyMove(move, snapshot)){
+                        return replayed;
+                    }
+                    replayed++;
+                }
+                position += buffer.position();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException{
+        this.channel.close();
+    }
+
+    /**
+     * Applies a move to a snapshot.
+     * @param move The move (see makeMove).
+     * @param snapshot The snapshot.
+     * @return True if the move was applied, false if it is not valid for the snapshot.
+     */
+    private static boolean applyMove(int move, GameSnapshot snapshot){
+        int cell = (move >>> 16) & 0xFFF;
+        switch(move >>> 28){
+            case enterValueMove:
+                return snapshot.enterValue(cell, (move >>> 8) & 0xFF, move & 0xFF);
+            case clearGridMove:
+                snapshot.clearGrid();
+                return true;
+            case undoMove:
+                return snapshot.undo();
+            case redoMove:
+                return snapshot.redo();
+            case hintMove:
+                return snapshot.revealHint(cell);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gets the check written after a move, which ties the record to the generation of
+     * the journal (a record of zeros never passes its check).
+     * @param move The move.
+     * @param generation The generation of the journal.
+     * @return The check.
+     */
+    private static int getCheck(int move, int generation){
+        return ~move ^ generation;
+    }
+
+    /**
+     * Makes sure the file is preallocated up to a size, growing it by whole blocks of
+     * zeroed records.
+     * @param size The size needed.
+     * @throws IOException If the file could not be grown.
+     */
+    private void allocate(long size) throws IOException{
+        while(this.allocatedSize < size){
+            ByteBuffer zeros = ByteBuffer.allocate(allocationRecords * recordSize);
+            this.writeFully(zeros, this.allocatedSize);
+            this.allocatedSize += zeros.capacity();
+        }
+    }
+
+    /**
+     * Writes the whole of a buffer to the journal.
+     * @param buffer The buffer.
+     * @param position The position in the file the buffer is written to.
+     * @throws IOException If the buffer could not be written.
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException{
+        while(buffer.hasRemaining()){
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Fills a buffer from a file, stopping early at the end of the file.
+     * @param input The file.
+     * @param buffer The buffer.
+     * @param position The position in the file the buffer is read from.
+     * @throws IOException If the file could not be read.
+     */
+    private static void readFully(FileChannel input, ByteBuffer buffer, long position) throws IOException{
+        while(buffer.hasRemaining()){
+            int read = input.read(buffer, position);
+            if(read < 0){
+                return;
+            }
+            position += read;
+        }
+    }
+}
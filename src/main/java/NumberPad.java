@@ -47,6 +47,7 @@ public class NumberPad extends FlowPane{
         // formatting the number pad
         this.setAlignment(Pos.CENTER);
         this.setHgap(10);
+        this.setVgap(10); // larger grids need more than one row of buttons
         this.setPadding(new Insets(10,10,10,10));
     }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Represents a Mathdoku puzzle without any of the JavaFX components used to
+ * display it. The puzzle is stored in primitive arrays: the value of each cell,
+ * the cage each cell belongs to, and the target number and operator of each cage.
+ * This means puzzles can be solved, generated and read without making a Grid
+ * (and so without the JavaFX toolkit), and can be converted to and from a Grid
+ * when they need to be displayed.
+ *
+ * Cells are indexed by their position in the grid starting from 0 (one less than
+ * the position of the corresponding Cell object).
+ */
+public class Puzzle{
+    private int dimension; // the dimension of the puzzle
+    private int[] values; // the value in each cell (0 if the cell is empty)
+    private int[] cellCages; // the index of the cage each cell belongs to (-1 if it is not in a cage)
+    private int[] cageTargets; // the target number of each cage
+    private char[] cageOperators; // the target operator of each cage
+    private int[][] cageCells; // the cells within each cage, in order of their position
+    private int[] solution; // the solution of the puzzle, if it is known (null otherwise)
+    private CageCombinations[] cageCombinations; // the combinations of each cage (worked out when first needed)
+
+    /**
+     * Constructor for the class.
+     * @param dimension The dimension of the puzzle.
+     * @param cellCages The index of the cage each cell belongs to.
+     * @param cageTargets The target number of each cage.
+     * @param cageOperators The target operator of each cage.
+     */
+    public Puzzle(int dimension, int[] cellCages, int[] cageTargets, char[] cageOperators){
+        this.dimension = dimension;
+        this.values = new int[dimension * dimension];
+        this.cellCages = cellCages;
+        this.cageTargets = cageTargets;
+        this.cageOperators = cageOperators;
+        this.solution = null;
+
+        // finding the cells within each cage
+        int[] cageSizes = new int[cageTargets.length];
+        for(int cage : cellCages){
+            if(cage >= 0 && cage < cageSizes.length){
+                cageSizes[cage]++;
+            }
+        }
+        this.cageCells = new int[cageTargets.length][];
+        for(int cage = 0; cage < cageSizes.length; cage++){
+            this.cageCells[cage] = new int[cageSizes[cage]];
+            cageSizes[cage] = 0;
+        }
+        for(int cell = 0; cell < cellCages.length; cell++){
+            int cage = cellCages[cell];
+            if(cage >= 0 && cage < cageSizes.length){
+                this.cageCells[cage][cageSizes[cage]++] = cell;
+            }
+        }
+    }
+
+    /**
+     * Makes a puzzle from a grid, including the values entered into its cells.
+     * @param grid The grid to make the puzzle from.
+     * @return The puzzle representing the grid.
+     */
+    public static Puzzle fromGrid(Grid grid){
+        int[] cellCages = new int[grid.getDimension() * grid.getDimension()];
+        int[] cageTargets = new int[grid.getCages().size()];
+        char[] cageOperators = new char[grid.getCages().size()];
+
+        // copying the cages of the grid
+        Arrays.fill(cellCages, -1);
+        for(int cage = 0; cage < cageTargets.length; cage++){
+            Cage gridCage = grid.getCages().get(cage);
+            cageTargets[cage] = gridCage.getTargetNumber();
+            cageOperators[cage] = gridCage.getTargetOperator();
+            for(Cell cell : gridCage.getCells()){
+                cellCages[cell.getPosition() - 1] = cage;
+            }
+        }
+        Puzzle puzzle = new Puzzle(grid.getDimension(), cellCages, cageTargets, cageOperators);
+
+        // copying the values of the cells
+        for(Cell cell : grid.getCells()){
+            if(!cell.getValue().equals("")){
+                puzzle.setValue(cell.getPosition() - 1, Integer.parseInt(cell.getValue()));
+            }
+        }
+        // copying the solution of the grid if it has one
+        if(grid.getSolutionValues() != null){
+            puzzle.setSolution(grid.getSolutionValues().clone());
+        }
+
+        return puzzle;
+    }
+
+    /**
+     * Makes a grid from this puzzle, so that it can be displayed and played. The
+     * cages of the grid are styled, and the values of the puzzle are entered into
+     * the cells.
+     * @param game The game instance the grid belongs to.
+     * @return The grid representing this puzzle.
+     */
+    public Grid toGrid(Game game){
+        Grid grid = new Grid(game, this.dimension);
+
+        // making the cages
+        for(int cage = 0; cage < this.cageCells.length; cage++){
+            ArrayList<Cell> cells = new ArrayList<Cell>();
+            for(int cell : this.cageCells[cage]){
+                cells.add(grid.getCellAtPosition(cell));
+            }
+            // a cage of one cell has no operator
+            char operator = cells.size() == 1 ? '0' : this.cageOperators[cage];
+            grid.addCage(new Cage(grid, cells, this.cageTargets[cage], operator));
+        }
+        grid.styleGrid();
+
+        // entering the values and the solution
+        for(int cell = 0; cell < this.values.length; cell++){
+            if(this.values[cell] != 0){
+                grid.getCellAtPosition(cell).setValue(String.valueOf(this.values[cell]));
+            }
+        }
+        if(this.solution != null){
+            grid.setSolutionValues(this.solution.clone());
+        }
+
+        return grid;
+    }
+
+    /**
+     * Writes the cages of the puzzle in the format of a configuration file (see
+     * ConfigurationReader). Each cage is written on its own line as its target number
+     * and operator (only the target for a cage of one cell), followed by the positions
+     * (starting from 1) of its cells.
+     * @return The configuration text of the puzzle.
+     */
+    public String toConfigurationText(){
+        StringBuilder text = new StringBuilder();
+        for(int cage = 0; cage < this.cageCells.length; cage++){
+            text.append(this.cageTargets[cage]);
+            // cages of one cell are written without an operator
+            if(this.cageCells[cage].length > 1){
+                text.append(this.cageOperators[cage]);
+            }
+            text.append(' ');
+            for(int cell = 0; cell < this.cageCells[cage].length; cell++){
+                text.append(cell == 0 ? "" : ",").append(this.cageCells[cage][cell] + 1);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks if the puzzle is an allowed mathdoku puzzle. That is, if every cell is
+     * in a cage, and each cell in a cage is adjacent to another cell in the cage.
+     * @return True if it is, false if it isnt.
+     */
+    public boolean validateStructure(){
+        // checking all cells are in a cage
+        for(int cage : this.cellCages){
+            if(cage < 0 || cage >= this.cageCells.length){
+                return false;
+            }
+        }
+
+        // validating the structure of the cages
+        for(int[] cells : this.cageCells){
+            if(cells.length == 0){
+                return false;
+            }
+            if(cells.length == 1){
+                continue;
+            }
+            // each cell must have another cell in the cage next to it
+            for(int cell : cells){
+                boolean foundAdjacent = false;
+                for(int otherCell : cells){
+                    int difference = Math.abs(cell - otherCell);
+                    if(difference == 1 || difference == this.dimension){
+                        foundAdjacent = true;
+                    }
+                }
+                if(!foundAdjacent){
+                    return false;
+                }
+            }
+        }
+
+        return true; // if at this point, then the puzzle must be valid, so returning true
+    }
+
+    /**
+     * Getter method for the dimension of the puzzle.
+     * @return The dimension of the puzzle.
+     */
+    public int getDimension(){
+        return this.dimension;
+    }
+
+    /**
+     * Getter method for the value in a cell.
+     * @param cell The index of the cell.
+     * @return The value in the cell (0 if it is empty).
+     */
+    public int getValue(int cell){
+        return this.values[cell];
+    }
+
+    /**
+     * Setter method for the value in a cell.
+     * @param cell The index of the cell.
+     * @param value The value to be put in the cell (0 to empty it).
+     */
+    public void setValue(int cell, int value){
+        this.values[cell] = value;
+    }
+
+    /**
+     * Getter method for the values in the cells of the puzzle.
+     * @return The values of the cells (0 for an empty cell).
+     */
+    public int[] getValues(){
+        return this.values;
+    }
+
+    /**
+     * Getter method for the cage each cell belongs to.
+     * @return The index of the cage of each cell.
+     */
+    public int[] getCellCages(){
+        return this.cellCages;
+    }
+
+    /**
+     * Getter method for the number of cages in the puzzle.
+     * @return The number of cages.
+     */
+    public int getCageCount(){
+        return this.cageTargets.length;
+    }
+
+    /**
+     * Getter method for the target numbers of the cages.
+     * @return The target number of each cage.
+     */
+    public int[] getCageTargets(){
+        return this.cageTargets;
+    }
+
+    /**
+     * Getter method for the target operators of the cages.
+     * @return The target operator of each cage.
+     */
+    public char[] getCageOperators(){
+        return this.cageOperators;
+    }
+
+    /**
+     * Getter method for the cells within each cage.
+     * @return The indexes of the cells in each cage.
+     */
+    public int[][] getCageCells(){
+        return this.cageCells;
+    }
+
+    /**
+     * Getter method for the combinations of values that meet the target of
+     * each cage. These are worked out the first time they are needed.
+     * @return The combinations of each cage (null for a cage with too many).
+     */
+    public CageCombinations[] getCageCombinations(){
+        if(this.cageCombinations == null){
+            CageCombinations[] cageCombinations = new CageCombinations[this.cageCells.length];
+            for(int cage = 0; cage < cageCombinations.length; cage++){
+                cageCombinations[cage] = CageCombinations.make(this.dimension,
+                                                               this.cageCells[cage],
+                                                               this.cageTargets[cage],
+                                                               this.cageOperators[cage]);
+            }
+            this.cageCombinations = cageCombinations;
+        }
+        return this.cageCombinations;
+    }
+
+    /**
+     * Getter method for the solution of the puzzle.
+     * @return The value of each cell in the solution, or null if it is not known.
+     */
+    public int[] getSolution(){
+        return this.solution;
+    }
+
+    /**
+     * Setter method for the solution of the puzzle.
+     * @param solution The value of each cell in the solution.
+     */
+    public void setSolution(int[] solution){
+        this.solution = solution;
+    }
+}
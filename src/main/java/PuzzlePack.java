@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a puzzle pack: a binary file holding a library of puzzles, any one of which
+ * can be read by its index without reading the others. The file is memory-mapped,
+ * so only the parts of it that are read are loaded from the disk. Packs are made by
+ * PuzzlePackWriter (or with the 'pack' command, see CommandLinePacker).
+ *
+ * The format of a pack (all numbers are big-endian) is:
+ *      - a header of four ints: the magic number 'MDPK', the version of the format,
+ *        the number of puzzles, and the offset of the index within the file
+ *      - a record for each puzzle
+ *      - the index: the offset of each record, followed by the offset of the end of
+ *        the last record (so the length of every record is known)
+ *
+ * Each record starts with the dimension (a byte), the number of cages (a short) and
+ * the number of bits used for each target number (a byte). The rest of the record
+ * is bit-packed, with the fewest bits that hold each field:
+ *      - the cage of each cell, in order of position
+ *      - the operator of each cage (3 bits)
+ *      - the target number of each cage
+ * A 9x9 puzzle takes around 120 bytes.
+ *
+ * Packs are limited to 2GB (the size of a single mapping), which is millions of puzzles.
+ */
+public class PuzzlePack implements Closeable{
+    private FileChannel channel; // the channel the pack is read through
+    private MappedByteBuffer buffer; // the contents of the pack
+    private int puzzleCount; // the number of puzzles in the pack
+    private int indexOffset; // the position of the index within the pack
+
+    // constants
+    static final int magicNumber = 0x4D44504B; // 'MDPK'
+    static final int version = 1; // the version of the format written by PuzzlePackWriter
+    static final int headerSize = 16; // the size of the header in bytes
+    static final int recordHeaderSize = 4; // the size of the start of each record (before the bit-packed fields) in bytes
+    static final String operatorCodes = "0+-x*÷/"; // the operators, in the order of their codes ('0' for no operator)
+    static final int operatorBits = 3; // the number of bits used for the operator of each cage
+
+    /**
+     * Constructor for the class. Opens a pack and reads its header.
+     * @param file The pack to be read.
+     * @throws IOException If the file could not be read, or is not a puzzle pack.
+     */
+    public PuzzlePack(Path file) throws IOException{
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try{
+            long size = this.channel.size();
+            if(size < headerSize || size > Integer.MAX_VALUE){
+                throw new IOException(file + " is not a puzzle pack (or is too large)");
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // reading the header
+            if(this.buffer.getInt(0) != magicNumber){
+                throw new IOException(file + " is not a puzzle pack");
+            }
+            if(this.buffer.getInt(4) != version){
+                throw new IOException(file + " is a puzzle pack of an unknown version (" + this.buffer.getInt(4) + ")");
+            }
+            this.puzzleCount = this.buffer.getInt(8);
+            this.indexOffset = this.buffer.getInt(12);
+            if(this.puzzleCount < 0 || this.indexOffset < headerSize
+               || (long)this.indexOffset + 4L * (this.puzzleCount + 1) > size){
+                throw new IOException(file + " is an incomplete or damaged puzzle pack");
+            }
+        }
+        catch(IOException e){
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tests if a file is a puzzle pack, by looking at its magic number.
+     * @param file The file to be tested.
+     * @return True if the file starts with the magic number of a pack, false if not
+     * (or if it could not be read).
+     */
+    public static boolean isPuzzlePack(Path file){
+        if(!Files.isRegularFile(file)){
+            return false;
+        }
+        try(RandomAccessFile input = new RandomAccessFile(file.toFile(), "r")){
+            return input.length() >= headerSize && input.readInt() == magicNumber;
+        }
+        catch(IOException e){
+            return false;
+        }
+    }
+
+    /**
+     * Getter method for the number of puzzles in the pack.
+     * @return The number of puzzles.
+     */
+    public int getPuzzleCount(){
+        return this.puzzleCount;
+    }
+
+    /**
+     * Reads a puzzle from the pack. Only the record of the puzzle is read. Can be
+     * called from any number of threads at once.
+     * @param index The index of the puzzle (starting from 0).
+     * @return The puzzle.
+     * @throws IOException If the record of the puzzle is damaged.
+     */
+    public Puzzle getPuzzle(int index) throws IOException{
+        if(index < 0 || index >= this.puzzleCount){
+            throw new IndexOutOfBoundsException("Puzzle " + index + " is not in the pack of " + this.puzzleCount);
+        }
+
+        // finding the record from the index
+        int start = this.buffer.getInt(this.indexOffset + 4 * index);
+        int end = this.buffer.getInt(this.indexOffset + 4 * (index + 1));
+        if(start < headerSize || end > this.indexOffset || end - start < recordHeaderSize){
+            throw new IOException("The record of puzzle " + index + " is damaged");
+        }
+
+        // reading the start of the record
+        int dimension = this.buffer.get(start) & 0xFF;
+        int cageCount = this.buffer.getShort(start + 1) & 0xFFFF;
+        int targetBits = this.buffer.get(start + 3) & 0xFF;
+        int cellCount = dimension * dimension;
+        int cageBits = getCageBits(cageCount);
+        long recordBits = (long)cellCount * cageBits + (long)cageCount * (operatorBits + targetBits);
+        if(dimension < Settings.minimumGridSize || dimension > Settings.maximumGridSize || cageCount == 0
+           || targetBits == 0 || targetBits > 31 || recordBits > 8L * (end - start - recordHeaderSize)){
+            throw new IOException("The record of puzzle " + index + " is damaged");
+        }
+
+        // reading the bit-packed fields
+        long bitPosition = 8L * (start + recordHeaderSize);
+        int[] cellCages = new int[cellCount];
+        for(int cell = 0; cell < cellCount; cell++, bitPosition += cageBits){
+            cellCages[cell] = (int)readBits(this.buffer, bitPosition, cageBits);
+        }
+        char[] cageOperators = new char[cageCount];
+        for(int cage = 0; cage < cageCount; cage++, bitPosition += operatorBits){
+            int operatorCode = (int)readBits(this.buffer, bitPosition, operatorBits);
+            if(operatorCode >= operatorCodes.length()){
+                throw new IOException("The record of puzzle " + index + " is damaged");
+            }
+            cageOperators[cage] = operatorCodes.charAt(operatorCode);
+        }
+        int[] cageTargets = new int[cageCount];
+        for(int cage = 0; cage < cageCount; cage++, bitPosition += targetBits){
+            cageTargets[cage] = (int)readBits(this.buffer, bitPosition, targetBits);
+        }
+
+        Puzzle puzzle = new Puzzle(dimension, cellCages, cageTargets, cageOperators);
+        if(!puzzle.validateStructure()){
+            throw new IOException("The record of puzzle " + index + " is damaged");
+        }
+        return puzzle;
+    }
+
+    /**
+     * Closes the pack. The puzzles already read can still be used.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException{
+        this.channel.close();
+    }
+
+    /**
+     * Gets the number of bits used for the cage of each cell.
+     * @param cageCount The number of cages in the puzzle.
+     * @return The fewest bits that hold the index of any cage (at least 1).
+     */
+    static int getCageBits(int cageCount){
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(cageCount - 1));
+    }
+
+    /**
+     * Reads a number from bit-packed data, where the bits of each byte are used from
+     * the highest to the lowest.
+     * @param buffer The data.
+     * @param bitPosition The position of the first bit of the number.
+     * @param bitCount The number of bits in the number.
+     * @return The number.
+     */
+    private static long readBits(ByteBuffer buffer, long bitPosition, int bitCount){
+        long value = 0;
+        while(bitCount > 0){
+            int currentByte = buffer.get((int)(bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int)(bitPosition & 7); // the bits of the byte not yet used
+            int taken = Math.min(available, bitCount);
+            value = (value << taken) | ((currentByte >>> (available - taken)) & ((1 << taken) - 1));
+            bitPosition += taken;
+            bitCount -= taken;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a puzzle pack (see PuzzlePack for the format). The records are written to
+ * the file as the puzzles are added, so a pack of any size can be written without
+ * keeping its puzzles in memory. The index and the header are written when the
+ * writer is closed, so a pack is not readable until then.
+ */
+public class PuzzlePackWriter implements Closeable{
+    private FileChannel channel; // the channel the pack is written through
+    private int[] recordOffsets; // the offset of each record written so far
+    private int puzzleCount; // the number of puzzles written
+    private long position; // the offset of the end of the last record
+    private ByteBuffer output; // the records not yet written to the file
+    private long outputPosition; // the offset in the file of the first record in the output buffer
+    private byte[] record; // the record being put together
+    private int recordBits; // the number of bits of the record used so far
+    private boolean closed; // determines if the pack has been finished
+
+    // constants
+    private static final int outputBufferSize = 65536; // the number of bytes of records written to the file at once
+
+    /**
+     * Constructor for the class. Creates the pack, replacing the file if it exists.
+     * @param file The file the pack is written to.
+     * @throws IOException If the file could not be created.
+     */
+    public PuzzlePackWriter(Path file) throws IOException{
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.recordOffsets = new int[1024];
+        this.puzzleCount = 0;
+        this.position = PuzzlePack.headerSize;
+        this.output = ByteBuffer.allocate(outputBufferSize);
+        this.outputPosition = this.position;
+        this.record = new byte[256];
+        this.closed = false;
+    }
+
+    /**
+     * Adds a puzzle to the end of the pack.
+     * @param puzzle The puzzle to be added (its values and solution are not written).
+     * @throws IOException If the record could not be written, or the pack is too large.
+     * @throws IllegalArgumentException If the puzzle cannot be stored in a pack.
+     */
+    public void add(Puzzle puzzle) throws IOException{
+        int dimension = puzzle.getDimension();
+        int cageCount = puzzle.getCageCount();
+        int[] cellCages = puzzle.getCellCages();
+        int[] cageTargets = puzzle.getCageTargets();
+        char[] cageOperators = puzzle.getCageOperators();
+        if(dimension > 255 || cageCount == 0 || cageCount > 0xFFFF){
+            throw new IllegalArgumentException("The puzzle is too large to be stored in a pack");
+        }
+
+        // finding the number of bits needed for the target numbers
+        int largestTarget = 0;
+        for(int target : cageTargets){
+            if(target < 0){
+                throw new IllegalArgumentException("A target number cannot be negative: " + target);
+            }
+            largestTarget = Math.max(largestTarget, target);
+        }
+        int targetBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(largestTarget));
+        int cageBits = PuzzlePack.getCageBits(cageCount);
+
+        // putting the record together
+        int recordSize = PuzzlePack.recordHeaderSize
+                         + (int)(((long)cellCages.length * cageBits + (long)cageCount * (PuzzlePack.operatorBits + targetBits) + 7) / 8);
+        if(this.record.length < recordSize){
+            this.record = new byte[recordSize];
+        }
+        Arrays.fill(this.record, 0, recordSize, (byte)0);
+        this.record[0] = (byte)dimension;
+        this.record[1] = (byte)(cageCount >>> 8);
+        this.record[2] = (byte)cageCount;
+        this.record[3] = (byte)targetBits;
+        this.recordBits = 8 * PuzzlePack.recordHeaderSize;
+        for(int cage : cellCages){
+            if(cage < 0 || cage >= cageCount){
+                throw new IllegalArgumentException("Every cell of the puzzle must be in a cage");
+            }
+            this.writeBits(cage, cageBits);
+        }
+        for(char operator : cageOperators){
+            int operatorCode = PuzzlePack.operatorCodes.indexOf(operator);
+            if(operatorCode == -1){
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+            }
+            this.writeBits(operatorCode, PuzzlePack.operatorBits);
+        }
+        for(int target : cageTargets){
+            this.writeBits(target, targetBits);
+        }
+
+        // writing the record, and remembering where it starts for the index
+        if(this.position + recordSize > Integer.MAX_VALUE - 4L * (this.puzzleCount + 2)){
+            throw new IOException("The pack is too large (packs are limited to 2GB)");
+        }
+        if(this.puzzleCount == this.recordOffsets.length){
+            this.recordOffsets = Arrays.copyOf(this.recordOffsets, this.recordOffsets.length * 2);
+        }
+        this.recordOffsets[this.puzzleCount] = (int)this.position;
+        if(this.output.remaining() < recordSize){
+            this.flushOutput();
+        }
+        if(recordSize > this.output.capacity()){
+            this.writeFully(ByteBuffer.wrap(this.record, 0, recordSize), this.position);
+            this.outputPosition += recordSize;
+        }
+        else{
+            this.output.put(this.record, 0, recordSize);
+        }
+        this.position += recordSize;
+        this.puzzleCount++;
+    }
+
+    /**
+     * Getter method for the number of puzzles written so far.
+     * @return The number of puzzles.
+     */
+    public int getPuzzleCount(){
+        return this.puzzleCount;
+    }
+
+    /**
+     * Finishes the pack by writing the index and the header, and closes the file.
+     * @throws IOException If the pack could not be written.
+     */
+    @Override
+    public void close() throws IOException{
+        if(this.closed){
+            return;
+        }
+        this.closed = true;
+        try{
+            this.flushOutput();
+
+            // writing the index after the last record
+            ByteBuffer index = ByteBuffer.allocate(4 * (this.puzzleCount + 1));
+            for(int puzzle = 0; puzzle < this.puzzleCount; puzzle++){
+                index.putInt(this.recordOffsets[puzzle]);
+            }
+            index.putInt((int)this.position);
+            index.flip();
+            this.writeFully(index, this.position);
+
+            // writing the header last, so a pack that was not finished cannot be read
+            ByteBuffer header = ByteBuffer.allocate(PuzzlePack.headerSize);
+            header.putInt(PuzzlePack.magicNumber)
+                  .putInt(PuzzlePack.version)
+                  .putInt(this.puzzleCount)
+                  .putInt((int)this.position);
+            header.flip();
+            this.writeFully(header, 0);
+        }
+        finally{
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Adds a number to the bit-packed part of the record, using the bits of each
+     * byte from the highest to the lowest.
+     * @param value The number.
+     * @param bitCount The number of bits it is written with.
+     */
+    private void writeBits(long value, int bitCount){
+        for(int bit = bitCount - 1; bit >= 0; bit--, this.recordBits++){
+            if(((value >>> bit) & 1) != 0){
+                this.record[this.recordBits >>> 3] |= (byte)(0x80 >>> (this.recordBits & 7));
+            }
+        }
+    }
+
+    /**
+     * Writes the records in the output buffer to the file.
+     * @throws IOException If the records could not be written.
+     */
+    private void flushOutput() throws IOException{
+        this.output.flip();
+        int size = this.output.remaining();
+        this.writeFully(this.output, this.outputPosition);
+        this.outputPosition += size;
+        this.output.clear();
+    }
+
+    /**
+     * Writes all of a buffer to the file.
+     * @param data The data to be written.
+     * @param offset The position in the file it is written at.
+     * @throws IOException If the data could not be written.
+     */
+    private void writeFully(ByteBuffer data, long offset) throws IOException{
+        while(data.hasRemaining()){
+            offset += this.channel.write(data, offset);
+        }
+    }
+}
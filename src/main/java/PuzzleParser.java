@@ -0,0 +1,497 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads puzzles written in the text format of configuration files (see ConfigurationReader),
+ * where any number of puzzles can follow each other with a blank line between each one.
+ * The puzzles are read one at a time as they are asked for (see next), and the text is
+ * read through a fixed buffer, so a file of any size can be read (and checked) while only
+ * keeping a single puzzle in memory.
+ *
+ * Each line is checked as it is read, one character at a time, rather than being split
+ * into strings. The lines are checked in the same way (and with the same error messages)
+ * as the game always has: each line must be a target number, followed by the operator
+ * (unless the cage has a single cell), a single space and the cells of the cage separated
+ * by commas. The dimension of the puzzle is the square root of the highest cell number.
+ * Leading and trailing whitespace is ignored.
+ */
+public class PuzzleParser implements Closeable{
+    private Reader reader; // the text the puzzles are read from
+    private char[] input; // the text read but not yet split into lines
+    private int inputPosition; // the position of the next character in the input buffer
+    private int inputLength; // the number of characters in the input buffer
+    private boolean skippingLineFeed; // determines if the last line ended with a carriage return (so a line feed after it is skipped)
+    private char[] line; // the characters of the current line
+    private int lineStart; // the position of the first character of the line that is not whitespace
+    private int lineEnd; // the position after the last character of the line that is not whitespace
+    private boolean lineTooLong; // determines if the current line was too long to be kept
+    private boolean lineWaiting; // determines if the current line starts a puzzle that has not been read yet
+    private int puzzleNumber; // the position of the current puzzle (starting from 1)
+    private Puzzle puzzle; // the current puzzle (null if it was invalid)
+    private String error; // the reason the current puzzle was invalid (null if it was valid)
+
+    // the puzzle being read
+    private int[] cellCages; // the cage of each cell found so far (-1 if the cell has not been found)
+    private int[] cageTargets; // the target number of each cage
+    private char[] cageOperators; // the operator of each cage ('0' if the cage has a single cell)
+    private int cageCount; // the number of cages found so far
+    private int highestCellNumber; // the highest cell number found so far
+    private boolean structureInvalid; // determines if a cell was found that is not in the grid, or is in more than one cage
+    private int[] lineCells; // the cell numbers of the current line
+    private int lineCellCount; // the number of cell numbers on the current line
+
+    // constants
+    private static final char[] allowedOperators = {'x', '*', '/', '÷', '+', '-'}; // the allowed operators in the cages
+    private static final int maximumCellCount = Settings.maximumGridSize * Settings.maximumGridSize; // the number of cells in the largest grid
+    private static final int inputBufferSize = 8192; // the number of characters read at once
+    private static final int maximumLineLength = 65536; // the longest line that is kept (longer lines are invalid)
+    private static final long invalidNumber = Long.MIN_VALUE; // stands for text that is not a number
+
+    /**
+     * Constructor for the class.
+     * @param reader The text the puzzles are read from (closed when the parser is closed).
+     */
+    public PuzzleParser(Reader reader){
+        this.reader = reader;
+        this.input = new char[inputBufferSize];
+        this.inputPosition = 0;
+        this.inputLength = 0;
+        this.skippingLineFeed = false;
+        this.line = new char[128];
+        this.lineWaiting = false;
+        this.puzzleNumber = 0;
+        this.cellCages = new int[maximumCellCount];
+        this.cageTargets = new int[maximumCellCount];
+        this.cageOperators = new char[maximumCellCount];
+        this.lineCells = new int[16];
+    }
+
+    /**
+     * Tests if there is another puzzle to be read, by skipping any blank lines before it.
+     * @return True if another puzzle starts before the end of the text, false if not.
+     * @throws IOException If the text could not be read.
+     */
+    public boolean hasNext() throws IOException{
+        while(!this.lineWaiting){
+            if(!this.readLine()){
+                return false;
+            }
+            this.lineWaiting = !this.isLineBlank();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next puzzle, up to the next blank line (or the end of the text). If the
+     * puzzle is invalid, the rest of its lines are skipped, and the reason it was invalid
+     * is given by getError.
+     * @return True if a puzzle was read, false if there are no puzzles left.
+     * @throws IOException If the text could not be read.
+     */
+    public boolean next() throws IOException{
+        if(!this.hasNext()){
+            return false;
+        }
+        this.lineWaiting = false;
+
+        // starting a new puzzle
+        this.puzzleNumber++;
+        this.puzzle = null;
+        this.error = null;
+        Arrays.fill(this.cellCages, -1);
+        this.cageCount = 0;
+        this.highestCellNumber = 0;
+        this.structureInvalid = false;
+
+        // reading each cage of the puzzle, until the first invalid line
+        int lineNumber = 0; // the position of the line within the puzzle (for error reports)
+        do{
+            lineNumber++;
+            if(this.error == null){
+                this.readCage(lineNumber);
+            }
+        }
+        while(this.readLine() && !this.isLineBlank());
+
+        // making the puzzle once all of its cells are known
+        if(this.error == null){
+            this.makePuzzle();
+        }
+        return true;
+    }
+
+    /**
+     * Tests if the last puzzle read was valid.
+     * @return True if it was, false if it was not.
+     */
+    public boolean isValid(){
+        return this.puzzle != null;
+    }
+
+    /**
+     * Getter method for the last puzzle read.
+     * @return The puzzle, or null if it was invalid.
+     */
+    public Puzzle getPuzzle(){
+        return this.puzzle;
+    }
+
+    /**
+     * Getter method for the reason the last puzzle read was invalid.
+     * @return The error message, or null if the puzzle was valid.
+     */
+    public String getError(){
+        return this.error;
+    }
+
+    /**
+     * Getter method for the position of the last puzzle read within the text.
+     * @return The position of the puzzle (starting from 1).
+     */
+    public int getPuzzleNumber(){
+        return this.puzzleNumber;
+    }
+
+    /**
+     * Closes the text the puzzles are read from.
+     * @throws IOException If it could not be closed.
+     */
+    @Override
+    public void close() throws IOException{
+        this.reader.close();
+    }
+
+    /**
+     * Checks the format of a line and adds its cage to the puzzle. If the line is
+     * invalid, the error is recorded and the cage is not added.
+     * @param lineNumber The position of the line within the puzzle.
+     */
+    private void readCage(int lineNumber){
+        if(this.lineTooLong){
+            this.error = "Invalid format found for line : " + lineNumber;
+            return;
+        }
+
+        // finding the target and the cells, which are separated by a space
+        int targetEnd = this.findSpace(this.lineStart);
+        boolean hasCells = targetEnd < this.lineEnd;
+        int cellsEnd = hasCells ? this.findSpace(targetEnd + 1) : targetEnd;
+        boolean hasExtraSpaces = cellsEnd < this.lineEnd;
+        char targetOperator = this.line[targetEnd - 1];
+
+        if(isAllowedOperator(targetOperator)){
+            // testing the target number
+            long targetNumber = this.parseNumber(this.lineStart, targetEnd - 1);
+            if(targetNumber == invalidNumber){
+                this.error = "Invalid format found for line : " + lineNumber;
+                return;
+            }
+            if(targetNumber < 0){
+                this.error = "Invalid target number found for line : " + lineNumber + "\n\n" +
+                             "Please make sure the target is a positive integer.";
+                return;
+            }
+
+            // testing that no extra spaces were used in the configuration
+            if(hasExtraSpaces){
+                this.error = "Invalid format found for line : " + lineNumber + "\n\n" +
+                             "Please only include whitespace inbetween the target and the cells.";
+                return;
+            }
+
+            // testing the cells
+            if(!hasCells){
+                this.error = "Invalid format found for line : " + lineNumber;
+                return;
+            }
+            if(!this.readCells(targetEnd + 1, cellsEnd, lineNumber)){
+                return;
+            }
+            this.addCage((int)targetNumber, targetOperator);
+        }
+        else{
+            // no operator provided, so the cage must have only one cell
+            if(!hasCells){
+                this.error = "Invalid format found for line : " + lineNumber;
+                return;
+            }
+            if(!this.readCells(targetEnd + 1, cellsEnd, lineNumber)){
+                return;
+            }
+            if(this.lineCellCount != 1){
+                this.error = "No/invalid operator specified for line : " + lineNumber;
+                return;
+            }
+
+            // testing the target number
+            long targetNumber = this.parseNumber(this.lineStart, targetEnd);
+            if(targetNumber == invalidNumber){
+                this.error = "Invalid format found for line : " + lineNumber;
+                return;
+            }
+            if(targetNumber < 0){
+                this.error = "Invalid target number found for line : " + lineNumber + "\n\n" +
+                             "Please make sure the target is a positive integer.";
+                return;
+            }
+
+            // testing that no extra spaces were used in the configuration
+            if(hasExtraSpaces){
+                this.error = "Invalid format found for line : " + lineNumber + "\n\n" +
+                             "Please only include whitespace inbetween the target and the cells.";
+                return;
+            }
+            this.addCage((int)targetNumber, '0');
+        }
+    }
+
+    /**
+     * Reads the cell numbers of the current line, which are separated by commas (commas
+     * at the end are ignored, as they were by String.split).
+     * @param start The position of the first character of the cells.
+     * @param end The position after the last character of the cells.
+     * @param lineNumber The position of the line within the puzzle.
+     * @return True if the cell numbers were valid, false if not (the error is recorded).
+     */
+    private boolean readCells(int start, int end, int lineNumber){
+        if(start == end){
+            this.error = "Invalid format found for line : " + lineNumber;
+            return false;
+        }
+        while(end > start && this.line[end - 1] == ','){
+            end--;
+        }
+
+        this.lineCellCount = 0;
+        int cellStart = start;
+        for(int position = start; position <= end && start < end; position++){
+            if(position < end && this.line[position] != ','){
+                continue;
+            }
+
+            // testing the cell number that ends here
+            long cellNumber = this.parseNumber(cellStart, position);
+            if(cellNumber == invalidNumber){
+                this.error = "Invalid format found for line : " + lineNumber;
+                return false;
+            }
+            if(cellNumber < 0){
+                this.error = "Invalid cell number found for line: " + lineNumber;
+                return false;
+            }
+            if(this.lineCellCount == this.lineCells.length){
+                this.lineCells = Arrays.copyOf(this.lineCells, this.lineCells.length * 2);
+            }
+            this.lineCells[this.lineCellCount++] = (int)cellNumber;
+            cellStart = position + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a cage to the puzzle, with the cells of the current line. Cells that are not
+     * in the grid, or are already in a cage, make the structure of the puzzle invalid.
+     * @param targetNumber The target number of the cage.
+     * @param targetOperator The operator of the cage.
+     */
+    private void addCage(int targetNumber, char targetOperator){
+        int cage = this.cageCount++;
+        if(cage < maximumCellCount){
+            this.cageTargets[cage] = targetNumber;
+            this.cageOperators[cage] = targetOperator;
+        }
+        else{
+            // there are more cages than there can be cells
+            this.structureInvalid = true;
+        }
+
+        for(int index = 0; index < this.lineCellCount; index++){
+            int cellNumber = this.lineCells[index];
+            this.highestCellNumber = Math.max(this.highestCellNumber, cellNumber);
+
+            // cells beyond the largest grid are not kept, as the grid will be too large to be read
+            if(cellNumber == 0 || (cellNumber <= maximumCellCount && this.cellCages[cellNumber - 1] != -1)){
+                this.structureInvalid = true;
+            }
+            else if(cellNumber <= maximumCellCount && cage < maximumCellCount){
+                this.cellCages[cellNumber - 1] = cage;
+            }
+        }
+    }
+
+    /**
+     * Makes the puzzle from its cages once all of them have been read, after checking
+     * its dimension and structure.
+     */
+    private void makePuzzle(){
+        // testing if the highest cell number is a square number
+        double root = Math.sqrt(this.highestCellNumber);
+        if((int)root != root){
+            this.error = "Could not locate dimension for the grid.\n\n" +
+                         "Please check the content of the configuration.";
+            return;
+        }
+
+        // testing if the grid is too large to be played
+        int dimension = (int)root;
+        if(dimension > Settings.maximumGridSize){
+            this.error = "The grid is too large (" + dimension + "x" + dimension + ").\n\n" +
+                         "The largest grid that can be played is " + Settings.maximumGridSize + "x" + Settings.maximumGridSize + ".";
+            return;
+        }
+
+        // checking the structure of the puzzle
+        if(!this.structureInvalid){
+            Puzzle puzzle = new Puzzle(dimension, Arrays.copyOf(this.cellCages, dimension * dimension),
+                                       Arrays.copyOf(this.cageTargets, this.cageCount),
+                                       Arrays.copyOf(this.cageOperators, this.cageCount));
+            if(puzzle.validateStructure()){
+                this.puzzle = puzzle;
+                return;
+            }
+        }
+        this.error = "The structure of the grid was invalid.\n\n" +
+                     "Please check that:\n" +
+                     "\t- Cells within the same cage are adjacent\n" +
+                     "\t- All cells are included in the configuration\n" +
+                     "\t- Each cell is only part of one cage";
+    }
+
+    /**
+     * Reads a number from the current line, in the same way as Integer.parseInt (a sign,
+     * followed by at least one digit).
+     * @param start The position of the first character of the number.
+     * @param end The position after the last character of the number.
+     * @return The number, or invalidNumber if the text is not a number (or is too large for an int).
+     */
+    private long parseNumber(int start, int end){
+        boolean negative = false;
+        if(start < end && (this.line[start] == '-' || this.line[start] == '+')){
+            negative = this.line[start] == '-';
+            start++;
+        }
+        if(start == end){
+            return invalidNumber;
+        }
+
+        long number = 0;
+        for(int position = start; position < end; position++){
+            char character = this.line[position];
+            if(character < '0' || character > '9'){
+                return invalidNumber;
+            }
+            number = number * 10 + (character - '0');
+            if(number > -(long)Integer.MIN_VALUE){
+                return invalidNumber;
+            }
+        }
+        if(!negative && number > Integer.MAX_VALUE){
+            return invalidNumber;
+        }
+        return negative ? -number : number;
+    }
+
+    /**
+     * Finds the next space on the current line.
+     * @param start The position the search starts from.
+     * @return The position of the space, or the end of the line if there is not one.
+     */
+    private int findSpace(int start){
+        int position = start;
+        while(position < this.lineEnd && this.line[position] != ' '){
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Tests if the current line is blank (so ends a puzzle).
+     * @return True if the line has nothing but whitespace, false if not.
+     */
+    private boolean isLineBlank(){
+        return this.lineStart == this.lineEnd && !this.lineTooLong;
+    }
+
+    /**
+     * Reads the next line of the text into the line buffer, and finds where its content
+     * starts and ends. Lines can end with a line feed, a carriage return, or both.
+     * @return True if a line was read, false if the end of the text was reached.
+     * @throws IOException If the text could not be read.
+     */
+    private boolean readLine() throws IOException{
+        int lineLength = 0;
+        boolean foundLine = false;
+        this.lineTooLong = false;
+        while(true){
+            // reading more of the text when the buffer has been used up
+            if(this.inputPosition == this.inputLength){
+                int readCount = this.reader.read(this.input, 0, this.input.length);
+                if(readCount == -1){
+                    if(!foundLine){
+                        return false;
+                    }
+                    break;
+                }
+                this.inputPosition = 0;
+                this.inputLength = readCount;
+                continue;
+            }
+
+            char character = this.input[this.inputPosition++];
+            if(this.skippingLineFeed){
+                this.skippingLineFeed = false;
+                if(character == '\n'){
+                    continue;
+                }
+            }
+            foundLine = true;
+            if(character == '\n'){
+                break;
+            }
+            if(character == '\r'){
+                this.skippingLineFeed = true;
+                break;
+            }
+
+            // adding the character to the line (the rest of a line that is too long is skipped)
+            if(lineLength == maximumLineLength){
+                this.lineTooLong = true;
+                continue;
+            }
+            if(lineLength == this.line.length){
+                this.line = Arrays.copyOf(this.line, Math.min(this.line.length * 2, maximumLineLength));
+            }
+            this.line[lineLength++] = character;
+        }
+
+        // finding the content of the line
+        this.lineStart = 0;
+        this.lineEnd = lineLength;
+        while(this.lineStart < this.lineEnd && this.line[this.lineStart] <= ' '){
+            this.lineStart++;
+        }
+        while(this.lineEnd > this.lineStart && this.line[this.lineEnd - 1] <= ' '){
+            this.lineEnd--;
+        }
+        return true;
+    }
+
+    /**
+     * Given a character, the method will check if this character represents
+     * an allowed operator for a cage within the game.
+     * @param operator The char to be checked.
+     * @return True if the operator is allowed, false if not.
+     */
+    private static boolean isAllowedOperator(char operator){
+        // iterating through the allowed operators array
+        for(char allowedOperator : allowedOperators){
+            // testing if there is a match with the given operator
+            if(operator == allowedOperator){
+                return true; // returning true if a match is found
+            }
+        }
+        return false; // returning false if no match was found
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a small number of random puzzles ready for the dimensions and difficulties
+ * being played, so a new random game can usually be started without waiting for a
+ * puzzle with a unique solution to be found. Puzzles are made on background threads,
+ * and only for the dimensions close to the one last asked for (each time a puzzle is
+ * taken, the pool is topped up around its dimension).
+ */
+public class PuzzlePool{
+
+    private int minimumDimension; // the smallest dimension puzzles are kept for
+    private int maximumDimension; // the largest dimension puzzles are kept for
+    private List<BlockingQueue<Puzzle>> puzzles; // the puzzles ready for each dimension and difficulty (see getBucket)
+    private List<AtomicInteger> pendingCounts; // the number of puzzles being made for each dimension and difficulty
+    private ExecutorService executor; // runs the making of the puzzles kept in the pool
+    private ExecutorService requestExecutor; // makes the puzzles asked for when the pool has none ready, one at a time
+
+    // constants
+    private static final int puzzlesPerBucket = 3; // the number of puzzles kept for each dimension and difficulty
+    private static final int puzzlesPerLargeBucket = 1; // the number of puzzles kept for large dimensions (which are slow to make)
+    private static final int largestSmallDimension = 12; // the largest dimension that is not counted as large
+    private static final int difficultyCount = 3; // difficulties go from 1 (easy) to 3 (hard)
+    private static final int nearbyDimensions = 1; // how far from the dimension asked for puzzles are kept
+
+    /**
+     * Constructor for the class. Starts filling the pool in the background with
+     * puzzles close to the dimension that is likely to be asked for first.
+     * @param minimumDimension The smallest dimension puzzles are kept for.
+     * @param maximumDimension The largest dimension puzzles are kept for.
+     * @param initialDimension The dimension likely to be asked for first.
+     */
+    public PuzzlePool(int minimumDimension, int maximumDimension, int initialDimension){
+        this.minimumDimension = minimumDimension;
+        this.maximumDimension = maximumDimension;
+        int bucketCount = (maximumDimension - minimumDimension + 1) * difficultyCount;
+        this.puzzles = new ArrayList<BlockingQueue<Puzzle>>(bucketCount);
+        this.pendingCounts = new ArrayList<AtomicInteger>(bucketCount);
+        for(int dimension = minimumDimension; dimension <= maximumDimension; dimension++){
+            for(int difficulty = 1; difficulty <= difficultyCount; difficulty++){
+                this.puzzles.add(new ArrayBlockingQueue<Puzzle>(getBucketSize(dimension)));
+                this.pendingCounts.add(new AtomicInteger(0));
+            }
+        }
+
+        // the threads making the puzzles should not keep the application open, or slow down the game
+        int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // a puzzle that is being waited for is made at normal priority, ahead of the pool (on a single
+        // thread, so asking for puzzles over and over does not start a generator for each one)
+        this.requestExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for(int difficulty = 1; difficulty <= difficultyCount; difficulty++){
+            this.refillNearby(initialDimension, difficulty);
+        }
+    }
+
+    /**
+     * Takes a puzzle of the given dimension and difficulty from the pool. If the pool
+     * has run out of these puzzles, one is made on a background thread, so the calling
+     * thread (usually the JavaFX thread) is never held up. Either way, the pool is
+     * topped up around the dimension in the background.
+     *
+     * A puzzle that is no longer wanted can be cancelled. If it has not been started it
+     * is never made, and if it is already being made it is put into the pool once it is
+     * finished rather than thrown away.
+     * @param dimension The dimension of the puzzle.
+     * @param difficulty The difficulty of the puzzle (1 for easy, 2 for normal, 3 for hard).
+     * @return The puzzle, which has already been completed if the pool had one ready.
+     */
+    public CompletableFuture<Puzzle> take(int dimension, int difficulty){
+        Puzzle puzzle = null;
+        if(this.isKept(dimension, difficulty)){
+            puzzle = this.puzzles.get(this.getBucket(dimension, difficulty)).poll();
+            this.refillNearby(dimension, difficulty);
+        }
+        if(puzzle != null){
+            return CompletableFuture.completedFuture(puzzle);
+        }
+
+        // making the puzzle in the background (each puzzle has its own maker, as a maker
+        // holds the state of the puzzle being made)
+        CompletableFuture<Puzzle> request = new CompletableFuture<Puzzle>();
+        this.requestExecutor.execute(() -> {
+            if(request.isDone()){
+                return; // cancelled before it was started
+            }
+            try{
+                Puzzle madePuzzle = new RandomGridMaker(null).makeRandomPuzzle(dimension, difficulty);
+                if(!request.complete(madePuzzle) && this.isKept(dimension, difficulty)){
+                    this.puzzles.get(this.getBucket(dimension, difficulty)).offer(madePuzzle);
+                }
+            }
+            catch(RuntimeException e){
+                request.completeExceptionally(e);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Starts making puzzles for the given difficulty and the dimensions close to the
+     * given one, until there are enough in the pool (counting those already being made).
+     * @param dimension The dimension puzzles were asked for.
+     * @param difficulty The difficulty of the puzzles.
+     */
+    private void refillNearby(int dimension, int difficulty){
+        // starting with the dimension asked for, and then the smaller ones as they are made the quickest
+        this.refill(dimension, difficulty);
+        for(int distance = 1; distance <= nearbyDimensions; distance++){
+            this.refill(dimension - distance, difficulty);
+            this.refill(dimension + distance, difficulty);
+        }
+    }
+
+    /**
+     * Starts making puzzles for the given dimension and difficulty, until there
+     * are enough in the pool (counting those already being made).
+     * @param dimension The dimension of the puzzles.
+     * @param difficulty The difficulty of the puzzles.
+     */
+    private void refill(int dimension, int difficulty){
+        if(!this.isKept(dimension, difficulty)){
+            return;
+        }
+        BlockingQueue<Puzzle> bucket = this.puzzles.get(this.getBucket(dimension, difficulty));
+        AtomicInteger pendingCount = this.pendingCounts.get(this.getBucket(dimension, difficulty));
+
+        while(bucket.size() + pendingCount.get() < getBucketSize(dimension)){
+            pendingCount.incrementAndGet();
+            this.executor.execute(() -> {
+                try{
+                    bucket.offer(new RandomGridMaker(null).makeRandomPuzzle(dimension, difficulty));
+                }
+                finally{
+                    pendingCount.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Tests if puzzles of the given dimension and difficulty are kept in the pool.
+     * @param dimension The dimension of the puzzles.
+     * @param difficulty The difficulty of the puzzles.
+     * @return True if they are, false if not.
+     */
+    private boolean isKept(int dimension, int difficulty){
+        return dimension >= this.minimumDimension && dimension <= this.maximumDimension
+                && difficulty >= 1 && difficulty <= difficultyCount;
+    }
+
+    /**
+     * Gets the index of the bucket holding the puzzles of a dimension and difficulty.
+     * @param dimension The dimension of the puzzles.
+     * @param difficulty The difficulty of the puzzles.
+     * @return The index of the bucket.
+     */
+    private int getBucket(int dimension, int difficulty){
+        return (dimension - this.minimumDimension) * difficultyCount + difficulty - 1;
+    }
+
+    /**
+     * Gets the number of puzzles kept for a dimension. Fewer puzzles are kept for
+     * large dimensions, as each one can take several seconds to make.
+     * @param dimension The dimension of the puzzles.
+     * @return The number of puzzles kept for each difficulty of this dimension.
+     */
+    private static int getBucketSize(int dimension){
+        if(dimension > largestSmallDimension){
+            return puzzlesPerLargeBucket;
+        }
+        return puzzlesPerBucket;
+    }
+
+    /**
+     * Stops making puzzles, when the application is closed. No more puzzles can be
+     * taken from the pool after this.
+     */
+    public void shutdown(){
+        this.executor.shutdownNow();
+        this.requestExecutor.shutdownNow();
+    }
+}
@@ -1,26 +1,55 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Random;
 
 /**
- * Handles the making of a random Mathdoku grid.
+ * Handles the making of a random Mathdoku grid. The grid is made as a Puzzle
+ * (without any JavaFX components), and is only turned into a Grid once a puzzle
+ * with a unique solution has been found.
  */
 public class RandomGridMaker{
 
     private Game game; // the game instance associated with this game maker
-    private Random random;
+    private Random random; // makes all of the random choices when making a puzzle
     private static final int maxCageSize = 4;
     private static final int minCageSize = 2;
-    private Grid randomGrid;
-    private ArrayList<Cell> cagedCells;
-    private ArrayList<Cell> uncagedCells;
+    private static final char[] operators = new char[] {'x' , '÷', '+', '-'}; // the operators for the cages
+    private static final char noOperator = '0'; // the operator of a cage with one cell
+    private static final int maximumRepairs = 10; // the number of repairs tried before a puzzle is given up on
+    private static final int maximumMergedCageSize = 6; // the largest cage that can be made by merging two cages
+    private static final long maximumSearchNodes = 50000; // the size of search after which a puzzle is given up on
+    private int dimension; // the dimension of the puzzle being made
+    private int[] solution; // the solution of the puzzle being made
+    private int[] cellCages; // the cage each cell has been put in (-1 if the cell is uncaged)
+    private int[] uncagedCells; // the cells that are not yet in a cage
+    private int[] uncagedIndexes; // the index of each cell within the uncaged cells
+    private int uncagedCount; // the number of cells that are not yet in a cage
+    private int[] cageTargets; // the target number of each cage
+    private char[] cageOperators; // the target operator of each cage
+    private int cageCount; // the number of cages made
+    private CageCombinations[] cageCombinations; // the combinations of each cage (kept between uniqueness checks)
+    private boolean[] cageChanged; // whether each cage has changed since its combinations were worked out
+    private int repairCount; // the number of repairs made to the cages of the puzzle being made
+    private int checkedSolutionCount; // the number of solutions found by the last uniqueness check
 
     /**
      * Constructor for the class, links the game instance to the grid maker.
      * @param game
      */
     public RandomGridMaker(Game game){
+        this(game, new Random());
+    }
+
+    /**
+     * Constructor for the class. Makes the grids using the given random number
+     * generator, so that the same puzzles are made each time it is given the same seed.
+     * @param game The game instance associated with this grid maker (can be null).
+     * @param random The random number generator all random choices are made with.
+     */
+    public RandomGridMaker(Game game, Random random){
         this.game = game;
-        this.random = new Random();
+        this.random = random;
     }
 
     /**
@@ -30,11 +59,21 @@ public class RandomGridMaker{
      * @return Grid object that was created as a result.
      */
     public Grid makeRandomGrid(int dimension, int difficulty){
+        // making the puzzle, and then turning it into a grid (which styles the cages)
+        return this.makeRandomPuzzle(dimension, difficulty).toGrid(this.game);
+    }
+
+    /**
+     * Makes a random Mathdoku puzzle of the given dimension, that has 
+     * only one solution
+     * @param dimension The dimension for the random puzzle.
+     * @return Puzzle object that was created as a result.
+     */
+    public Puzzle makeRandomPuzzle(int dimension, int difficulty){
         /**
-         * TO MAKE THE RANDOM GRID: 
+         * TO MAKE THE RANDOM PUZZLE: 
          *      - make a random cell arrangement that follows the rules
          *      - keep a list of uncaged cells
-         *      - and a list of caged cells (dont know if actually needed)
          *      - pick a random uncaged cell
          *      - pick a cage size
          *      - join adjacent cells into this cell until at cage size
@@ -43,12 +82,12 @@ public class RandomGridMaker{
          *      - cage complete
          *      - repeat process until no uncaged cells
          *      - if cell has no adjacent cells, it becomes a single celled cage
-         *      - when all cells are in a cage, style the grid and return it.
          * 
-         *      - finally, check if grid has only one solution
+         *      - finally, check if puzzle has only one solution
+         *      - if it has more, repair the cages where two solutions differ
+         *        and check again (see makeSolutionUnique)
          */
     
-        boolean gridWithUniqueSolutionFound = false;
         int numberOfOneCellCages = 0;
 
         // deciding on number of cages to only have 1 cell
@@ -65,489 +104,696 @@ public class RandomGridMaker{
             numberOfOneCellCages = 1;
         }
 
-        while(!gridWithUniqueSolutionFound){
-            int oneCellCages  = numberOfOneCellCages;
+        this.dimension = dimension;
+        int cellCount = dimension * dimension;
 
+        for(int attempt = 1; ; attempt++){
+            int oneCellCages  = numberOfOneCellCages;
 
-            this.randomGrid = new Grid(this.game, dimension);
+            // recording the time taken by each attempt at making the puzzle
+            GameEvents.GenerateAttemptEvent event = new GameEvents.GenerateAttemptEvent();
+            event.begin();
 
             ////////////////////////////////
             // MAKING THE RANDOM SOLUTION //
             ////////////////////////////////
 
-            // getting the random grid solution
-            ArrayList<Integer> randomSolutionValues = makeRandomSolution(dimension);
-            this.randomGrid.setSolutionValues(randomSolutionValues); // setting this solution into the grid
+            // getting the random puzzle solution
+            this.solution = this.makeRandomSolution(dimension);
 
             //////////////////////
             // MAKING THE CAGES //
             //////////////////////
 
-            // array lists to store what cells have been assigned to cages
-            this.cagedCells = new ArrayList<Cell>();
-            this.uncagedCells = new ArrayList<Cell>();
-            for(Cell cell : this.randomGrid.getCells()){
-                uncagedCells.add(cell);
+            // arrays to store what cells have been assigned to cages
+            this.cellCages = new int[cellCount];
+            this.uncagedCells = new int[cellCount];
+            this.uncagedIndexes = new int[cellCount];
+            this.uncagedCount = cellCount;
+            for(int cell = 0; cell < cellCount; cell++){
+                this.cellCages[cell] = -1;
+                this.uncagedCells[cell] = cell;
+                this.uncagedIndexes[cell] = cell;
             }
+            // there can be at most one cage per cell
+            this.cageTargets = new int[cellCount];
+            this.cageOperators = new char[cellCount];
+            this.cageCount = 0;
 
             // iterating through until all cells are in cages
-            while(!this.uncagedCells.isEmpty()){
+            while(this.uncagedCount > 0){
                 // make a new cage
 
                 // assessing if this is cage with random size or with only 1 cell
+                int cageSize;
                 if(oneCellCages > 0){
-                    Cage newCage = this.makeNewRandomCage(1);
-                    if(newCage != null){
-                        this.randomGrid.addCage(newCage);
-                    }
+                    cageSize = 1;
                     oneCellCages--;
                 }
                 else{
                     // making cage with random size
-                    int cageSize = this.random.nextInt(maxCageSize - minCageSize + 1) + minCageSize;
-                    Cage newCage = this.makeNewRandomCage(cageSize);
-                    if(newCage != null){
-                        this.randomGrid.addCage(newCage);
-                    }
+                    cageSize = this.random.nextInt(maxCageSize - minCageSize + 1) + minCageSize;
                 }
-            }        
+                int[] cells = this.makeNewRandomCage(cageSize, this.cageCount);
+
+                // setting a random target for the cage
+                this.cageOperators[this.cageCount] = this.setRandomTarget(cells, this.cageTargets, this.cageCount);
+                this.cageCount++;
+            }
 
             //////////////////////////////////
             // CHECKING FOR UNIQUE SOLUTION //
             //////////////////////////////////
 
-            // solving the grid
-            GridSolver gridSolver = new GridSolver(this.randomGrid);
-            gridSolver.solve();
+            // repairing the cages until the puzzle has one solution (or starting again if it cannot be repaired)
+            boolean unique = this.makeSolutionUnique();
+            event.end();
+            if(event.shouldCommit()){
+                event.dimension = dimension;
+                event.cageCount = this.cageCount;
+                event.attempt = attempt;
+                event.solutionCount = this.checkedSolutionCount;
+                event.difficulty = difficulty;
+                event.repairCount = this.repairCount;
+                event.unique = unique;
+                event.commit();
+            }
+            if(unique){
+                Puzzle puzzle = new Puzzle(dimension,
+                                           this.cellCages,
+                                           Arrays.copyOf(this.cageTargets, this.cageCount),
+                                           Arrays.copyOf(this.cageOperators, this.cageCount));
+                puzzle.setSolution(this.solution);
+                return puzzle; // returning the finished puzzle
+            }
+        }
+    }
+
+    /**
+     * Makes sure the puzzle being made only has one solution. Rather than throwing
+     * the puzzle away when a second solution is found, the cells where the two
+     * solutions differ are found, and the cages covering them are repaired:
+     *      - first, by giving one of the cages a new operator (and target) that the
+     *        other solution does not meet
+     *      - otherwise, by moving a differing cell into the cage next to it, so the
+     *        values in both cages change
+     *      - otherwise, by merging one of the cages with a cage next to it
+     * The combinations of the cages that did not change are kept, so each check
+     * only needs to work out the combinations of the repaired cages again.
+     * @return True if the puzzle now has one solution, false if it could not be repaired.
+     */
+    private boolean makeSolutionUnique(){
+        this.cageCombinations = new CageCombinations[this.cageCount];
+        this.cageChanged = new boolean[this.cageCount];
+        Arrays.fill(this.cageChanged, true);
+        this.checkedSolutionCount = 0;
+
+        for(int repair = 0; repair <= maximumRepairs; repair++){
+            this.repairCount = repair;
+            int[][] cageCells = this.getCageCells();
+
+            // working out the combinations of the cages that have changed
+            for(int cage = 0; cage < this.cageCount; cage++){
+                if(this.cageChanged[cage]){
+                    this.cageCombinations[cage] = CageCombinations.make(this.dimension, cageCells[cage],
+                                                                        this.cageTargets[cage], this.cageOperators[cage]);
+                    this.cageChanged[cage] = false;
+                }
+            }
 
-            // checking number of solutions
+            // finding up to two solutions
+            GridSolver gridSolver = new GridSolver(this.dimension,
+                                                   cageCells,
+                                                   Arrays.copyOf(this.cageTargets, this.cageCount),
+                                                   Arrays.copyOf(this.cageOperators, this.cageCount),
+                                                   Arrays.copyOf(this.cageCombinations, this.cageCount));
+            // giving up on puzzles that take too long to check (a new puzzle is usually much quicker)
+            gridSolver.setProgressListener(nodes -> {
+                if(nodes > maximumSearchNodes){
+                    gridSolver.cancel();
+                }
+            });
+            // keeping the first solution that is not the one the puzzle was made from
+            // (values start from 1, so the array is still empty while the first cell is 0)
+            int[] otherSolution = new int[this.solution.length];
+            gridSolver.solve(2, values -> {
+                if(otherSolution[0] == 0 && !Arrays.equals(values, this.solution)){
+                    System.arraycopy(values, 0, otherSolution, 0, values.length);
+                }
+                return true;
+            });
+            this.checkedSolutionCount = gridSolver.getSolutionCount();
+            if(gridSolver.isCancelled()){
+                return false;
+            }
             if(gridSolver.getSolutionCount() == 1){
-                gridWithUniqueSolutionFound = true;
+                return true;
+            }
+            if(gridSolver.getSolutionCount() == 0 || repair == maximumRepairs){
+                return false;
             }
-        }
 
-        // at this point, the grid has been made, and the the cages have been added, so the grid must be styled
-        this.randomGrid.styleGrid();
+            // finding the cages covering the cells where the solutions differ (in a random order)
+            ArrayList<Integer> differingCages = new ArrayList<Integer>();
+            for(int cell = 0; cell < this.solution.length; cell++){
+                if(otherSolution[cell] != this.solution[cell] && !differingCages.contains(this.cellCages[cell])){
+                    differingCages.add(this.cellCages[cell]);
+                }
+            }
+            Collections.shuffle(differingCages, this.random);
+
+            // repairing one of the cages
+            boolean repaired = false;
+            for(int cage : differingCages){
+                if(this.retargetCage(cage, cageCells[cage], otherSolution, true)){
+                    repaired = true;
+                    break;
+                }
+            }
+            if(!repaired && !this.moveDifferingCell(cageCells, otherSolution)
+                && !this.mergeCages(differingCages, cageCells, otherSolution)){
+                return false;
+            }
+        }
 
-        return this.randomGrid; // returning the finished grid instance
+        return false;
     }
 
     /**
-     * Makes a random solution to a grid of the given dimension.
-     * @param dimension The dimension of the grid that a solution
-     * must be made for.
+     * Gives a cage a new random operator, and the target that the solution
+     * of the puzzle makes with it. A cage of one cell is given no operator.
+     * @param cage The index of the cage.
+     * @param cells The cells in the cage.
+     * @param otherSolution Another solution of the puzzle.
+     * @param mustDiffer True if the other solution must not meet the new target.
+     * @return True if the cage was given a new target, false if no operator could be used.
      */
-    private static ArrayList<Integer> makeRandomSolution(int dimension){
-        // storing the rows and columns in this new solution
-        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
-        ArrayList<ArrayList<Integer>> columns = new ArrayList<ArrayList<Integer>>();
+    private boolean retargetCage(int cage, int[] cells, int[] otherSolution, boolean mustDiffer){
+        // a cage of one cell has no operator, and its target is the value of the cell
+        if(cells.length == 1){
+            int target = this.solution[cells[0]];
+            if(mustDiffer && otherSolution[cells[0]] == target){
+                return false;
+            }
+            this.cageOperators[cage] = noOperator;
+            this.cageTargets[cage] = target;
+            this.cageChanged[cage] = true;
+            return true;
+        }
 
-        // stores all of the values that have been added into the grid
-        ArrayList<Integer> allValues = new ArrayList<Integer>(); 
+        // trying the operators in a random order
+        int firstOperator = this.random.nextInt(operators.length);
+        for(int index = 0; index < operators.length; index++){
+            char operator = operators[(firstOperator + index) % operators.length];
+            long target = getCageResult(operator, cells, this.solution);
+            if(target <= 0 || (mustDiffer && (operator == this.cageOperators[cage] || getCageResult(operator, cells, otherSolution) == target))){
+                continue;
+            }
 
-        Random random = new Random();
+            this.cageOperators[cage] = operator;
+            this.cageTargets[cage] = (int)target;
+            this.cageChanged[cage] = true;
+            return true;
+        }
+        return false;
+    }
 
-        /**
-         * METHOD
-         *      - iterate through 0-dimension to go over all rows
-         *      - go into the row for this number
-         *      - iterate through 0-dimension again for cells in this row
-         *      - pick random number for this position that is not
-         *        in this row already, and that is not in the corresponding column
-         *      - when the number is found, add it to the list, and the column list, and the all values list
-         *      - continue until all iterations are complete
-         * 
-         *      - if no number can be found for a cell, then delete this row and start again.
-         * 
-         */
+    /**
+     * Moves a cell where the two solutions differ out of its cage and into a cage next
+     * to it, and gives both cages new targets. The move is only made if the other
+     * solution does not meet one of the new targets, and if the cage the cell leaves
+     * stays in one piece.
+     * @param cageCells The cells in each cage.
+     * @param otherSolution Another solution of the puzzle.
+     * @return True if a cell was moved, false if no cell could be moved.
+     */
+    private boolean moveDifferingCell(int[][] cageCells, int[] otherSolution){
+        // trying the cells in a random order
+        int firstCell = this.random.nextInt(this.solution.length);
+        for(int index = 0; index < this.solution.length; index++){
+            int cell = (firstCell + index) % this.solution.length;
+            int cage = this.cellCages[cell];
+            if(otherSolution[cell] == this.solution[cell] || cageCells[cage].length == 1){
+                continue;
+            }
+
+            // the cells left in the cage once this cell is moved
+            int[] remainingCells = new int[cageCells[cage].length - 1];
+            int remainingCount = 0;
+            for(int cageCell : cageCells[cage]){
+                if(cageCell != cell){
+                    remainingCells[remainingCount++] = cageCell;
+                }
+            }
+            if(!this.isConnected(remainingCells)){
+                continue;
+            }
 
-        // populating the arraylist of rows and columns
-        for(int index = 0; index < dimension; index++){
-            rows.add(new ArrayList<Integer>()); // new array list to store this row of cells        
-            columns.add(new ArrayList<Integer>()); // new array list to store this row of cells        
+            for(int adjacentCell : this.getAdjacentCells(cell)){
+                int adjacentCage = adjacentCell == -1 ? -1 : this.cellCages[adjacentCell];
+                if(adjacentCage == -1 || adjacentCage == cage || cageCells[adjacentCage].length >= maximumMergedCageSize){
+                    continue;
+                }
+                int[] grownCells = Arrays.copyOf(cageCells[adjacentCage], cageCells[adjacentCage].length + 1);
+                grownCells[grownCells.length - 1] = cell;
+
+                // keeping the move only if the other solution no longer meets one of the cages
+                char[] oldOperators = new char[] {this.cageOperators[cage], this.cageOperators[adjacentCage]};
+                int[] oldTargets = new int[] {this.cageTargets[cage], this.cageTargets[adjacentCage]};
+                boolean differs = this.retargetCage(cage, remainingCells, otherSolution, true);
+                if(differs){
+                    this.retargetCage(adjacentCage, grownCells, otherSolution, false);
+                }
+                else{
+                    differs = this.retargetCage(adjacentCage, grownCells, otherSolution, true);
+                    if(differs){
+                        this.retargetCage(cage, remainingCells, otherSolution, false);
+                    }
+                }
+                if(differs){
+                    this.cellCages[cell] = adjacentCage;
+                    return true;
+                }
+                this.cageOperators[cage] = oldOperators[0];
+                this.cageOperators[adjacentCage] = oldOperators[1];
+                this.cageTargets[cage] = oldTargets[0];
+                this.cageTargets[adjacentCage] = oldTargets[1];
+            }
         }
+        return false;
+    }
 
-        // iterating through the rows
-        for(int rowNumber = 0; rowNumber < dimension; rowNumber++){
-            ArrayList<Integer> currentRow = rows.get(rowNumber); // the current row
-
-            // iterating through the cells in this row
-            for(int cellNumber = 0; cellNumber < dimension; cellNumber++){
-                ArrayList<Integer> currentColumn = columns.get(cellNumber);
-                boolean numberFound = false;
-                ArrayList<Integer> numbersTried = new ArrayList<Integer>();
-
-                // continually generating a random number until one is found that
-                // satisfies the constraints
-                while(!numberFound){
-                    // generating a random number for this cell
-                    int randomNumber = random.nextInt(dimension) + 1;
-
-                    // testing if allowed
-                    if((!currentRow.contains(randomNumber) && !currentColumn.contains(randomNumber))){
-                        // if it is allowed, then setting it into the arraylist
-                        currentRow.add(randomNumber);
-                        currentColumn.add(randomNumber);
-
-                        numberFound = true; // a number has been found, so bool can be set to true
+    /**
+     * Checks if the given cells form one connected piece.
+     * @param cells The cells to be checked.
+     * @return True if every cell can be reached from the first through adjacent cells.
+     */
+    private boolean isConnected(int[] cells){
+        int reached = 1; // bit 'i' is set once the cell at index 'i' has been reached
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int index = 0; index < cells.length; index++){
+                if((reached & (1 << index)) != 0){
+                    continue;
+                }
+                for(int other = 0; other < cells.length; other++){
+                    int difference = Math.abs(cells[index] - cells[other]);
+                    boolean adjacent = difference == this.dimension
+                                       || (difference == 1 && cells[index] / this.dimension == cells[other] / this.dimension);
+                    if((reached & (1 << other)) != 0 && adjacent){
+                        reached |= 1 << index;
+                        changed = true;
+                        break;
                     }
-                    // if the number is not allowed, testing if all possible numbers have been tried
-                    else{
-                        // adding this number to the list of numbers tried
-                        if(!numbersTried.contains(randomNumber)){
-                            numbersTried.add(randomNumber);
+                }
+            }
+        }
+        return reached == (1 << cells.length) - 1;
+    }
+
+    /**
+     * Finds the cells above, to the right of, below and to the left of a cell.
+     * @param cell The cell.
+     * @return The adjacent cells (-1 where there is no cell in that direction).
+     */
+    private int[] getAdjacentCells(int cell){
+        int row = cell / this.dimension;
+        int column = cell % this.dimension;
+        return new int[] {row > 0 ? cell - this.dimension : -1,
+                          column < this.dimension - 1 ? cell + 1 : -1,
+                          row < this.dimension - 1 ? cell + this.dimension : -1,
+                          column > 0 ? cell - 1 : -1};
+    }
+
+    /**
+     * Merges one of the given cages with a cage next to it, preferring a cage that
+     * also covers cells where the two solutions differ, and gives the merged cage
+     * a new target.
+     * @param differingCages The cages covering the cells where the solutions differ.
+     * @param cageCells The cells in each cage.
+     * @param otherSolution Another solution of the puzzle.
+     * @return True if two cages were merged, false if no cages could be merged.
+     */
+    private boolean mergeCages(ArrayList<Integer> differingCages, int[][] cageCells, int[] otherSolution){
+        for(int pass = 0; pass < 2; pass++){
+            for(int cage : differingCages){
+                for(int cell : cageCells[cage]){
+                    for(int adjacentCell : this.getAdjacentCells(cell)){
+                        if(adjacentCell == -1){
+                            continue;
                         }
-                        // testing if all numbers have been tried
-                        if(numbersTried.size() == dimension){
-                            // if all numbers have been tried, then need to backtrack and do this row again
-
-                            // delete all elements in this row
-                            currentRow.clear();
-
-                            // delete most recent element in columns up to this cell
-                            for(int index = 0; index < cellNumber; index++){
-                                columns.get(index).remove(columns.get(index).size() - 1);
-                            }
-
-                            // start this row again by manually breaking out of the loop
-                            numberFound = true;
-                            rowNumber -=1;
-                            cellNumber = dimension - 1; 
+                        int adjacentCage = this.cellCages[adjacentCell];
+
+                        // on the first pass, only merging with cages that also cover differing cells
+                        if(adjacentCage == cage
+                            || (pass == 0 && !differingCages.contains(adjacentCage))
+                            || cageCells[cage].length + cageCells[adjacentCage].length > maximumMergedCageSize){
+                            continue;
+                        }
+
+                        // moving the cells of the adjacent cage into this cage
+                        int[] mergedCells = Arrays.copyOf(cageCells[cage], cageCells[cage].length + cageCells[adjacentCage].length);
+                        System.arraycopy(cageCells[adjacentCage], 0, mergedCells, cageCells[cage].length, cageCells[adjacentCage].length);
+                        for(int mergedCell : cageCells[adjacentCage]){
+                            this.cellCages[mergedCell] = cage;
                         }
+                        if(!this.retargetCage(cage, mergedCells, otherSolution, true)){
+                            this.retargetCage(cage, mergedCells, otherSolution, false);
+                        }
+                        this.removeCage(adjacentCage);
+                        return true;
                     }
                 }
             }
         }
+        return false;
+    }
 
-        // when all rows are complete, adding all the elements to a single list
-        for(ArrayList<Integer> row : rows){
-            for(Integer cellValue : row){
-                allValues.add(cellValue);
+    /**
+     * Removes a cage that no longer has any cells, by moving the last cage into its place.
+     * @param cage The index of the cage to be removed.
+     */
+    private void removeCage(int cage){
+        int lastCage = --this.cageCount;
+        if(cage != lastCage){
+            for(int cell = 0; cell < this.cellCages.length; cell++){
+                if(this.cellCages[cell] == lastCage){
+                    this.cellCages[cell] = cage;
+                }
             }
+            this.cageTargets[cage] = this.cageTargets[lastCage];
+            this.cageOperators[cage] = this.cageOperators[lastCage];
+            this.cageCombinations[cage] = this.cageCombinations[lastCage];
+            this.cageChanged[cage] = this.cageChanged[lastCage];
         }
+    }
 
-        // returning this list of cell values
-        return allValues;
+    /**
+     * Finds the cells in each of the cages made so far, in order of their position.
+     * @return The cells in each cage.
+     */
+    private int[][] getCageCells(){
+        int[] cageSizes = new int[this.cageCount];
+        for(int cage : this.cellCages){
+            cageSizes[cage]++;
+        }
+        int[][] cageCells = new int[this.cageCount][];
+        for(int cage = 0; cage < this.cageCount; cage++){
+            cageCells[cage] = new int[cageSizes[cage]];
+            cageSizes[cage] = 0;
+        }
+        for(int cell = 0; cell < this.cellCages.length; cell++){
+            int cage = this.cellCages[cell];
+            cageCells[cage][cageSizes[cage]++] = cell;
+        }
+        return cageCells;
     }
 
     /**
-     * Makes a new cage given the uncaged cells.
-     * @return The cage object that was made.
+     * Works out the result of applying an operator between the values of the cells
+     * of a cage, in descending order (as is done when checking a cage in the game).
+     * @param operator The operator.
+     * @param cells The cells in the cage.
+     * @param values The value of each cell in the grid.
+     * @return The result, or 0 if it is not a positive integer.
      */
-    private Cage makeNewRandomCage(int cageSize){
-        // making an arraylist to hold the cells within this cage
-        ArrayList<Cell> cells = new ArrayList<Cell>();
+    private static long getCageResult(char operator, int[] cells, int[] values){
+        int sum = 0;
+        long product = 1;
+        int largest = 0;
+        for(int cell : cells){
+            sum += values[cell];
+            product *= values[cell];
+            largest = Math.max(largest, values[cell]);
+        }
 
-        // selecting a random uncaged cell
-        Cell startingCell = this.uncagedCells.get(this.random.nextInt(this.uncagedCells.size()));
-        cells.add(startingCell);
-        this.uncagedCells.remove(startingCell);
-        this.cagedCells.add(startingCell);
-        Cell nextAdjacentCell = startingCell;
-        boolean joinedToSeperateCage = false;
-
-        // making sure cage size is not 1 before doing this
-        if(cageSize != 1){
-            // finding adjacent cells to this one until the cage is complete, or until there are no more adjacent cells
-            boolean cageComplete = false;
-            while(!cageComplete){
-                // find new adjacent cell
-                nextAdjacentCell = this.findUnCagedAdjacentCell(nextAdjacentCell);
-
-                // testing if the cell is null
-                if(!(nextAdjacentCell == null)){
-                    // if the cell is not null, adding it to the cage, removing it from the uncaged cells, adding it to the caged cells
-                    cells.add(nextAdjacentCell);
-                    this.cagedCells.add(nextAdjacentCell);
-                    this.uncagedCells.remove(nextAdjacentCell);
-
-                    // check if cage size is now the required size
-                    if(cells.size() == cageSize){
-                        // if it is, then the cage is complete
-                        cageComplete = true;
-                    }
-                }
-                else{
-                    // if returned null, an adjacent cell cannot be found, so the cage is finished (update to try with starting cell as well)
-                    cageComplete = true;
+        // division only gives an integer if the largest value is a multiple of the others
+        if(operator == '÷' && largest % (product / largest) != 0){
+            return 0;
+        }
+        return Math.max(0, CageCombinations.getResult(operator, sum, product, largest));
+    }
 
-                    // JOINS SINGLE CELLS TO OTHER CAGES. MAKES LOADING VERY SLOW SO DIDNT INCLUDE //
+    /**
+     * Makes a random solution to a grid of the given dimension (a random Latin square).
+     * 
+     * The square is made with the Jacobson-Matthews Markov chain. The square is stored as
+     * an incidence cube, where cube[row][column][value] is 1 if the cell at that row and
+     * column holds that value. Starting from a cyclic square, each step swaps the values
+     * around a small "rectangle" of the cube. Some steps leave a single entry of -1 in the
+     * cube (an improper square), which the following step moves on. After enough steps
+     * the square is (very close to) uniformly random over all Latin squares. The chain is
+     * run for dimension^3 steps that end on a proper square, so no restarts are needed.
+     * @param dimension The dimension of the grid that a solution
+     * must be made for.
+     * @return The value of each cell in the solution.
+     */
+    private int[] makeRandomSolution(int dimension){
+        int n = dimension;
+        int[] cube = new int[n * n * n]; // index is (row * n + column) * n + value
+
+        // starting with a cyclic square
+        for(int row = 0; row < n; row++){
+            for(int column = 0; column < n; column++){
+                cube[(row * n + column) * n + (row + column) % n] = 1;
+            }
+        }
 
-                    // // checking if single cell cage made accidently
-                    // if(cells.size() == 1){
-                    //     // joining this cell to an adjacent cage if it was
-                    //     this.joinCellToAdjacentCage(startingCell);
-                    //     joinedToSeperateCage = true;
-                    // }
-                }
+        boolean proper = true;
+        int improperRow = 0;
+        int improperColumn = 0;
+        int improperValue = 0;
+        int properSteps = 0;
+        while(properSteps < n * n * n){
+            int row, column, value, otherRow, otherColumn, otherValue;
+
+            if(proper){
+                // picking a random cell of the cube that is 0
+                row = this.random.nextInt(n);
+                column = this.random.nextInt(n);
+                do{
+                    value = this.random.nextInt(n);
+                } while(cube[(row * n + column) * n + value] != 0);
+
+                // finding the 1 in each line through this cell (there is exactly one)
+                otherRow = this.findOne(cube, n, -1, column, value, -1);
+                otherColumn = this.findOne(cube, n, row, -1, value, -1);
+                otherValue = this.findOne(cube, n, row, column, -1, -1);
+            }
+            else{
+                // starting from the -1, and picking one of the two 1s in each line through it
+                row = improperRow;
+                column = improperColumn;
+                value = improperValue;
+                otherRow = this.findOne(cube, n, -1, column, value, this.random.nextInt(2));
+                otherColumn = this.findOne(cube, n, row, -1, value, this.random.nextInt(2));
+                otherValue = this.findOne(cube, n, row, column, -1, this.random.nextInt(2));
+            }
+
+            // swapping the values around the rectangle
+            cube[(row * n + column) * n + value]++;
+            cube[(row * n + otherColumn) * n + otherValue]++;
+            cube[(otherRow * n + column) * n + otherValue]++;
+            cube[(otherRow * n + otherColumn) * n + value]++;
+            cube[(row * n + column) * n + otherValue]--;
+            cube[(row * n + otherColumn) * n + value]--;
+            cube[(otherRow * n + column) * n + value]--;
+            cube[(otherRow * n + otherColumn) * n + otherValue]--;
+
+            // the square is improper if the opposite corner is now -1
+            proper = cube[(otherRow * n + otherColumn) * n + otherValue] != -1;
+            improperRow = otherRow;
+            improperColumn = otherColumn;
+            improperValue = otherValue;
+
+            // only counting the steps that end on a proper square, as stopping at the first proper square
+            // after a fixed number of steps would favour squares that are easily reached from improper ones
+            if(proper){
+                properSteps++;
             }
         }
 
-        if(!joinedToSeperateCage){
-            // make new cage object with the cells array list
-            Cage cage = new Cage();
-            cage.setGrid(this.randomGrid);
-            cage.setCells(cells);
-            cage.setRandomTarget(); // setting random target for this cage
-            
-            return cage; // returning the completed cage
+        // reading the values of the cells from the cube
+        int[] allValues = new int[n * n];
+        for(int cell = 0; cell < n * n; cell++){
+            for(int value = 0; value < n; value++){
+                if(cube[cell * n + value] == 1){
+                    allValues[cell] = value + 1;
+                }
+            }
         }
 
-        return null;
+        // returning this array of cell values
+        return allValues;
     }
 
     /**
-     * Given a cell, will add this cell to an adjacent cage.
-     * @param cell The cell to be added to an adjacent cage.
+     * Finds a 1 along a line of the incidence cube. The line is given by fixing two of
+     * the row, column and value, and passing -1 for the one that varies.
+     * @param cube The incidence cube.
+     * @param n The dimension of the square.
+     * @param row The row of the line (-1 if the row varies).
+     * @param column The column of the line (-1 if the column varies).
+     * @param value The value of the line (-1 if the value varies).
+     * @param skip The number of 1s to skip before the one returned (the line of an
+     * improper cell has two 1s).
+     * @return The index along the line of the 1 that was found.
      */
-    private void joinCellToAdjacentCage(Cell cell) {
-        // finding the adjacent cell in a cage
-        Cell adjacentCagedCell = this.findCagedAdjacentCell(cell);
-        
-        // makes sure only joins it if it isnt a one caged cell (cant include as 
-        // doesnt accoutn for case where only cells surrounding it are all one caged cells, which
-        // would give an infinite loop, just very unlikley)
-
-        // // checking if it is going to join it to a single celled cage
-        // if(adjacentCagedCell.getCage().getCells().size() == 1){
-        //     this.joinCellToAdjacentCage(cell);
-        //     return;
-        // }
-
-        // adding the cell to this adjacent cage
-        if(adjacentCagedCell != null){
-            Cage adjacentCage = adjacentCagedCell.getCage(); // getting the cage
-            adjacentCage.addCell(cell); // adding the cell
-
-            adjacentCage.setRandomTarget();
+    private int findOne(int[] cube, int n, int row, int column, int value, int skip){
+        for(int index = 0; index < n; index++){
+            int entry;
+            if(row == -1){
+                entry = cube[(index * n + column) * n + value];
+            }
+            else if(column == -1){
+                entry = cube[(row * n + index) * n + value];
+            }
+            else{
+                entry = cube[(row * n + column) * n + index];
+            }
+            if(entry == 1 && skip-- <= 0){
+                return index;
+            }
         }
-	}
+        return -1;
+    }
 
-	/**
-     * Given a cell, will find a cell that is adjacent to it, and is not currently in a cage.
-     * @param cell The cell for which an adjacent cell will be found.
-     * @return The cell that was found, returns null if no cell was found.
+    /**
+     * Makes a new cage given the uncaged cells.
+     * @param cageSize The number of cells wanted in the cage.
+     * @param cage The index of the cage being made.
+     * @return The cells in the cage, in the order they were added to it.
      */
-    private Cell findUnCagedAdjacentCell(Cell cell){
-        int cellPosition = cell.getPosition(); // the position of this cell
-
-        // storing the directions that need to be checked for this cell
-        ArrayList<Integer> directions = new ArrayList<Integer>();
-        directions.add(0); // up
-        directions.add(1); // right
-        directions.add(2); // down
-        directions.add(3); // left
-        ArrayList<Integer> directionsChecked = new ArrayList<Integer>();
-
-        // iterating through the directions to check
-        while(directionsChecked.size() != directions.size()){
-            // getting a random direction that has not yet been checked
-            boolean randomDirectionFound = false;
-            int randomDirection = 0;
-            while(!randomDirectionFound){
-                randomDirection = this.random.nextInt(4);
-                if(!directionsChecked.contains(randomDirection)){
-                    randomDirectionFound = true;
-                }
+    private int[] makeNewRandomCage(int cageSize, int cage){
+        // making an array to hold the cells within this cage
+        int[] cells = new int[cageSize];
+        int size = 0;
+
+        // selecting a random uncaged cell
+        int startingCell = this.uncagedCells[this.random.nextInt(this.uncagedCount)];
+        this.addCellToCage(startingCell, cage);
+        cells[size++] = startingCell;
+        int nextAdjacentCell = startingCell;
+
+        // finding adjacent cells to this one until the cage is complete, or until there are no more adjacent cells
+        while(size < cageSize){
+            // find new adjacent cell
+            nextAdjacentCell = this.findUnCagedAdjacentCell(nextAdjacentCell);
+
+            // if an adjacent cell cannot be found, the cage is finished
+            if(nextAdjacentCell == -1){
+                break;
             }
+            this.addCellToCage(nextAdjacentCell, cage);
+            cells[size++] = nextAdjacentCell;
+        }
 
-            // testing if there is a cell in the given direction
+        return Arrays.copyOf(cells, size); // returning the completed cage
+    }
 
-            // checking for above
-            if(randomDirection == 0){
-                // checking if cell exists in this position
-                if(cellPosition - this.randomGrid.getDimension() > 0){
-                    // checking if the cell at this position is uncaged
-                    if(!this.cagedCells.contains(this.randomGrid.getCells().get(cellPosition - this.randomGrid.getDimension() - 1))){
-                        // if it is uncaged, returning this cell
-                        return this.randomGrid.getCells().get(cellPosition - this.randomGrid.getDimension() - 1);
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
-            }
-            // checking for right
-            if(randomDirection == 1){
-                // checking if cell exists in this position
-                if(!((cellPosition) % this.randomGrid.getDimension() == 0)){
-                    // checking if the cell at this position is uncaged
-                    if(!this.cagedCells.contains(this.randomGrid.getCells().get(cellPosition))){
-                        // if it is uncaged, returning this cell
-                        return this.randomGrid.getCells().get(cellPosition);
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
+    /**
+     * Puts a cell into a cage, removing it from the uncaged cells.
+     * @param cell The cell to be put into the cage.
+     * @param cage The index of the cage.
+     */
+    private void addCellToCage(int cell, int cage){
+        this.cellCages[cell] = cage;
+
+        // moving the last uncaged cell into the place of this one
+        int index = this.uncagedIndexes[cell];
+        int lastCell = this.uncagedCells[--this.uncagedCount];
+        this.uncagedCells[index] = lastCell;
+        this.uncagedIndexes[lastCell] = index;
+    }
+
+    /**
+     * Sets a random target for a cage, by picking a random operator and applying it
+     * between the solution values of the cells (in the order they were added to the cage).
+     * A new operator is picked until the result is a positive integer. A cage of one
+     * cell is given no operator, and the value of the cell as its target.
+     * @param cells The cells in the cage.
+     * @param cageTargets The target numbers of the cages.
+     * @param cage The index of the cage.
+     * @return The operator that was picked for the cage.
+     */
+    private char setRandomTarget(int[] cells, int[] cageTargets, int cage){
+        if(cells.length == 1){
+            cageTargets[cage] = this.solution[cells[0]];
+            return noOperator;
+        }
+        while(true){
+            // RANDOM OPERATOR //
+            char operator = operators[this.random.nextInt(operators.length)];
+
+            // TARGET NUMBER //
+
+            // iterating over values and applying operator
+            double result = this.solution[cells[0]];
+            for(int nextNumber = 1; nextNumber < cells.length; nextNumber++){
+                int value = this.solution[cells[nextNumber]];
+                if(operator == 'x'){
+                    result = result * value;
                 }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
+                else if(operator == '+'){
+                    result = result + value;
                 }
-            }
-            // checking for below
-            if(randomDirection == 2){
-                // checking if cell exists in this position
-                if(cellPosition + this.randomGrid.getDimension() <= this.randomGrid.getDimension()){
-                    // checking if the cell at this position is uncaged
-                    if(!this.cagedCells.contains(this.randomGrid.getCells().get(cellPosition + this.randomGrid.getDimension() - 1))){
-                        // if it is uncaged, returning this cell
-                        return this.randomGrid.getCells().get(cellPosition + this.randomGrid.getDimension() - 1);
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
+                else if(operator == '-'){
+                    result = result - value;
                 }
                 else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
+                    result = result / value;
                 }
             }
-            // checking for left
-            if(randomDirection == 3){
-                // checking if cell exists in this position
-                if(!((cellPosition - 1) % this.randomGrid.getDimension() == 0)){
-                    // checking if the cell at this position is uncaged
-                    if(!this.cagedCells.contains(this.randomGrid.getCells().get(cellPosition - 2))){
-                        // if it is uncaged, returning this cell
-                        return this.randomGrid.getCells().get(cellPosition - 2);
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
+
+            // making sure the result is positive and an integer
+            if(result > 0 && (int)result == result){
+                cageTargets[cage] = (int)result;
+                return operator;
             }
         }
-
-        // if no cell was found, then there is no adjacent cell, so returning null
-        return null;
     }
-    
-	/**
-     * Given a cell, will find a cell that is adjacent to it, and is currently in a cage.
+
+    /**
+     * Given a cell, will find a cell that is adjacent to it, and is not currently in a cage.
      * @param cell The cell for which an adjacent cell will be found.
-     * @return The cell that was found, returns null if no cell was found.
+     * @return The cell that was found, returns -1 if no cell was found.
      */
-    private Cell findCagedAdjacentCell(Cell cell){
-        int cellPosition = cell.getPosition(); // the position of this cell
-
-        // storing the directions that need to be checked for this cell
-        ArrayList<Integer> directions = new ArrayList<Integer>();
-        directions.add(0); // up
-        directions.add(1); // right
-        directions.add(2); // down
-        directions.add(3); // left
-        ArrayList<Integer> directionsChecked = new ArrayList<Integer>();
-
-        // iterating through the directions to check
-        while(directionsChecked.size() != directions.size()){
+    private int findUnCagedAdjacentCell(int cell){
+        int row = cell / this.dimension;
+        int column = cell % this.dimension;
+
+        // checking the directions (up, right, down, left) in a random order
+        int[] directions = new int[] {0, 1, 2, 3};
+        for(int checked = 0; checked < directions.length; checked++){
             // getting a random direction that has not yet been checked
-            boolean randomDirectionFound = false;
-            int randomDirection = 0;
-            while(!randomDirectionFound){
-                randomDirection = this.random.nextInt(4);
-                if(!directionsChecked.contains(randomDirection)){
-                    randomDirectionFound = true;
-                }
+            int index = checked + this.random.nextInt(directions.length - checked);
+            int randomDirection = directions[index];
+            directions[index] = directions[checked];
+            directions[checked] = randomDirection;
+
+            // finding the cell in this direction, if there is one
+            int adjacentCell = -1;
+            if(randomDirection == 0 && row > 0){
+                adjacentCell = cell - this.dimension;
             }
-
-            // testing if there is a cell in the given direction
-
-            // checking for above
-            if(randomDirection == 0){
-                // checking if cell exists in this position
-                if(cellPosition - this.randomGrid.getDimension() > 0){
-                    Cell adjacentCell = this.randomGrid.getCells().get(cellPosition - this.randomGrid.getDimension() - 1);
-                    // checking if the cell at this position is uncaged
-                    if(this.cagedCells.contains(adjacentCell)){
-                        // if it is uncaged, returning this cell
-                        return adjacentCell;
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
+            else if(randomDirection == 1 && column < this.dimension - 1){
+                adjacentCell = cell + 1;
             }
-            // checking for right
-            if(randomDirection == 1){
-                // checking if cell exists in this position
-                if(!((cellPosition) % this.randomGrid.getDimension() == 0)){
-                    Cell adjacentCell = this.randomGrid.getCells().get(cellPosition);
-                    // checking if the cell at this position is uncaged
-                    if(this.cagedCells.contains(adjacentCell)){
-                        // if it is uncaged, returning this cell
-                        return adjacentCell;
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
+            else if(randomDirection == 2 && row < this.dimension - 1){
+                adjacentCell = cell + this.dimension;
             }
-            // checking for below
-            if(randomDirection == 2){
-                // checking if cell exists in this position
-                if(cellPosition + this.randomGrid.getDimension() <= this.randomGrid.getDimension()){
-                    // checking if the cell at this position is uncaged
-                    Cell adjacentCell = this.randomGrid.getCells().get(cellPosition + this.randomGrid.getDimension() - 1);
-                    if(this.cagedCells.contains(adjacentCell)){
-                        // if it is uncaged, returning this cell
-                        return adjacentCell;
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
+            else if(randomDirection == 3 && column > 0){
+                adjacentCell = cell - 1;
             }
-            // checking for left
-            if(randomDirection == 3){
-                // checking if cell exists in this position
-                if(!((cellPosition - 1) % this.randomGrid.getDimension() == 0)){
-                    // checking if the cell at this position is uncaged
-                    Cell adjacentCell = this.randomGrid.getCells().get(cellPosition - 2);
-                    if(this.cagedCells.contains(adjacentCell)){
-                        // if it is uncaged, returning this cell
-                        return adjacentCell;
-                    }
-                    else{
-                        // if this cell is in a cage, adding it to the directions checked list
-                        directionsChecked.add(randomDirection);
-                    }
-                }
-                else{
-                    // if this cell is in a cage, adding it to the directions checked list
-                    directionsChecked.add(randomDirection);
-                }
+
+            // returning the cell if it is uncaged
+            if(adjacentCell != -1 && this.cellCages[adjacentCell] == -1){
+                return adjacentCell;
             }
         }
 
-        // if no cell was found, then there is no adjacent cell, so returning null
-        return null;
+        // if no cell was found, then there is no adjacent cell, so returning -1
+        return -1;
     }
-}
\ No newline at end of file
+}
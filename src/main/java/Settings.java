@@ -32,9 +32,9 @@ public class Settings extends Alert{
     private String errors; // errors that occur whilst changing settings
     private static final ButtonType applyChanges = new ButtonType("Apply Changes", ButtonBar.ButtonData.OK_DONE);
     private static final ButtonType cancel = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
-    private static final int minimumGridSize = 2;
-    private static final int maximumGridSize = 8;
-    private static final int initialGridSize = 5;
+    static final int minimumGridSize = 2;
+    static final int maximumGridSize = 16;
+    static final int initialGridSize = 5;
     private TabPane settingsPane;
 
     // loading method controls
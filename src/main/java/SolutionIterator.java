@@ -0,0 +1,54 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the solutions of a grid, only searching for each solution when it is
+ * asked for (see GridSolver.solutionIterator). Between solutions, the solver is left
+ * part way through its search, so the iterator stops working if another search is
+ * started on the same solver.
+ */
+public class SolutionIterator implements Iterator<int[]>{
+    private GridSolver gridSolver; // the solver running the search
+    private int searchNumber; // identifies the search of the solver this iterator belongs to
+    private int[] nextSolution; // the next solution (null if it has not been found yet)
+    private boolean finished; // determines if every solution has been found
+
+    /**
+     * Constructor for the class. Starts a new search on the solver.
+     * @param gridSolver The solver of the grid.
+     */
+    SolutionIterator(GridSolver gridSolver){
+        this.gridSolver = gridSolver;
+        this.searchNumber = gridSolver.startResumableSearch();
+        this.nextSolution = null;
+        this.finished = false;
+    }
+
+    /**
+     * Tests if the grid has another solution, searching for it if it has not been found yet.
+     * @return True if there is another solution, false if not.
+     */
+    @Override
+    public boolean hasNext(){
+        if(this.nextSolution == null && !this.finished){
+            this.nextSolution = this.gridSolver.findNextSolution(this.searchNumber);
+            this.finished = this.nextSolution == null;
+        }
+        return this.nextSolution != null;
+    }
+
+    /**
+     * Gets the next solution of the grid.
+     * @return The value of each cell in the solution.
+     * @throws NoSuchElementException If there are no more solutions.
+     */
+    @Override
+    public int[] next(){
+        if(!this.hasNext()){
+            throw new NoSuchElementException("The grid has no more solutions");
+        }
+        int[] solution = this.nextSolution;
+        this.nextSolution = null;
+        return solution;
+    }
+}
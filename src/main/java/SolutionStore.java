@@ -0,0 +1,344 @@
+import java.util.Arrays;
+
+/**
+ * Stores the solutions of a grid compactly. Rather than keeping each value as an
+ * Integer in a list, the values are packed into one long array: each value takes
+ * the fewest bits that hold the dimension of the grid (4 bits for grids up to 15x15),
+ * and each solution takes the same number of longs, so a solution is found by its
+ * number alone. A 9x9 solution takes 48 bytes, so thousands of solutions take
+ * kilobytes rather than megabytes.
+ *
+ * Solutions can be compared without unpacking them. The first time a solution is
+ * looked up (indexOf, contains or addIfAbsent), a hash table of the solutions is made
+ * and kept up to date from then on, so repeated solutions can be found (and left out)
+ * quickly. Stores that are only added to never pay for the table.
+ */
+public class SolutionStore{
+    private int cellCount; // the number of cells in each solution
+    private int bitsPerValue; // the number of bits each value takes
+    private int valuesPerWord; // the number of values packed into each long (values do not cross between longs)
+    private int wordsPerSolution; // the number of longs each solution takes
+    private long valueMask; // the bits of a single value
+    private long[] words; // the packed values of every solution, one solution after another
+    private int solutionCount; // the number of solutions stored
+    private int[] hashTable; // the number (plus one) of the solution in each slot of the hash table (null until a solution is looked up)
+
+    // constants
+    private static final int initialCapacity = 4; // the number of solutions there is room for at first
+
+    /**
+     * Constructor for the class.
+     * @param dimension The dimension of the grid the solutions are for.
+     */
+    public SolutionStore(int dimension){
+        this.cellCount = dimension * dimension;
+        this.bitsPerValue = 32 - Integer.numberOfLeadingZeros(dimension);
+        this.valuesPerWord = 64 / this.bitsPerValue;
+        this.wordsPerSolution = (this.cellCount + this.valuesPerWord - 1) / this.valuesPerWord;
+        this.valueMask = (1L << this.bitsPerValue) - 1;
+        this.words = new long[initialCapacity * this.wordsPerSolution];
+        this.solutionCount = 0;
+        this.hashTable = null;
+    }
+
+    /**
+     * Adds a solution to the store, even if it is already stored.
+     * @param values The value of each cell in the solution.
+     * @return The number of the solution within the store.
+     */
+    public int add(int[] values){
+        this.checkLength(values);
+        this.ensureCapacity(this.solutionCount + 1);
+        int solution = this.solutionCount;
+        this.pack(values, solution);
+        this.solutionCount++;
+        this.addToHashTable(solution);
+        return solution;
+    }
+
+    /**
+     * Adds a solution to the store if it is not already stored.
+     * @param values The value of each cell in the solution.
+     * @return True if the solution was added, false if it was already stored.
+     */
+    public boolean addIfAbsent(int[] values){
+        if(this.indexOf(values) != -1){
+            return false;
+        }
+        this.add(values);
+        return true;
+    }
+
+    /**
+     * Adds all of the solutions in another store to this store, in order.
+     * @param store The store whose solutions are added (for a grid of the same dimension).
+     */
+    public void addAll(SolutionStore store){
+        if(store.cellCount != this.cellCount){
+            throw new IllegalArgumentException("The solutions are for a grid of a different dimension");
+        }
+        int addedCount = store.solutionCount; // read first, in case the store is added to itself
+        this.ensureCapacity(this.solutionCount + addedCount);
+        System.arraycopy(store.words, 0, this.words, this.solutionCount * this.wordsPerSolution,
+                         addedCount * this.wordsPerSolution);
+        for(int solution = 0; solution < addedCount; solution++){
+            this.solutionCount++;
+            this.addToHashTable(this.solutionCount - 1);
+        }
+    }
+
+    /**
+     * Finds a solution within the store.
+     * @param values The value of each cell in the solution.
+     * @return The number of the first matching solution, or -1 if it is not stored.
+     */
+    public int indexOf(int[] values){
+        this.checkLength(values);
+        if(this.hashTable == null){
+            this.makeHashTable();
+        }
+
+        // packing the solution into the space after the last solution, so it can be compared word by word
+        this.ensureCapacity(this.solutionCount + 1);
+        this.pack(values, this.solutionCount);
+        int slotMask = this.hashTable.length - 1;
+        for(int slot = this.hash(this.solutionCount) & slotMask; this.hashTable[slot] != 0; slot = (slot + 1) & slotMask){
+            if(this.isSameSolution(this.hashTable[slot] - 1, this.solutionCount)){
+                return this.hashTable[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tests if a solution is within the store.
+     * @param values The value of each cell in the solution.
+     * @return True if the solution is stored, false if not.
+     */
+    public boolean contains(int[] values){
+        return this.indexOf(values) != -1;
+    }
+
+    /**
+     * Tests if two stored solutions are the same, without unpacking them.
+     * @param first The number of the first solution.
+     * @param second The number of the second solution.
+     * @return True if every cell has the same value in both solutions, false if not.
+     */
+    public boolean isSameSolution(int first, int second){
+        return Arrays.equals(this.words, first * this.wordsPerSolution, (first + 1) * this.wordsPerSolution,
+                             this.words, second * this.wordsPerSolution, (second + 1) * this.wordsPerSolution);
+    }
+
+    /**
+     * Counts the cells that have a different value in two stored solutions.
+     * @param first The number of the first solution.
+     * @param second The number of the second solution.
+     * @return The number of differing cells.
+     */
+    public int countDifferences(int first, int second){
+        int differences = 0;
+        for(int cell = 0; cell < this.cellCount; cell++){
+            if(this.getValue(first, cell) != this.getValue(second, cell)){
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Gets the cells that have a different value in two stored solutions.
+     * @param first The number of the first solution.
+     * @param second The number of the second solution.
+     * @return The positions (starting from 0) of the differing cells, in order.
+     */
+    public int[] getDifferingCells(int first, int second){
+        int[] cells = new int[this.countDifferences(first, second)];
+        int count = 0;
+        for(int cell = 0; cell < this.cellCount; cell++){
+            if(this.getValue(first, cell) != this.getValue(second, cell)){
+                cells[count++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Gets the value of a cell in a stored solution.
+     * @param solution The number of the solution.
+     * @param cell The position of the cell (starting from 0).
+     * @return The value of the cell.
+     */
+    public int getValue(int solution, int cell){
+        this.checkSolution(solution);
+        long word = this.words[solution * this.wordsPerSolution + cell / this.valuesPerWord];
+        return (int)((word >>> ((cell % this.valuesPerWord) * this.bitsPerValue)) & this.valueMask);
+    }
+
+    /**
+     * Unpacks a stored solution.
+     * @param solution The number of the solution.
+     * @return The value of each cell in the solution.
+     */
+    public int[] getSolution(int solution){
+        return this.getSolution(solution, new int[this.cellCount]);
+    }
+
+    /**
+     * Unpacks a stored solution into an array, so that no array has to be made.
+     * @param solution The number of the solution.
+     * @param values The array the value of each cell is written into.
+     * @return The array of values.
+     */
+    public int[] getSolution(int solution, int[] values){
+        this.checkSolution(solution);
+        this.checkLength(values);
+        int wordIndex = solution * this.wordsPerSolution;
+        for(int cell = 0; cell < this.cellCount; wordIndex++){
+            long word = this.words[wordIndex];
+            for(int index = 0; index < this.valuesPerWord && cell < this.cellCount; index++, cell++){
+                values[cell] = (int)(word & this.valueMask);
+                word >>>= this.bitsPerValue;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Getter method for the number of solutions stored.
+     * @return The number of solutions.
+     */
+    public int size(){
+        return this.solutionCount;
+    }
+
+    /**
+     * Tests if the store has no solutions.
+     * @return True if there are no solutions, false if there are.
+     */
+    public boolean isEmpty(){
+        return this.solutionCount == 0;
+    }
+
+    /**
+     * Getter method for the number of cells in each solution.
+     * @return The number of cells.
+     */
+    public int getCellCount(){
+        return this.cellCount;
+    }
+
+    /**
+     * Removes all of the solutions from the store.
+     */
+    public void clear(){
+        this.solutionCount = 0;
+        this.hashTable = null;
+    }
+
+    /**
+     * Packs the values of a solution into the words of a solution number.
+     * @param values The value of each cell in the solution.
+     * @param solution The number the solution is stored under.
+     */
+    private void pack(int[] values, int solution){
+        int wordIndex = solution * this.wordsPerSolution;
+        for(int cell = 0; cell < this.cellCount; wordIndex++){
+            long word = 0;
+            for(int index = 0; index < this.valuesPerWord && cell < this.cellCount; index++, cell++){
+                word |= (values[cell] & this.valueMask) << (index * this.bitsPerValue);
+            }
+            this.words[wordIndex] = word;
+        }
+    }
+
+    /**
+     * Makes sure there is room for a number of solutions, growing the array of values
+     * if there is not.
+     * @param capacity The number of solutions there must be room for.
+     */
+    private void ensureCapacity(int capacity){
+        if(capacity * this.wordsPerSolution > this.words.length){
+            int newCapacity = Math.max(capacity, this.words.length / this.wordsPerSolution * 2);
+            this.words = Arrays.copyOf(this.words, newCapacity * this.wordsPerSolution);
+        }
+    }
+
+    /**
+     * Makes the hash table from the solutions stored so far, with at least twice as
+     * many slots as solutions.
+     */
+    private void makeHashTable(){
+        int slots = initialCapacity * 2;
+        while(slots < this.solutionCount * 2){
+            slots *= 2;
+        }
+        this.hashTable = new int[slots];
+        for(int solution = 0; solution < this.solutionCount; solution++){
+            this.insertIntoHashTable(solution);
+        }
+    }
+
+    /**
+     * Adds a stored solution to the hash table (if there is one), making the table
+     * again with twice the size if it is more than half full.
+     * @param solution The number of the solution.
+     */
+    private void addToHashTable(int solution){
+        if(this.hashTable == null){
+            return;
+        }
+        if(this.solutionCount * 2 > this.hashTable.length){
+            this.makeHashTable(); // the new solution is already counted, so it is put into the new table
+            return;
+        }
+        this.insertIntoHashTable(solution);
+    }
+
+    /**
+     * Puts a solution into the first free slot of the hash table from its hash.
+     * @param solution The number of the solution.
+     */
+    private void insertIntoHashTable(int solution){
+        int slotMask = this.hashTable.length - 1;
+        int slot = this.hash(solution) & slotMask;
+        while(this.hashTable[slot] != 0){
+            slot = (slot + 1) & slotMask;
+        }
+        this.hashTable[slot] = solution + 1;
+    }
+
+    /**
+     * Works out the hash of a stored solution from its packed values.
+     * @param solution The number of the solution.
+     * @return The hash of the solution.
+     */
+    private int hash(int solution){
+        long hash = 0;
+        int start = solution * this.wordsPerSolution;
+        for(int wordIndex = start; wordIndex < start + this.wordsPerSolution; wordIndex++){
+            hash = (hash + this.words[wordIndex]) * 0x9E3779B97F4A7C15L;
+        }
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Checks that an array has a value for every cell.
+     * @param values The array of values.
+     */
+    private void checkLength(int[] values){
+        if(values.length != this.cellCount){
+            throw new IllegalArgumentException("A solution must have " + this.cellCount + " values, not " + values.length);
+        }
+    }
+
+    /**
+     * Checks that a solution number is within the store.
+     * @param solution The number of the solution.
+     */
+    private void checkSolution(int solution){
+        if(solution < 0 || solution >= this.solutionCount){
+            throw new IndexOutOfBoundsException("Solution " + solution + " is not in the store of " + this.solutionCount);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Receives the solutions of a grid one at a time as a GridSolver finds them, so
+ * the solutions do not all have to be kept in memory (see GridSolver.solve(int, SolutionVisitor)).
+ */
+@FunctionalInterface
+public interface SolutionVisitor{
+
+    /**
+     * Called by the solver each time a solution is found, on the thread running the search.
+     * The array holds the state of the solver, so it is only valid until this method
+     * returns and must not be changed. It should be copied if the solution is kept.
+     * @param values The value of each cell in the solution, from the top left cell to the bottom right.
+     * @return True if the search should carry on, false if it should stop.
+     */
+    boolean visitSolution(int[] values);
+}
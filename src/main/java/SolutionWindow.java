@@ -1,21 +1,47 @@
-import java.util.ArrayList;
+import java.util.Iterator;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.ButtonBar;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.StackPane;
+import javafx.scene.text.Font;
 
 /**
- * Handles the displaying of a solution to the user.
+ * Handles the displaying of a solution to the user. The solutions are found a page at
+ * a time as they are looked at (see GridSolver.solutionIterator), so a grid with a very
+ * large number of solutions can still be shown. Each page is found on a background
+ * thread, while the total number of solutions is counted in parallel (see
+ * GridSolver.countSolutionsParallel). Pressing F3 shows the statistics of the solver
+ * over the solutions found so far (see SolverStatistics), which helps to find out why
+ * a grid was slow to solve.
  */
 public class SolutionWindow extends Alert{
 
     private TabPane solutionsPane;
+    private Tab moreSolutionsTab; // shows the next page of solutions when selected
+    private Label statisticsOverlay; // shows the statistics of the solver (hidden until F3 is pressed)
     private Game game;
+    private GridSolver gridSolver; // the solver finding the solutions
+    private Iterator<int[]> solutionIterator; // finds the solutions that have not been shown yet
+    private int solutionCount; // the number of solutions shown
+    private Task<Boolean> pageTask; // finds the page of solutions being added (null if no page is being found)
+    private Task<Integer> countTask; // counts every solution of the grid in parallel
+    private int totalSolutionCount; // the number of solutions of the grid (-1 until they have been counted)
 
     private static final ButtonType finish = new ButtonType("Finish", ButtonBar.ButtonData.OK_DONE);
 
+    // constants
+    private static final int solutionsPerPage = 20; // the number of solutions found each time more are asked for
+
     /**
      * Constructor for the class
      * @param game The game instance that this solution window is displaying solutions for.
@@ -33,55 +59,213 @@ public class SolutionWindow extends Alert{
         // setting up the tab pane
         this.solutionsPane= new TabPane();
 
-        // adding the solutions to the tab pane
+        // setting up the tab that shows the next page of solutions when it is selected
+        this.moreSolutionsTab = new Tab("More solutions...");
+        this.moreSolutionsTab.setClosable(false);
+        this.solutionsPane.getSelectionModel().selectedItemProperty().addListener((observable, oldTab, newTab) -> {
+            if(newTab == this.moreSolutionsTab){
+                // the tabs are changed once the selection has finished changing
+                Platform.runLater(() -> this.addSolutions());
+            }
+        });
+
+        // setting up the statistics overlay
+        this.statisticsOverlay = new Label();
+        this.statisticsOverlay.setFont(Font.font("Monospaced", 12));
+        this.statisticsOverlay.setStyle("-fx-background-color: rgba(255, 255, 255, 0.9); -fx-border-color: grey;");
+        this.statisticsOverlay.setPadding(new Insets(5));
+        this.statisticsOverlay.setMouseTransparent(true);
+        this.statisticsOverlay.setVisible(false);
+        StackPane.setAlignment(this.statisticsOverlay, Pos.TOP_RIGHT);
+
+        // adding the first page of solutions to the tab pane
+        this.gridSolver = new GridSolver(this.game.getGrid());
+        this.gridSolver.setStatisticsEnabled(true);
+        this.solutionIterator = this.gridSolver.solutionIterator();
+        this.solutionCount = 0;
+        this.totalSolutionCount = -1;
         this.addSolutions();
 
-        // adding the tab pane to the dialog window
-        this.getDialogPane().setContent(solutionsPane);
+        // counting every solution in the background, and stopping the searches once the window is closed
+        this.countSolutions();
+        this.setOnHidden(event -> {
+            if(this.pageTask != null){
+                this.pageTask.cancel();
+            }
+            this.countTask.cancel();
+        });
+
+        // adding the tab pane (with the overlay on top of it) to the dialog window
+        this.getDialogPane().setContent(new StackPane(this.solutionsPane, this.statisticsOverlay));
+
+        // showing and hiding the statistics when F3 is pressed
+        this.getDialogPane().addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if(event.getCode().equals(KeyCode.F3)){
+                // bringing the statistics up to date, as the search may still be running
+                this.statisticsOverlay.setText(this.gridSolver.getStatistics().toString());
+                this.statisticsOverlay.setVisible(!this.statisticsOverlay.isVisible());
+                event.consume();
+            }
+        });
     }
 
     /**
-     * Adds the solutions to the current game to the window.
+     * Adds the next page of solutions to the current game to the window, followed
+     * by the tab for more solutions if there are any left. The solutions are found
+     * on a background thread, and each one is added to the window as it is found.
      */
     private void addSolutions(){
         /**
          * ADDING SOLUTIONS:
-         *      - use grid solver object to work out number of solutions
-         *      - for loop for this array of solutions
+         *      - use the solution iterator to find the next page of solutions (in the background)
          *      - create a new tab for each solution
          *      - make a grid object within this tab with these values
          *      - make sure the grid cant be edited
          */
 
-        // solving the grid
-        GridSolver gridSolver = new GridSolver(this.game.getGrid());
-        gridSolver.solve();
+        this.solutionsPane.getTabs().remove(this.moreSolutionsTab);
+        if(this.pageTask != null){
+            return; // the page is already being found
+        }
 
-        // iterating over the solutions
-        int currentSolutionNumber = 1;
-        for(ArrayList<Integer> solution : gridSolver.getSolutions()){
-            // creating a new tab for this solution
-            Tab solutionTab = new Tab("Solution " + currentSolutionNumber);
-            solutionTab.setClosable(false);
+        // finding the next page of solutions, posting each one to the JavaFX thread to be shown
+        int firstNewSolution = this.solutionCount;
+        Task<Boolean> pageTask = new Task<Boolean>(){
+            @Override
+            protected Boolean call(){
+                Iterator<int[]> solutionIterator = SolutionWindow.this.solutionIterator;
+                for(int solution = 0; solution < solutionsPerPage && !this.isCancelled() && solutionIterator.hasNext(); solution++){
+                    int[] values = solutionIterator.next();
+                    Platform.runLater(() -> SolutionWindow.this.addSolutionTab(values, firstNewSolution));
+                }
+                return solutionIterator.hasNext();
+            }
 
-            // making  grid for this solution
-            Grid solutionGrid = this.game.getGrid().copy();
-            solutionGrid.setEditable(false);
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning){
+                SolutionWindow.this.gridSolver.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        pageTask.setOnSucceeded(event -> this.finishPage(pageTask.getValue()));
+        pageTask.setOnCancelled(event -> this.stopPage("Finding the solutions was cancelled."));
+        pageTask.setOnFailed(event -> this.stopPage("The solutions could not be found: " + pageTask.getException().getMessage()));
+        this.pageTask = pageTask;
+        this.updateHeader(true);
 
-            // setting the values for the cells
-            for(int index = 0; index < solution.size(); index++){
-                solutionGrid.getCells().get(index).setValue(String.valueOf(solution.get(index)));
+        Thread pageThread = new Thread(pageTask, "solution-page");
+        pageThread.setDaemon(true); // the solver should not keep the application open
+        pageThread.start();
+    }
+
+    /**
+     * Adds the tab for a solution that was found for the page being added.
+     * @param solution The value of each cell in the solution.
+     * @param firstNewSolution The number of solutions shown before the page.
+     */
+    private void addSolutionTab(int[] solution, int firstNewSolution){
+        Tab solutionTab = this.makeSolutionTab(solution);
+        this.solutionsPane.getTabs().add(solutionTab);
+        if(this.solutionCount == firstNewSolution + 1){
+            this.solutionsPane.getSelectionModel().select(solutionTab);
+        }
+        this.updateHeader(true);
+    }
+
+    /**
+     * Finishes adding a page of solutions, once they have all been found.
+     * @param moreSolutions True if there are solutions that have not been shown yet.
+     */
+    private void finishPage(boolean moreSolutions){
+        this.pageTask = null;
+
+        // letting the user ask for more solutions if there are any
+        if(moreSolutions){
+            this.solutionsPane.getTabs().add(this.moreSolutionsTab);
+        }
+        this.updateHeader(moreSolutions);
+    }
 
-                // making the cell the solution style
-                solutionGrid.getCells().get(index).makeSolutionStyle();
+    /**
+     * Stops adding a page of solutions that was cancelled or failed, keeping the
+     * solutions already shown.
+     * @param message The reason the page was stopped, shown in the header.
+     */
+    private void stopPage(String message){
+        this.pageTask = null;
+        this.updateHeader(false);
+        this.setHeaderText(this.getHeaderText() + "\n" + message);
+    }
+
+    /**
+     * Counts every solution of the grid in the background, in parallel on a fork/join
+     * pool, so the header can show how many solutions there are in total.
+     */
+    private void countSolutions(){
+        GridSolver countSolver = new GridSolver(this.game.getGrid());
+        this.countTask = new Task<Integer>(){
+            @Override
+            protected Integer call(){
+                return countSolver.countSolutionsParallel();
             }
 
-            // adding the grid to the tab
-            solutionTab.setContent(solutionGrid);
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning){
+                countSolver.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        this.countTask.setOnSucceeded(event -> {
+            this.totalSolutionCount = this.countTask.getValue();
+            this.updateHeader(this.solutionCount < this.totalSolutionCount);
+        });
+
+        Thread countThread = new Thread(this.countTask, "solution-counter");
+        countThread.setDaemon(true); // the solver should not keep the application open
+        countThread.start();
+    }
+
+    /**
+     * Updates the header of the window with the number of solutions shown, and the
+     * statistics of the solver.
+     * @param moreSolutions True if there may be solutions that have not been shown yet.
+     */
+    private void updateHeader(boolean moreSolutions){
+        if(this.totalSolutionCount != -1){
+            this.setHeaderText("Solutions (" + this.solutionCount + " of " + this.totalSolutionCount + ")");
+        }
+        else{
+            this.setHeaderText("Solutions (" + this.solutionCount + (moreSolutions ? " so far)" : ")"));
+        }
+        this.statisticsOverlay.setText(this.gridSolver.getStatistics().toString());
+    }
+
+    /**
+     * Makes the tab showing a solution.
+     * @param solution The value of each cell in the solution.
+     * @return The tab.
+     */
+    private Tab makeSolutionTab(int[] solution){
+        this.solutionCount++;
+
+        // creating a new tab for this solution
+        Tab solutionTab = new Tab("Solution " + this.solutionCount);
+        solutionTab.setClosable(false);
+
+        // making  grid for this solution
+        Grid solutionGrid = this.game.getGrid().copy();
+        solutionGrid.setEditable(false);
 
-            // adding tab to the window
-            this.solutionsPane.getTabs().add(solutionTab);
-            currentSolutionNumber++;
+        // setting the values for the cells
+        for(int index = 0; index < solution.length; index++){
+            solutionGrid.getCells().get(index).setValue(String.valueOf(solution[index]));
+
+            // making the cell the solution style
+            solutionGrid.getCells().get(index).makeSolutionStyle();
         }
+
+        // adding the grid to the tab
+        solutionTab.setContent(solutionGrid);
+        return solutionTab;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+import javafx.concurrent.Task;
+
+/**
+ * Task that solves a grid on a background thread, so the window can still be used
+ * while the solver is running. The message of the task reports how many positions
+ * have been searched, and cancelling the task stops the solver.
+ */
+public class SolveGridTask extends Task<GridSolver>{
+
+    private GridSolver gridSolver; // the solver that is run by the task
+    private int solutionLimit; // the number of solutions after which the solver stops
+
+    /**
+     * Constructor for the class.
+     * @param gridSolver The solver to be run (made on the JavaFX thread from the grid).
+     * @param solutionLimit The number of solutions after which the solver stops.
+     */
+    public SolveGridTask(GridSolver gridSolver, int solutionLimit){
+        this.gridSolver = gridSolver;
+        this.solutionLimit = solutionLimit;
+        this.updateMessage("Solving the grid...");
+    }
+
+    /**
+     * Runs the solver, updating the message of the task as the search goes.
+     * @return The solver, holding the solutions that were found.
+     */
+    @Override
+    protected GridSolver call(){
+        this.gridSolver.setProgressListener(nodes -> this.updateMessage("Solving the grid... (" + nodes + " positions searched)"));
+        this.gridSolver.solve(this.solutionLimit);
+        return this.gridSolver;
+    }
+
+    /**
+     * Cancels the task, stopping the solver as soon as possible.
+     * @param mayInterruptIfRunning If the thread running the task may be interrupted.
+     * @return True if the task was cancelled, false if it had already finished.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning){
+        this.gridSolver.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+}
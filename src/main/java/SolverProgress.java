@@ -0,0 +1,47 @@
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.HBox;
+
+/**
+ * Shows the progress of a grid being solved in the background, with a button to
+ * cancel the solving.
+ */
+public class SolverProgress extends HBox{
+
+    private SolveGridTask task; // the task whose progress is shown
+    private ProgressIndicator progressIndicator;
+    private Label messageLabel;
+    private Button cancelButton;
+
+    /**
+     * Constructor for the class.
+     * @param task The task whose progress is shown.
+     */
+    public SolverProgress(SolveGridTask task){
+        // initialising the member variables
+        this.task = task;
+        this.progressIndicator = new ProgressIndicator(); // the solver cannot tell how far through it is, so indeterminate
+        this.messageLabel = new Label();
+        this.cancelButton = new Button("CANCEL");
+
+        // showing the message of the task and cancelling it with the button
+        this.messageLabel.textProperty().bind(task.messageProperty());
+        this.cancelButton.setOnAction(event -> this.task.cancel());
+
+        // formatting the components
+        this.progressIndicator.setPrefSize(20, 20);
+        this.getChildren().addAll(this.progressIndicator, this.messageLabel, this.cancelButton);
+        this.setAlignment(Pos.CENTER);
+        this.setSpacing(10);
+    }
+
+    /**
+     * Getter method for the task whose progress is shown.
+     * @return The task being shown.
+     */
+    public SolveGridTask getTask(){
+        return this.task;
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * Records what happened during a run of a GridSolver, to help find out why a grid
+ * takes a long time to solve. The statistics include the number of nodes visited
+ * (and how many of them were at each depth of the search), the number of times the
+ * search had to backtrack, how many possible values were ruled out by each of the
+ * rules of the grid, and how long the search took.
+ *
+ * Statistics are only collected if they are turned on for the solver (see
+ * GridSolver.setStatisticsEnabled), so solving is not slowed down otherwise.
+ */
+public class SolverStatistics{
+    private long nodeCount; // the number of nodes visited by the search
+    private long backtrackCount; // the number of values tried that did not lead to a solution
+    private long[] depthHistogram; // the number of nodes visited at each depth of the search
+    private int maximumDepth; // the deepest the search went
+    private long rowRejections; // the number of values ruled out by the rows
+    private long columnRejections; // the number of values ruled out by the columns
+    private long[] cageRejections; // the number of values ruled out by the cages, for each operator
+    private volatile int solutionCount; // the number of solutions found (read while the search runs)
+    private volatile long runningSince; // the time (from System.nanoTime) the search last started running (-1 while it is paused)
+    private volatile long pausedTime; // the time the search ran for before it was last paused, in nanoseconds
+    private volatile long wallTime; // the time the search took in nanoseconds (-1 if it has not finished)
+    private long firstSolutionTime; // the time taken to find the first solution in nanoseconds (-1 if none was found)
+
+    // constants
+    private static final char[] operators = {'+', '-', 'x', '÷'}; // the operators cage rejections are recorded for
+    private static final String[] operatorNames = {"+", "-", "x", "÷", "none"}; // the names of the operators, then cages without one
+
+    /**
+     * Constructor for the class.
+     * @param cellCount The number of cells in the grid (the deepest the search can go).
+     */
+    public SolverStatistics(int cellCount){
+        this.depthHistogram = new long[cellCount + 1];
+        this.cageRejections = new long[operatorNames.length];
+        this.runningSince = -1;
+        this.wallTime = -1;
+        this.firstSolutionTime = -1;
+    }
+
+    /**
+     * Makes statistics for a part of the same search (when a search is split between
+     * threads), which share the timing of these statistics.
+     * @return The new statistics.
+     */
+    SolverStatistics branch(){
+        SolverStatistics statistics = new SolverStatistics(this.depthHistogram.length - 1);
+        statistics.runningSince = this.runningSince;
+        statistics.pausedTime = this.pausedTime;
+        return statistics;
+    }
+
+    /**
+     * Records the start of the search.
+     */
+    void start(){
+        this.pausedTime = 0;
+        this.runningSince = System.nanoTime();
+    }
+
+    /**
+     * Records the search being paused (between the solutions of a search run a step
+     * at a time), so the time it is paused for is not counted.
+     */
+    void pause(){
+        if(this.runningSince != -1){
+            this.pausedTime += System.nanoTime() - this.runningSince;
+            this.runningSince = -1;
+        }
+    }
+
+    /**
+     * Records a paused search carrying on.
+     */
+    void resume(){
+        if(this.runningSince == -1 && this.wallTime == -1){
+            this.runningSince = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the end of the search.
+     * @param solutionCount The number of solutions that were found.
+     */
+    void finish(int solutionCount){
+        this.solutionCount = solutionCount;
+        this.wallTime = this.getRunningTime();
+        this.runningSince = -1;
+    }
+
+    /**
+     * Records a node being visited.
+     * @param depth The depth of the node (the number of cells branched on to reach it).
+     */
+    void recordNode(int depth){
+        this.nodeCount++;
+        this.depthHistogram[depth]++;
+        if(depth > this.maximumDepth){
+            this.maximumDepth = depth;
+        }
+    }
+
+    /**
+     * Records a value being tried that did not lead to a solution.
+     */
+    void recordBacktrack(){
+        this.backtrackCount++;
+    }
+
+    /**
+     * Records a value being ruled out because it is already in the row of a cell.
+     */
+    void recordRowRejection(){
+        this.rowRejections++;
+    }
+
+    /**
+     * Records a value being ruled out because it is already in the column of a cell.
+     */
+    void recordColumnRejection(){
+        this.columnRejections++;
+    }
+
+    /**
+     * Records values being ruled out because they cannot meet the target of a cage.
+     * @param operator The target operator of the cage.
+     * @param count The number of values ruled out.
+     */
+    void recordCageRejections(char operator, int count){
+        this.cageRejections[getOperatorIndex(operator)] += count;
+    }
+
+    /**
+     * Records a solution being found, noting the time if it is the first one.
+     */
+    void recordSolution(){
+        this.solutionCount++;
+        if(this.firstSolutionTime == -1){
+            this.firstSolutionTime = this.getRunningTime();
+        }
+    }
+
+    /**
+     * Adds the statistics of another part of the same search to these statistics.
+     * @param statistics The statistics to be added.
+     */
+    void add(SolverStatistics statistics){
+        this.nodeCount += statistics.nodeCount;
+        this.backtrackCount += statistics.backtrackCount;
+        for(int depth = 0; depth < this.depthHistogram.length; depth++){
+            this.depthHistogram[depth] += statistics.depthHistogram[depth];
+        }
+        this.maximumDepth = Math.max(this.maximumDepth, statistics.maximumDepth);
+        this.solutionCount += statistics.solutionCount;
+        this.rowRejections += statistics.rowRejections;
+        this.columnRejections += statistics.columnRejections;
+        for(int operator = 0; operator < this.cageRejections.length; operator++){
+            this.cageRejections[operator] += statistics.cageRejections[operator];
+        }
+        if(statistics.firstSolutionTime != -1
+            && (this.firstSolutionTime == -1 || statistics.firstSolutionTime < this.firstSolutionTime)){
+            this.firstSolutionTime = statistics.firstSolutionTime;
+        }
+    }
+
+    /**
+     * Getter method for the number of nodes visited by the search.
+     * @return The number of nodes.
+     */
+    public long getNodeCount(){
+        return this.nodeCount;
+    }
+
+    /**
+     * Getter method for the number of values tried that did not lead to a solution.
+     * @return The number of backtracks.
+     */
+    public long getBacktrackCount(){
+        return this.backtrackCount;
+    }
+
+    /**
+     * Getter method for the number of nodes visited at each depth of the search.
+     * @return The number of nodes at each depth, up to the deepest the search went.
+     */
+    public long[] getDepthHistogram(){
+        long[] histogram = new long[this.maximumDepth + 1];
+        System.arraycopy(this.depthHistogram, 0, histogram, 0, histogram.length);
+        return histogram;
+    }
+
+    /**
+     * Getter method for the deepest the search went.
+     * @return The maximum depth.
+     */
+    public int getMaximumDepth(){
+        return this.maximumDepth;
+    }
+
+    /**
+     * Getter method for the number of values ruled out by the rows.
+     * @return The number of row rejections.
+     */
+    public long getRowRejections(){
+        return this.rowRejections;
+    }
+
+    /**
+     * Getter method for the number of values ruled out by the columns.
+     * @return The number of column rejections.
+     */
+    public long getColumnRejections(){
+        return this.columnRejections;
+    }
+
+    /**
+     * Getter method for the number of values ruled out by cages with an operator.
+     * @param operator The operator ('+', '-', 'x' or '÷'), or any other character
+     * for cages without one of these operators.
+     * @return The number of cage rejections.
+     */
+    public long getCageRejections(char operator){
+        return this.cageRejections[getOperatorIndex(operator)];
+    }
+
+    /**
+     * Getter method for the number of values ruled out by the cages with each operator.
+     * @return The number of cage rejections for each operator, in the order of getOperatorNames.
+     */
+    public long[] getCageRejections(){
+        return this.cageRejections.clone();
+    }
+
+    /**
+     * Getter method for the number of solutions found.
+     * @return The number of solutions.
+     */
+    public int getSolutionCount(){
+        return this.solutionCount;
+    }
+
+    /**
+     * Getter method for the time the search took.
+     * @return The time in nanoseconds, or -1 if the search has not finished.
+     */
+    public long getWallTime(){
+        return this.wallTime;
+    }
+
+    /**
+     * Gets the time the search has spent running so far (not counting the time it
+     * was paused for), which is the time it took once it has finished.
+     * @return The time in nanoseconds.
+     */
+    public long getElapsedTime(){
+        long wallTime = this.wallTime;
+        return wallTime != -1 ? wallTime : this.getRunningTime();
+    }
+
+    /**
+     * Works out the time the search has spent running, up to now.
+     * @return The time in nanoseconds.
+     */
+    private long getRunningTime(){
+        long runningSince = this.runningSince;
+        return this.pausedTime + (runningSince != -1 ? System.nanoTime() - runningSince : 0);
+    }
+
+    /**
+     * Getter method for the time taken to find the first solution.
+     * @return The time in nanoseconds, or -1 if no solution was found.
+     */
+    public long getFirstSolutionTime(){
+        return this.firstSolutionTime;
+    }
+
+    /**
+     * Gets the names of the operators that cage rejections are recorded for.
+     * @return The names of the operators, followed by "none" for cages without one.
+     */
+    public static String[] getOperatorNames(){
+        return operatorNames.clone();
+    }
+
+    /**
+     * Writes the statistics as text, one statistic on each line.
+     * @return The statistics as text.
+     */
+    @Override
+    public String toString(){
+        StringBuilder text = new StringBuilder();
+        text.append("Solutions: ").append(this.solutionCount).append('\n');
+        text.append("Time: ").append(formatTime(this.getElapsedTime()))
+            .append(this.wallTime != -1 ? "" : this.runningSince != -1 ? " (running)" : " (paused)").append('\n');
+        text.append("First solution: ").append(formatTime(this.firstSolutionTime)).append('\n');
+        text.append("Nodes: ").append(this.nodeCount).append('\n');
+        text.append("Backtracks: ").append(this.backtrackCount).append('\n');
+        text.append("Maximum depth: ").append(this.maximumDepth).append('\n');
+        text.append("Rejected by rows: ").append(this.rowRejections).append('\n');
+        text.append("Rejected by columns: ").append(this.columnRejections).append('\n');
+        for(int operator = 0; operator < operatorNames.length; operator++){
+            text.append("Rejected by cages (").append(operatorNames[operator]).append("): ")
+                .append(this.cageRejections[operator]).append('\n');
+        }
+        text.append("Nodes at each depth:");
+        for(int depth = 0; depth <= this.maximumDepth; depth++){
+            text.append(' ').append(this.depthHistogram[depth]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a time in milliseconds.
+     * @param time The time in nanoseconds (-1 if there is no time).
+     * @return The time as text.
+     */
+    private static String formatTime(long time){
+        if(time == -1){
+            return "-";
+        }
+        return String.format("%.3f ms", time / 1000000.0);
+    }
+
+    /**
+     * Gets the index that rejections are recorded under for an operator.
+     * @param operator The operator of a cage.
+     * @return The index of the operator.
+     */
+    private static int getOperatorIndex(char operator){
+        if(operator == '*'){
+            operator = 'x';
+        }
+        else if(operator == '/'){
+            operator = '÷';
+        }
+        for(int index = 0; index < operators.length; index++){
+            if(operators[index] == operator){
+                return index;
+            }
+        }
+        return operators.length; // cages without an operator
+    }
+}
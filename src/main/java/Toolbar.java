@@ -125,4 +125,15 @@ public class Toolbar extends FlowPane{
         this.solveButton.setDisable(disable);
         this.showHintButton.setDisable(disable);
     }
+
+    /**
+     * Sets the 'disable' property for the solve and show hint buttons. Used while
+     * the solutions of the grid are being worked out.
+     * @param disable Boolean representing if the buttons should
+     * be enabled or disabled.
+     */
+    public void setSolutionButtonsDisable(boolean disable){
+        this.solveButton.setDisable(disable);
+        this.showHintButton.setDisable(disable);
+    }
 }
\ No newline at end of file
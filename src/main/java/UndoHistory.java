@@ -0,0 +1,422 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * The undo and redo history of a game, kept compactly so that a long game on a large
+ * grid holds its history in a few KB. The history is used by the game (see Game),
+ * and by snapshots of the game when the journal of moves is replayed over them (see
+ * GameSnapshot), so both build exactly the same history from the same moves.
+ *
+ * Each event is an int. A value entered into (or cleared from) a cell packs the cell,
+ * old value and new value into 16, 8 and 8 bits. The whole grid being cleared is
+ * marked by gridEvent, and the values it cleared are kept in a record alongside:
+ * a bitset of the cells that had values, followed by those values packed 8 to a long.
+ *
+ * Each side of the history holds at most a limited number of events (the oldest are
+ * dropped first), and repeated edits of the same cell are joined into a single event.
+ */
+public class UndoHistory{
+    private int limit; // the number of events kept on each side of the history
+    private int[] undoEvents; // the events that can be undone, oldest first
+    private int undoCount; // the number of events that can be undone
+    private int[] redoEvents; // the events that can be redone, oldest first
+    private int redoCount; // the number of events that can be redone
+    private ArrayDeque<long[]> undoGridRecords; // the values cleared by the grid events that can be undone, oldest first
+    private ArrayDeque<long[]> redoGridRecords; // the values cleared by the grid events that can be redone, oldest first
+
+    // constants
+    static final int defaultLimit = 1000; // the number of events kept on each side of the history by default
+    private static final int gridEvent = -1; // every cell of the grid cleared (cell events are never negative)
+    private static final int cellEventType = 0; // the type written for a cell event (see write)
+    private static final int gridEventType = 1; // the type written for a grid event (see write)
+    private static final int initialCapacity = 16; // the number of events there is room for at first
+
+    /**
+     * Constructor for the class. Keeps the default number of events.
+     */
+    public UndoHistory(){
+        this(defaultLimit);
+    }
+
+    /**
+     * Constructor for the class.
+     * @param limit The number of events kept on each side of the history.
+     * @throws IllegalArgumentException If the limit is less than 1.
+     */
+    public UndoHistory(int limit){
+        if(limit < 1){
+            throw new IllegalArgumentException("The history must keep at least one event (limit " + limit + ")");
+        }
+        this.limit = limit;
+        this.undoEvents = new int[Math.min(limit, initialCapacity)];
+        this.redoEvents = new int[Math.min(limit, initialCapacity)];
+        this.undoGridRecords = new ArrayDeque<long[]>();
+        this.redoGridRecords = new ArrayDeque<long[]>();
+    }
+
+    /**
+     * Getter method for the number of events kept on each side of the history.
+     * @return The limit.
+     */
+    public int getLimit(){
+        return this.limit;
+    }
+
+    /**
+     * Tests if there is an event that can be undone.
+     * @return True if there is, false if not.
+     */
+    public boolean canUndo(){
+        return this.undoCount > 0;
+    }
+
+    /**
+     * Tests if there is an event that can be redone.
+     * @return True if there is, false if not.
+     */
+    public boolean canRedo(){
+        return this.redoCount > 0;
+    }
+
+    /**
+     * Adds a value being entered into (or cleared from) a cell to the undo history. If
+     * the newest event is of the same cell, the two are joined (and dropped if the cell
+     * is back to the value it started with). Any events that could be redone are
+     * dropped, as they no longer follow on from the grid.
+     * @param cell The position of the cell (starting from 0).
+     * @param oldValue The value before the event (0 if the cell was empty).
+     * @param newValue The value after the event (0 if the cell was cleared).
+     */
+    public void addCellEvent(int cell, int oldValue, int newValue){
+        this.clearRedoEvents();
+        if(this.undoCount > 0){
+            int lastEvent = this.undoEvents[this.undoCount - 1];
+            if(lastEvent != gridEvent && getCell(lastEvent) == cell){
+                int firstValue = getOldValue(lastEvent);
+                if(firstValue == newValue){
+                    this.undoCount--;
+                }
+                else{
+                    this.undoEvents[this.undoCount - 1] = makeCellEvent(cell, firstValue, newValue);
+                }
+                return;
+            }
+        }
+        this.pushUndoEvent(makeCellEvent(cell, oldValue, newValue), null);
+    }
+
+    /**
+     * Adds the whole grid being cleared to the undo history. Any events that could be
+     * redone are dropped.
+     * @param oldValues The value of each cell before the grid was cleared (0 if empty).
+     */
+    public void addGridEvent(int[] oldValues){
+        this.clearRedoEvents();
+        this.pushUndoEvent(gridEvent, makeGridRecord(oldValues));
+    }
+
+    /**
+     * Undoes the newest event, moving it onto the redo history.
+     * @param values The value of each cell, which are changed back to before the event.
+     * @return True if an event was undone, false if there were none.
+     */
+    public boolean undo(int[] values){
+        if(this.undoCount == 0){
+            return false;
+        }
+        int event = this.undoEvents[--this.undoCount];
+        long[] record = null;
+        if(event == gridEvent){
+            record = this.undoGridRecords.removeLast();
+            readGridRecord(record, values);
+        }
+        else{
+            values[getCell(event)] = getOldValue(event);
+        }
+        this.pushRedoEvent(event, record);
+        return true;
+    }
+
+    /**
+     * Redoes the newest event that was undone, moving it back onto the undo history.
+     * @param values The value of each cell, which are changed to after the event.
+     * @return True if an event was redone, false if there were none.
+     */
+    public boolean redo(int[] values){
+        if(this.redoCount == 0){
+            return false;
+        }
+        int event = this.redoEvents[--this.redoCount];
+        long[] record = null;
+        if(event == gridEvent){
+            record = this.redoGridRecords.removeLast();
+            Arrays.fill(values, 0);
+        }
+        else{
+            values[getCell(event)] = getNewValue(event);
+        }
+        this.pushUndoEvent(event, record);
+        return true;
+    }
+
+    /**
+     * Copies the history. The records of grid events are never changed, so they are
+     * shared with the copy.
+     * @return The copy.
+     */
+    public UndoHistory copy(){
+        UndoHistory copy = new UndoHistory(this.limit);
+        copy.undoEvents = Arrays.copyOf(this.undoEvents, Math.max(this.undoCount, 1));
+        copy.undoCount = this.undoCount;
+        copy.redoEvents = Arrays.copyOf(this.redoEvents, Math.max(this.redoCount, 1));
+        copy.redoCount = this.redoCount;
+        copy.undoGridRecords.addAll(this.undoGridRecords);
+        copy.redoGridRecords.addAll(this.redoGridRecords);
+        return copy;
+    }
+
+    /**
+     * Writes the history, the undo events and then the redo events, each oldest first.
+     * Each event is written as its type, followed by the cell, old value and new value
+     * (a short and two bytes), or the value of every cell before the grid was cleared
+     * (a byte each).
+     * @param output The stream the history is written to.
+     * @param cellCount The number of cells in the grid.
+     * @throws IOException If the history could not be written.
+     */
+    public void write(DataOutputStream output, int cellCount) throws IOException{
+        writeEvents(output, this.undoEvents, this.undoCount, this.undoGridRecords, cellCount);
+        writeEvents(output, this.redoEvents, this.redoCount, this.redoGridRecords, cellCount);
+    }
+
+    /**
+     * Reads a history written by write, checking that each event is for the grid.
+     * @param input The stream the history is read from.
+     * @param dimension The dimension of the grid.
+     * @param cellCount The number of cells in the grid.
+     * @param limit The number of events kept on each side of the history.
+     * @return The history.
+     * @throws IOException If the history could not be read, or is damaged.
+     */
+    public static UndoHistory read(DataInputStream input, int dimension, int cellCount, int limit) throws IOException{
+        UndoHistory history = new UndoHistory(limit);
+        history.readEvents(input, dimension, cellCount, false);
+        history.readEvents(input, dimension, cellCount, true);
+        return history;
+    }
+
+    /**
+     * Empties the redo history.
+     */
+    private void clearRedoEvents(){
+        this.redoCount = 0;
+        this.redoGridRecords.clear();
+    }
+
+    /**
+     * Adds an event to the top of the undo history, dropping the oldest event if the
+     * history is full.
+     * @param event The event.
+     * @param record The values cleared by the event (null if it is a cell event).
+     */
+    private void pushUndoEvent(int event, long[] record){
+        if(this.undoCount == this.limit){
+            if(this.undoEvents[0] == gridEvent){
+                this.undoGridRecords.removeFirst();
+            }
+            System.arraycopy(this.undoEvents, 1, this.undoEvents, 0, --this.undoCount);
+        }
+        else if(this.undoCount == this.undoEvents.length){
+            this.undoEvents = Arrays.copyOf(this.undoEvents, Math.min(this.limit, this.undoCount * 2));
+        }
+        this.undoEvents[this.undoCount++] = event;
+        if(record != null){
+            this.undoGridRecords.addLast(record);
+        }
+    }
+
+    /**
+     * Adds an event to the top of the redo history, dropping the oldest event if the
+     * history is full.
+     * @param event The event.
+     * @param record The values cleared by the event (null if it is a cell event).
+     */
+    private void pushRedoEvent(int event, long[] record){
+        if(this.redoCount == this.limit){
+            if(this.redoEvents[0] == gridEvent){
+                this.redoGridRecords.removeFirst();
+            }
+            System.arraycopy(this.redoEvents, 1, this.redoEvents, 0, --this.redoCount);
+        }
+        else if(this.redoCount == this.redoEvents.length){
+            this.redoEvents = Arrays.copyOf(this.redoEvents, Math.min(this.limit, this.redoCount * 2));
+        }
+        this.redoEvents[this.redoCount++] = event;
+        if(record != null){
+            this.redoGridRecords.addLast(record);
+        }
+    }
+
+    /**
+     * Packs a cell event into an int.
+     * @param cell The position of the cell (starting from 0).
+     * @param oldValue The value before the event.
+     * @param newValue The value after the event.
+     * @return The event.
+     */
+    private static int makeCellEvent(int cell, int oldValue, int newValue){
+        return cell << 16 | oldValue << 8 | newValue;
+    }
+
+    /**
+     * Gets the cell of a cell event.
+     * @param event The event.
+     * @return The position of the cell (starting from 0).
+     */
+    private static int getCell(int event){
+        return event >>> 16;
+    }
+
+    /**
+     * Gets the value before a cell event.
+     * @param event The event.
+     * @return The value (0 if the cell was empty).
+     */
+    private static int getOldValue(int event){
+        return (event >>> 8) & 0xFF;
+    }
+
+    /**
+     * Gets the value after a cell event.
+     * @param event The event.
+     * @return The value (0 if the cell was cleared).
+     */
+    private static int getNewValue(int event){
+        return event & 0xFF;
+    }
+
+    /**
+     * Makes the record of the values cleared by a grid event: a bitset of the cells that
+     * had values, followed by those values, 8 to a long.
+     * @param values The value of each cell before the grid was cleared (0 if empty).
+     * @return The record.
+     */
+    private static long[] makeGridRecord(int[] values){
+        int bitsetWords = (values.length + 63) >>> 6;
+        int filledCount = 0;
+        for(int value : values){
+            if(value != 0){
+                filledCount++;
+            }
+        }
+
+        long[] record = new long[bitsetWords + (filledCount + 7) / 8];
+        int filledIndex = 0;
+        for(int cell = 0; cell < values.length; cell++){
+            if(values[cell] != 0){
+                record[cell >>> 6] |= 1L << cell;
+                record[bitsetWords + (filledIndex >>> 3)] |= (long)(values[cell] & 0xFF) << ((filledIndex & 7) * 8);
+                filledIndex++;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Reads the values cleared by a grid event back from its record.
+     * @param record The record (see makeGridRecord).
+     * @param values The value of each cell, which are set to before the grid was cleared.
+     */
+    private static void readGridRecord(long[] record, int[] values){
+        int bitsetWords = (values.length + 63) >>> 6;
+        int filledIndex = 0;
+        for(int cell = 0; cell < values.length; cell++){
+            if((record[cell >>> 6] & 1L << cell) != 0){
+                values[cell] = (int)(record[bitsetWords + (filledIndex >>> 3)] >>> ((filledIndex & 7) * 8)) & 0xFF;
+                filledIndex++;
+            }
+            else{
+                values[cell] = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes one side of the history.
+     * @param output The stream the events are written to.
+     * @param events The events, oldest first.
+     * @param eventCount The number of events.
+     * @param gridRecords The records of the grid events, oldest first.
+     * @param cellCount The number of cells in the grid.
+     * @throws IOException If the events could not be written.
+     */
+    private static void writeEvents(DataOutputStream output, int[] events, int eventCount, ArrayDeque<long[]> gridRecords,
+                                    int cellCount) throws IOException{
+        output.writeInt(eventCount);
+        Iterator<long[]> records = gridRecords.iterator();
+        int[] values = new int[cellCount];
+        for(int index = 0; index < eventCount; index++){
+            int event = events[index];
+            if(event != gridEvent){
+                output.writeByte(cellEventType);
+                output.writeShort(getCell(event));
+                output.writeByte(getOldValue(event));
+                output.writeByte(getNewValue(event));
+            }
+            else{
+                output.writeByte(gridEventType);
+                readGridRecord(records.next(), values);
+                for(int value : values){
+                    output.writeByte(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one side of the history, checking that each event is for the grid.
+     * @param input The stream the events are read from.
+     * @param dimension The dimension of the grid.
+     * @param cellCount The number of cells in the grid.
+     * @param redo True if the events are added to the redo history, false if to the undo history.
+     * @throws IOException If the events could not be read, or are damaged.
+     */
+    private void readEvents(DataInputStream input, int dimension, int cellCount, boolean redo) throws IOException{
+        int eventCount = input.readInt();
+        if(eventCount < 0){
+            throw new IOException("The saved game is damaged");
+        }
+        for(int index = 0; index < eventCount; index++){
+            int type = input.readUnsignedByte();
+            int event;
+            long[] record = null;
+            if(type == cellEventType){
+                int cell = input.readUnsignedShort();
+                int oldValue = input.readUnsignedByte();
+                int newValue = input.readUnsignedByte();
+                if(cell >= cellCount || oldValue > dimension || newValue > dimension){
+                    throw new IOException("The saved game is damaged");
+                }
+                event = makeCellEvent(cell, oldValue, newValue);
+            }
+            else if(type == gridEventType){
+                event = gridEvent;
+                record = makeGridRecord(GameSnapshot.readValues(input, dimension, cellCount));
+            }
+            else{
+                throw new IOException("The saved game is damaged");
+            }
+
+            if(redo){
+                this.pushRedoEvent(event, record);
+            }
+            else{
+                this.pushUndoEvent(event, record);
+            }
+        }
+    }
+}